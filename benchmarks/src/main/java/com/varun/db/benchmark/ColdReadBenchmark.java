@@ -0,0 +1,96 @@
+package com.varun.db.benchmark;
+
+import com.varun.db.cache.SegmentedLruCache;
+import com.varun.db.compression.ValueCodecs;
+import com.varun.db.exception.KeyNotFoundException;
+import com.varun.db.storage.CompactionPolicy;
+import com.varun.db.storage.KeyValueStore;
+import com.varun.db.util.FsyncMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the first reads after the store is opened, when neither the value cache nor the pooled file channels
+ * hold anything yet. Every iteration opens the store again and reads {@link #READS} random keys once.
+ * <p>
+ * The OS page cache is out of reach of the JVM, so reads only go to the disk for a dataset larger than memory or when
+ * the page cache is dropped while the benchmark runs, e.g. {@code echo 1 > /proc/sys/vm/drop_caches} as root. Point
+ * {@code datasetDirectory} at a dataset made by {@link DatasetGenerator} to measure a specific disk.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ColdReadBenchmark {
+
+    private static final int READS = 1000;
+
+    /**
+     * Directory of an existing dataset, empty to generate one in a temporary directory
+     */
+    @Param({""})
+    public String datasetDirectory;
+
+    @Param({"1024"})
+    public int datasetSizeMb;
+
+    @Param({"1000000"})
+    public int keyCount;
+
+    @Param({"256"})
+    public int valueSize;
+
+    private File directory;
+    private KeyValueStore keyValueStore;
+    private byte[][] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = datasetDirectory.isEmpty() ? new DatasetGenerator(datasetSizeMb * 1024L * 1024L,
+                64L * 1024 * 1024, keyCount, valueSize).generate() : new File(datasetDirectory);
+    }
+
+    @Setup(Level.Iteration)
+    public void openStore() throws IOException {
+        keyValueStore = new KeyValueStore(directory.getPath(), FsyncMode.OS, 0, new SegmentedLruCache(0, 1),
+                new CompactionPolicy(1.0, Long.MAX_VALUE, null, null, 0), false, ValueCodecs.NONE, 512);
+        Random random = new Random();
+        keys = new byte[READS][];
+        for (int i = 0; i < READS; i++) {
+            keys[i] = DatasetGenerator.key(random.nextInt(keyCount)).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeStore() throws IOException {
+        keyValueStore.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (datasetDirectory.isEmpty()) {
+            DatasetGenerator.delete(directory);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public int read() throws IOException {
+        int bytes = 0;
+        for (byte[] key : keys) {
+            try {
+                bytes += keyValueStore.get(key).length;
+            } catch (KeyNotFoundException e) {
+                // Generated datasets draw keys at random, so a few keys were never written
+            }
+        }
+        return bytes;
+    }
+}
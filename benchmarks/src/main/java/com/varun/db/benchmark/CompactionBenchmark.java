@@ -0,0 +1,76 @@
+package com.varun.db.benchmark;
+
+import com.varun.db.cache.SegmentedLruCache;
+import com.varun.db.compression.ValueCodecs;
+import com.varun.db.storage.CompactionPolicy;
+import com.varun.db.storage.KeyValueStore;
+import com.varun.db.util.FsyncMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of a full {@link KeyValueStore#performCompaction()} over a generated dataset in which most records were
+ * overwritten. Every iteration compacts a fresh copy of the same dataset. Allocation is reported by running with
+ * {@code -prof gc}, see {@code gc.alloc.rate.norm} for the bytes allocated per compaction.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class CompactionBenchmark {
+
+    @Param({"64"})
+    public int datasetSizeMb;
+
+    @Param({"8"})
+    public int segmentSizeMb;
+
+    /**
+     * Fewer keys than records, so most records are dead by the time the dataset is written
+     */
+    @Param({"50000"})
+    public int keyCount;
+
+    @Param({"256"})
+    public int valueSize;
+
+    private File dataset;
+    private File directory;
+    private KeyValueStore keyValueStore;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataset = new DatasetGenerator(datasetSizeMb * 1024L * 1024L, segmentSizeMb * 1024L * 1024L, keyCount,
+                valueSize).generate();
+    }
+
+    @Setup(Level.Iteration)
+    public void openStore() throws IOException {
+        directory = DatasetGenerator.copy(dataset);
+        // Every file with dead bytes is compacted, at full speed
+        keyValueStore = new KeyValueStore(directory.getPath(), FsyncMode.OS, 0, new SegmentedLruCache(0, 1),
+                new CompactionPolicy(0.0, Long.MAX_VALUE, null, null, 0), false, ValueCodecs.NONE, 512);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeStore() throws IOException {
+        keyValueStore.close();
+        DatasetGenerator.delete(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DatasetGenerator.delete(dataset);
+    }
+
+    @Benchmark
+    public KeyValueStore performCompaction() throws IOException {
+        keyValueStore.performCompaction();
+        return keyValueStore;
+    }
+}
@@ -0,0 +1,94 @@
+package com.varun.db.benchmark;
+
+import com.varun.db.cache.SegmentedLruCache;
+import com.varun.db.compression.ValueCodec;
+import com.varun.db.compression.ValueCodecs;
+import com.varun.db.exception.KeyNotFoundException;
+import com.varun.db.storage.CompactionPolicy;
+import com.varun.db.storage.KeyValueStore;
+import com.varun.db.storage.SegmentStats;
+import com.varun.db.util.FsyncMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write and cache-miss read throughput of {@link KeyValueStore} with and without value compression, over JSON-like
+ * values. The bytes stored per value are printed at the end of every trial to show the space saved.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+
+    private static final int KEY_COUNT = 10_000;
+
+    @Param({"none", "deflate"})
+    public String codec;
+
+    @Param({"1024", "8192"})
+    public int valueSize;
+
+    private File directory;
+    private KeyValueStore keyValueStore;
+    private byte[][] values;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bit-db-compression").toFile();
+        ValueCodec valueCodec = codec.equals("deflate") ? ValueCodecs.DEFLATE : ValueCodecs.NONE;
+        // A cache without budget makes every read a miss which has to decompress
+        keyValueStore = new KeyValueStore(directory.getPath(), FsyncMode.OS, 0, new SegmentedLruCache(0, 1),
+                new CompactionPolicy(1.0, Long.MAX_VALUE, null, null, 0), false, valueCodec, 512);
+        Random random = new Random(42);
+        values = new byte[64][];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = jsonLikeValue(random, valueSize);
+        }
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keyValueStore.set(DatasetGenerator.key(i).getBytes(StandardCharsets.UTF_8), values[i % values.length]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        long storedBytes = keyValueStore.getSegmentStats().values().stream().mapToLong(SegmentStats::liveBytes).sum();
+        System.out.printf("%n%s: %.1f bytes stored per %d byte value%n", codec, (double) storedBytes / KEY_COUNT,
+                valueSize);
+        keyValueStore.close();
+        DatasetGenerator.delete(directory);
+    }
+
+    @Benchmark
+    public void set() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        keyValueStore.set(DatasetGenerator.key(random.nextInt(KEY_COUNT)).getBytes(StandardCharsets.UTF_8),
+                values[random.nextInt(values.length)]);
+    }
+
+    @Benchmark
+    public byte[] get() throws IOException, KeyNotFoundException {
+        return keyValueStore.get(DatasetGenerator.key(ThreadLocalRandom.current().nextInt(KEY_COUNT))
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] jsonLikeValue(Random random, int size) {
+        String[] words = {"user", "order", "status", "active", "pending", "amount", "currency", "EUR", "created"};
+        StringBuilder sb = new StringBuilder(size + 64).append('{');
+        while (sb.length() < size - 1) {
+            sb.append('"').append(words[random.nextInt(words.length)]).append("\":")
+                    .append(random.nextInt(100_000)).append(',');
+        }
+        sb.setLength(size - 1);
+        return sb.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,124 @@
+package com.varun.db.benchmark;
+
+import com.varun.db.storage.FileRecord;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+
+import static com.varun.db.util.FileRecordConfig.FILE_PREFIX;
+
+/**
+ * Generates a bit-db directory of a given size directly in the on-disk format, without going through
+ * {@link com.varun.db.storage.KeyValueStore}, so multi-GB datasets can be produced in seconds.
+ * <p>
+ * Keys are drawn uniformly from {@code keyCount} keys, so the same key is overwritten across files once the dataset
+ * holds more than {@code keyCount} records.
+ * <p>
+ * Benchmarks generate their dataset in a temporary directory by default. A dataset can also be generated once on the
+ * disk to be measured and handed to the benchmarks taking a {@code datasetDirectory} parameter:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.varun.db.benchmark.DatasetGenerator \
+ *     &lt;directory&gt; &lt;datasetSizeMb&gt; [segmentSizeMb] [keyCount] [valueSize]
+ * </pre>
+ */
+public class DatasetGenerator {
+
+    private final long totalBytes;
+    private final long segmentBytes;
+    private final int keyCount;
+    private final int valueSize;
+
+    public DatasetGenerator(long totalBytes, long segmentBytes, int keyCount, int valueSize) {
+        this.totalBytes = totalBytes;
+        this.segmentBytes = segmentBytes;
+        this.keyCount = keyCount;
+        this.valueSize = valueSize;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: DatasetGenerator <directory> <datasetSizeMb> [segmentSizeMb] [keyCount] "
+                    + "[valueSize]");
+            return;
+        }
+        File directory = new File(args[0]);
+        if (directory.exists() && Objects.requireNonNull(directory.list()).length > 0) {
+            throw new IllegalArgumentException(directory + " is not empty");
+        }
+        Files.createDirectories(directory.toPath());
+        long datasetSizeMb = Long.parseLong(args[1]);
+        long segmentSizeMb = args.length > 2 ? Long.parseLong(args[2]) : 64;
+        int keyCount = args.length > 3 ? Integer.parseInt(args[3]) : 1_000_000;
+        int valueSize = args.length > 4 ? Integer.parseInt(args[4]) : 256;
+        long start = System.nanoTime();
+        new DatasetGenerator(datasetSizeMb * 1024 * 1024, segmentSizeMb * 1024 * 1024, keyCount, valueSize)
+                .generate(directory);
+        System.out.printf("Generated %d MB in %s in %d ms%n", datasetSizeMb, directory,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return a new temporary directory holding the dataset
+     */
+    public File generate() throws IOException {
+        File directory = Files.createTempDirectory("bit-db-dataset").toFile();
+        generate(directory);
+        return directory;
+    }
+
+    public void generate(File directory) throws IOException {
+        Random random = new Random(42);
+        byte[] value = new byte[valueSize];
+        long fileId = System.currentTimeMillis();
+        long writtenBytes = 0;
+        long timestamp = 0;
+        while (writtenBytes < totalBytes) {
+            File file = new File(directory, FILE_PREFIX + fileId++);
+            long fileBytes = 0;
+            try (DataOutputStream outputStream = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+                while (fileBytes < segmentBytes && writtenBytes + fileBytes < totalBytes) {
+                    byte[] key = key(random.nextInt(keyCount)).getBytes(StandardCharsets.UTF_8);
+                    for (int i = 0; i < valueSize; i++) {
+                        value[i] = (byte) ('a' + random.nextInt(26));
+                    }
+                    byte[] bytes = new FileRecord(++timestamp, key, value).toBytes();
+                    outputStream.writeInt(bytes.length);
+                    outputStream.write(bytes);
+                    fileBytes += 4 + bytes.length;
+                }
+            }
+            writtenBytes += fileBytes;
+        }
+    }
+
+    public static String key(int i) {
+        return String.format("key%010d", i);
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    public static void delete(File directory) {
+        Arrays.stream(Objects.requireNonNull(directory.listFiles())).forEach(File::delete);
+        directory.delete();
+    }
+
+    /**
+     * Copies the files of a dataset into a new temporary directory, so a benchmark which changes the files can start
+     * every iteration from the same dataset
+     */
+    public static File copy(File directory) throws IOException {
+        File copy = Files.createTempDirectory("bit-db-dataset").toFile();
+        for (File file : Objects.requireNonNull(directory.listFiles())) {
+            Files.copy(file.toPath(), new File(copy, file.getName()).toPath());
+        }
+        return copy;
+    }
+}
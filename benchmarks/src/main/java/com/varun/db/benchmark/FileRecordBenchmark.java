@@ -0,0 +1,61 @@
+package com.varun.db.benchmark;
+
+import com.varun.db.storage.FileRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of encoding a {@link FileRecord} the way {@link com.varun.db.util.DiskWriter} does, decoding it, and checking
+ * its checksum the way recovery and verified reads do
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FileRecordBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int valueSize;
+
+    private FileRecord fileRecord;
+    private ByteBuffer directBuffer;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        byte[] value = new byte[valueSize];
+        new Random(42).nextBytes(value);
+        fileRecord = new FileRecord(System.currentTimeMillis(),
+                DatasetGenerator.key(42).getBytes(StandardCharsets.UTF_8), value);
+        directBuffer = ByteBuffer.allocateDirect(fileRecord.encodedLength());
+        encoded = fileRecord.toBytes();
+    }
+
+    @Benchmark
+    public ByteBuffer encodeToDirectBuffer() {
+        directBuffer.clear();
+        fileRecord.writeTo(directBuffer);
+        return directBuffer;
+    }
+
+    @Benchmark
+    public byte[] encodeToBytes() {
+        return fileRecord.toBytes();
+    }
+
+    @Benchmark
+    public FileRecord decode() {
+        return FileRecord.buildFileRecord(encoded);
+    }
+
+    @Benchmark
+    public boolean verifyChecksum() {
+        return FileRecord.isValid(encoded, encoded.length);
+    }
+}
@@ -0,0 +1,73 @@
+package com.varun.db.benchmark;
+
+import com.varun.db.storage.KeyDirectory;
+import com.varun.db.storage.ValueMetadata;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Retained heap per key of {@link KeyDirectory} compared to the {@code ConcurrentHashMap<String, ValueMetadata>} key
+ * directory it replaced. Heap usage is sampled after a full GC before and after filling each structure, so this runs
+ * as a plain program rather than a JMH benchmark:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.varun.db.benchmark.KeyDirectoryMemoryBenchmark [keyCount] [fileCount]
+ * </pre>
+ */
+public class KeyDirectoryMemoryBenchmark {
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) throws InterruptedException {
+        int keyCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int fileCount = args.length > 1 ? Integer.parseInt(args[1]) : 128;
+        String[] fileNames = new String[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            fileNames[i] = "bit-db/file_" + (1_700_000_000_000L + i);
+        }
+        IntFunction<ValueMetadata> valueMetadata = i -> new ValueMetadata(fileNames[i % fileCount], 256,
+                (i * 300) % 64_000_000, 1_700_000_000_000L + i);
+
+        long hashMapBytes = measure(() -> {
+            Map<String, ValueMetadata> keyDirectory = new ConcurrentHashMap<>();
+            for (int i = 0; i < keyCount; i++) {
+                keyDirectory.put(DatasetGenerator.key(i), valueMetadata.apply(i));
+            }
+            return keyDirectory;
+        });
+        long keyDirectoryBytes = measure(() -> {
+            KeyDirectory keyDirectory = new KeyDirectory(16);
+            for (int i = 0; i < keyCount; i++) {
+                keyDirectory.put(DatasetGenerator.key(i), valueMetadata.apply(i));
+            }
+            return keyDirectory;
+        });
+
+        System.out.printf("keys: %d, key length: %d bytes%n", keyCount, DatasetGenerator.key(0).length());
+        System.out.printf("ConcurrentHashMap<String, ValueMetadata>: %.1f bytes/key%n",
+                (double) hashMapBytes / keyCount);
+        System.out.printf("KeyDirectory:                             %.1f bytes/key%n",
+                (double) keyDirectoryBytes / keyCount);
+    }
+
+    private static long measure(Supplier<Object> builder) throws InterruptedException {
+        long before = usedHeapAfterGc();
+        Object keyDirectory = builder.get();
+        long after = usedHeapAfterGc();
+        // Keeps the structure reachable until the second sample
+        System.out.println("built " + keyDirectory.getClass().getSimpleName());
+        return after - before;
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
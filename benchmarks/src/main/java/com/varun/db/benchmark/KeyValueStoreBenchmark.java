@@ -0,0 +1,77 @@
+package com.varun.db.benchmark;
+
+import com.varun.db.exception.KeyNotFoundException;
+import com.varun.db.storage.KeyValueStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link KeyValueStore#set(byte[], byte[])} and {@link KeyValueStore#get(byte[])} with the default
+ * settings, under uniform and Zipfian key distributions. With Zipfian keys most reads are served by the value cache,
+ * with uniform keys most of them go to the data files. Contention is measured by running with {@code -t <threads>}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyValueStoreBenchmark {
+
+    @Param({"uniform", "zipfian"})
+    public String distribution;
+
+    @Param({"1000000"})
+    public int keyCount;
+
+    @Param({"100"})
+    public int valueSize;
+
+    private File directory;
+    private KeyValueStore keyValueStore;
+    private ZipfianGenerator zipfianGenerator;
+    private byte[] value;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bit-db-key-value-store").toFile();
+        keyValueStore = new KeyValueStore(directory.getPath());
+        zipfianGenerator = new ZipfianGenerator(keyCount);
+        value = new byte[valueSize];
+        ThreadLocalRandom.current().nextBytes(value);
+        for (int i = 0; i < keyCount; i++) {
+            keyValueStore.set(key(i), value);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        keyValueStore.close();
+        DatasetGenerator.delete(directory);
+    }
+
+    @Benchmark
+    public void set() throws IOException {
+        keyValueStore.set(key(nextKey()), value);
+    }
+
+    @Benchmark
+    public byte[] get() throws IOException, KeyNotFoundException {
+        return keyValueStore.get(key(nextKey()));
+    }
+
+    private int nextKey() {
+        return distribution.equals("zipfian") ? zipfianGenerator.next() :
+                ThreadLocalRandom.current().nextInt(keyCount);
+    }
+
+    private static byte[] key(int i) {
+        return DatasetGenerator.key(i).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+package com.varun.db.benchmark;
+
+import com.varun.db.cache.SegmentedLruCache;
+import com.varun.db.compression.ValueCodecs;
+import com.varun.db.exception.KeyNotFoundException;
+import com.varun.db.storage.CompactionPolicy;
+import com.varun.db.storage.KeyValueStore;
+import com.varun.db.util.FsyncMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of fetching a fan-out of keys from disk with one {@link KeyValueStore#get(byte[])} per key compared to a
+ * single {@link KeyValueStore#multiGet(List)}. The cache has no budget so every value is read from a data file, but the
+ * data files stay in the page cache, so this mostly measures the number of reads rather than disk latency.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultiGetBenchmark {
+
+    private static final int KEY_COUNT = 100_000;
+
+    @Param({"10", "500"})
+    public int fanOut;
+
+    /**
+     * random picks keys all over the data files, clustered picks keys which were written one after the other
+     */
+    @Param({"random", "clustered"})
+    public String pattern;
+
+    private File directory;
+    private KeyValueStore keyValueStore;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bit-db-multi-get").toFile();
+        keyValueStore = new KeyValueStore(directory.getPath(), FsyncMode.OS, 0, new SegmentedLruCache(0, 1),
+                new CompactionPolicy(1.0, Long.MAX_VALUE, null, null, 0), false, ValueCodecs.NONE, 512);
+        byte[] value = new byte[100];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keyValueStore.set(key(i), value);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        keyValueStore.close();
+        DatasetGenerator.delete(directory);
+    }
+
+    @Benchmark
+    public int getLoop() throws IOException, KeyNotFoundException {
+        int bytes = 0;
+        for (byte[] key : randomKeys()) {
+            bytes += keyValueStore.get(key).length;
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public List<byte[]> multiGet() throws IOException {
+        return keyValueStore.multiGet(randomKeys());
+    }
+
+    private List<byte[]> randomKeys() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<byte[]> keys = new ArrayList<>(fanOut);
+        int first = random.nextInt(KEY_COUNT - fanOut);
+        for (int i = 0; i < fanOut; i++) {
+            keys.add(key(pattern.equals("clustered") ? first + i : random.nextInt(KEY_COUNT)));
+        }
+        return keys;
+    }
+
+    private static byte[] key(int i) {
+        return DatasetGenerator.key(i).getBytes(StandardCharsets.UTF_8);
+    }
+}
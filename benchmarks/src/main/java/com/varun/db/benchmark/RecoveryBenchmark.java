@@ -0,0 +1,65 @@
+package com.varun.db.benchmark;
+
+import com.varun.db.storage.KeyValueStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold-start time of {@link KeyValueStore} over a generated dataset, for growing dataset sizes. Recovery runs on one
+ * thread per available processor, compare core counts with {@code -jvmArgsAppend -XX:ActiveProcessorCount=N}.
+ * <p>
+ * The first rebuild of a generated dataset also writes the Bloom filter of every file, which the warmup iteration
+ * takes care of. Point {@code datasetDirectory} at a dataset made by {@link DatasetGenerator} to measure a specific
+ * disk, in which case {@code datasetSizeMb} is ignored.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+
+    /**
+     * Directory of an existing dataset, empty to generate one in a temporary directory
+     */
+    @Param({""})
+    public String datasetDirectory;
+
+    @Param({"256", "1024", "2048"})
+    public int datasetSizeMb;
+
+    @Param({"64"})
+    public int segmentSizeMb;
+
+    @Param({"1000000"})
+    public int keyCount;
+
+    @Param({"256"})
+    public int valueSize;
+
+    private File directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = datasetDirectory.isEmpty() ? new DatasetGenerator(datasetSizeMb * 1024L * 1024L,
+                segmentSizeMb * 1024L * 1024L, keyCount, valueSize).generate() : new File(datasetDirectory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (datasetDirectory.isEmpty()) {
+            DatasetGenerator.delete(directory);
+        }
+    }
+
+    @Benchmark
+    public KeyValueStore rebuild() throws IOException {
+        KeyValueStore keyValueStore = new KeyValueStore(directory.getPath());
+        keyValueStore.close();
+        return keyValueStore;
+    }
+}
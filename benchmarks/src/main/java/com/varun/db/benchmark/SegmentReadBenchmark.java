@@ -0,0 +1,79 @@
+package com.varun.db.benchmark;
+
+import com.varun.db.util.FileSystemUtil;
+import com.varun.db.util.SegmentReaderPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random-read latency of an open-per-read {@link java.io.RandomAccessFile} against pooled {@link SegmentReaderPool}
+ * channels over a set of data files.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SegmentReadBenchmark {
+
+    @Param({"8"})
+    public int numberOfFiles;
+
+    @Param({"8388608"})
+    public int fileSize;
+
+    @Param({"128", "4096"})
+    public int valueSize;
+
+    private File directory;
+    private String[] fileNames;
+    private SegmentReaderPool segmentReaderPool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bit-db-segment-read").toFile();
+        fileNames = new String[numberOfFiles];
+        Random random = new Random(42);
+        byte[] bytes = new byte[fileSize];
+        for (int i = 0; i < numberOfFiles; i++) {
+            random.nextBytes(bytes);
+            fileNames[i] = directory.getPath() + "/file_" + i;
+            try (FileOutputStream outputStream = new FileOutputStream(fileNames[i])) {
+                outputStream.write(bytes);
+            }
+        }
+        segmentReaderPool = new SegmentReaderPool();
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        segmentReaderPool.close();
+        Arrays.stream(Objects.requireNonNull(directory.listFiles())).forEach(File::delete);
+        directory.delete();
+    }
+
+    @Benchmark
+    public byte[] openPerRead() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return FileSystemUtil.readNBytesFromFilePointer(fileNames[random.nextInt(numberOfFiles)],
+                random.nextInt(fileSize - valueSize), valueSize);
+    }
+
+    @Benchmark
+    public byte[] pooledChannel() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return segmentReaderPool.read(fileNames[random.nextInt(numberOfFiles)],
+                random.nextInt(fileSize - valueSize), valueSize);
+    }
+}
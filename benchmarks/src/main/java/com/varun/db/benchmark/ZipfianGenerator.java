@@ -0,0 +1,55 @@
+package com.varun.db.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws item indexes following a Zipfian distribution, where the item of rank {@code r} is picked with a probability
+ * proportional to {@code 1 / r^exponent}. Ranks are scrambled over the items, so the hot items are not the ones which
+ * were written first and do not all sit in the same data files.
+ * <p>
+ * The cumulative distribution is computed up front, which costs 8 bytes per item. Safe to be used from multiple
+ * threads.
+ */
+public class ZipfianGenerator {
+
+    /**
+     * Exponent used by YCSB, where about 10% of the items receive about 90% of the requests for a million items
+     */
+    public static final double DEFAULT_EXPONENT = 0.99;
+
+    private final double[] cumulativeProbabilities;
+    private final int[] itemsByRank;
+
+    public ZipfianGenerator(int itemCount) {
+        this(itemCount, DEFAULT_EXPONENT, 42);
+    }
+
+    public ZipfianGenerator(int itemCount, double exponent, long seed) {
+        cumulativeProbabilities = new double[itemCount];
+        double sum = 0;
+        for (int rank = 0; rank < itemCount; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulativeProbabilities[rank] = sum;
+        }
+        for (int rank = 0; rank < itemCount; rank++) {
+            cumulativeProbabilities[rank] /= sum;
+        }
+        itemsByRank = new int[itemCount];
+        Arrays.setAll(itemsByRank, i -> i);
+        Random random = new Random(seed);
+        for (int i = itemCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int item = itemsByRank[i];
+            itemsByRank[i] = itemsByRank[j];
+            itemsByRank[j] = item;
+        }
+    }
+
+    public int next() {
+        int rank = Arrays.binarySearch(cumulativeProbabilities, ThreadLocalRandom.current().nextDouble());
+        // A miss returns -(insertion point) - 1, which is the first rank whose cumulative probability is larger
+        return itemsByRank[Math.min(rank >= 0 ? rank : -rank - 1, itemsByRank.length - 1)];
+    }
+}
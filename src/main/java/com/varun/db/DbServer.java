@@ -1,51 +1,128 @@
 package com.varun.db;
 
-import com.varun.db.command.Command;
-import com.varun.db.command.CommandFactory;
-import com.varun.db.exception.InvalidCommandException;
+import com.varun.db.metrics.JmxRegistration;
+import com.varun.db.server.ClientHandler;
 import com.varun.db.storage.KeyValueStore;
+import com.varun.db.storage.ShardedKeyValueStore;
+import com.varun.db.storage.Store;
+import com.varun.db.util.DbConfig;
 
-import java.io.BufferedReader;
+import javax.management.JMException;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
-import static com.varun.db.util.FileRecordConfig.DB_DIRECTORY;
-
-@SuppressWarnings("InfiniteLoopStatement")
+/**
+ * TCP front end for {@link KeyValueStore}, or for a {@link ShardedKeyValueStore} when more than one shard is asked
+ * for. Every accepted client connection is served by its own thread, the wire format is described in
+ * {@link com.varun.db.server.FrameCodec}. Read-only commands pipelined by a client run on a pool shared by all
+ * connections, see {@link ClientHandler}.
+ */
 public class DbServer {
 
     private final int port;
-    private final BufferedReader reader;
-    private final KeyValueStore keyValueStore;
+    private final String dbDirectory;
+    private final long compactionIntervalMillis;
+    private final int pipelineMaxBatchSize;
+    private final Store keyValueStore;
+    private final ExecutorService connectionExecutor;
+    private final ExecutorService requestExecutor;
+    private final ScheduledExecutorService compactionExecutor;
+    private ServerSocket serverSocket;
+    private JmxRegistration jmxRegistration;
 
     public DbServer(int port) throws IOException {
-        this.port = port;
-        this.reader = new BufferedReader(new InputStreamReader(System.in));
-        this.keyValueStore = new KeyValueStore(DB_DIRECTORY);
+        this(DbConfig.builder().port(port).build());
+    }
+
+    public DbServer(int port, String dbDirectory) throws IOException {
+        this(DbConfig.builder().port(port).dbDirectory(dbDirectory).build());
+    }
+
+    /**
+     * @param shardCount number of shards keys are spread over, 1 to keep a single store in the DB directory
+     */
+    public DbServer(int port, String dbDirectory, int shardCount) throws IOException {
+        this(DbConfig.builder().port(port).dbDirectory(dbDirectory).shardCount(shardCount).build());
     }
 
+    /**
+     * Opens the store described by the config, which is sharded when the config asks for more than one shard
+     */
+    public DbServer(DbConfig config) throws IOException {
+        this.port = config.port();
+        this.dbDirectory = config.dbDirectory();
+        this.compactionIntervalMillis = config.compactionIntervalMillis();
+        this.pipelineMaxBatchSize = config.pipelineMaxBatchSize();
+        this.keyValueStore = config.shardCount() == 1 ? new KeyValueStore(config) : new ShardedKeyValueStore(config);
+        this.connectionExecutor = Executors.newCachedThreadPool();
+        this.requestExecutor = Executors.newFixedThreadPool(config.requestParallelism());
+        this.compactionExecutor = Executors.newScheduledThreadPool(1);
+    }
+
+    /**
+     * Registers the stats of the store over JMX, binds the server socket and starts accepting client connections in
+     * the background
+     */
     public void start() throws IOException {
+        try {
+            jmxRegistration = new JmxRegistration(dbDirectory, keyValueStore::getStats);
+        } catch (JMException e) {
+            // Stats are still served by the STATS command
+            System.out.printf("Failed to register JMX beans: %s\n", e.getMessage());
+        }
         // Background compaction process
-        ScheduledExecutorService scheduledExecutorService = Executors.newScheduledThreadPool(1);
-        scheduledExecutorService.scheduleAtFixedRate(() -> {
+        compactionExecutor.scheduleAtFixedRate(this::compactInBackground, compactionIntervalMillis,
+                compactionIntervalMillis, TimeUnit.MILLISECONDS);
+        this.serverSocket = new ServerSocket(port);
+        Thread acceptor = new Thread(this::acceptConnections, "bit-db-acceptor");
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void stop() throws IOException {
+        serverSocket.close();
+        connectionExecutor.shutdownNow();
+        requestExecutor.shutdownNow();
+        compactionExecutor.shutdownNow();
+        if (jmxRegistration != null) {
+            jmxRegistration.close();
+        }
+        keyValueStore.close();
+    }
+
+    /**
+     * A failed compaction is only logged, an exception escaping the task would cancel every later compaction
+     */
+    private void compactInBackground() {
+        try {
+            keyValueStore.performCompaction();
+        } catch (IOException | RuntimeException e) {
+            System.out.printf("Failed to compact %s: %s\n", dbDirectory, e.getMessage());
+        }
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
             try {
-                keyValueStore.performCompaction();
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connectionExecutor.execute(new ClientHandler(socket, keyValueStore, requestExecutor,
+                        pipelineMaxBatchSize));
+            } catch (SocketException e) {
+                // Server socket is closed as part of stop()
+                return;
             } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        }, 5, 5, TimeUnit.SECONDS);
-        try (ServerSocket ignored = new ServerSocket(port)) {
-            while (true) {
-                String input = reader.readLine();
-                Command command = CommandFactory.parseCommand(input);
-                command.execute(keyValueStore);
+                System.out.printf("Failed to accept connection: %s\n", e.getMessage());
             }
-        } catch (InvalidCommandException e) {
-            throw new RuntimeException(e);
         }
     }
 }
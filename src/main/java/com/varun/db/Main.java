@@ -1,12 +1,19 @@
 package com.varun.db;
 
+import com.varun.db.util.DbConfig;
+
 import java.io.IOException;
+import java.nio.file.Path;
 
 public class Main {
 
+    /**
+     * @param args optional path of a properties file with the settings, see {@link DbConfig#fromProperties}
+     */
     public static void main(String[] args) throws IOException {
-        DbServer server = new DbServer(8000);
+        DbConfig config = args.length > 0 ? DbConfig.load(Path.of(args[0])) : DbConfig.builder().build();
+        DbServer server = new DbServer(config);
         server.start();
-        System.out.printf("BitDb server started on port: %d\n", 8000);
+        System.out.printf("BitDb server started on port: %d\n", server.getPort());
     }
 }
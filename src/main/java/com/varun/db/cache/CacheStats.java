@@ -0,0 +1,26 @@
+package com.varun.db.cache;
+
+/**
+ * Point in time snapshot of the counters of a {@link ValueCache}
+ *
+ * @param hitCount      number of lookups which found a cached value
+ * @param missCount     number of lookups which did not find a cached value
+ * @param evictionCount number of entries evicted to stay within the budget
+ * @param entryCount    number of entries currently cached
+ * @param weightBytes   estimated heap used by the cached entries
+ */
+public record CacheStats(long hitCount, long missCount, long evictionCount, long entryCount, long weightBytes) {
+
+    public double hitRatio() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * @return the counters of both caches added up
+     */
+    public CacheStats merge(CacheStats other) {
+        return new CacheStats(hitCount + other.hitCount, missCount + other.missCount,
+                evictionCount + other.evictionCount, entryCount + other.entryCount, weightBytes + other.weightBytes);
+    }
+}
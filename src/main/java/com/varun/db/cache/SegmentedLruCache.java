@@ -0,0 +1,193 @@
+package com.varun.db.cache;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ValueCache} bounded by an estimated byte budget which evicts with a segmented LRU policy.
+ * <p>
+ * New entries are admitted to a probationary segment and are promoted to the protected segment on their second hit.
+ * Eviction always picks the least recently used probationary entry first, so a one-off scan over many keys can only
+ * push out other probationary entries and never the hot working set held in the protected segment.
+ * <p>
+ * The cache is split into shards, each guarded by its own lock and owning an equal share of the budget.
+ */
+public class SegmentedLruCache implements ValueCache {
+
+    private static final double PROTECTED_RATIO = 0.8;
+
+    /**
+     * Rough heap overhead of a cached entry on top of the key and value bytes: the key wrapper, the array headers,
+     * the entry object and the LinkedHashMap node.
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final Shard[] shards;
+    private final LongAdder hitCount;
+    private final LongAdder missCount;
+    private final LongAdder evictionCount;
+
+    public SegmentedLruCache(long maximumBytes, int concurrencyLevel) {
+        if (maximumBytes < 0 || concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Cache budget and concurrency level must be positive");
+        }
+        this.shards = new Shard[concurrencyLevel];
+        for (int i = 0; i < concurrencyLevel; i++) {
+            this.shards[i] = new Shard(maximumBytes / concurrencyLevel);
+        }
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+        this.evictionCount = new LongAdder();
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        Key cacheKey = new Key(key);
+        byte[] value = shardFor(cacheKey).get(cacheKey);
+        if (value == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return value;
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        Key cacheKey = new Key(key);
+        shardFor(cacheKey).put(cacheKey, value);
+    }
+
+    @Override
+    public void invalidate(byte[] key) {
+        Key cacheKey = new Key(key);
+        shardFor(cacheKey).invalidate(cacheKey);
+    }
+
+    @Override
+    public CacheStats stats() {
+        long entryCount = 0;
+        long weightBytes = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                entryCount += shard.probation.size() + shard.protectedSegment.size();
+                weightBytes += shard.probationBytes + shard.protectedBytes;
+            }
+        }
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), entryCount, weightBytes);
+    }
+
+    static int weigh(byte[] key, byte[] value) {
+        return ENTRY_OVERHEAD_BYTES + key.length + value.length;
+    }
+
+    private Shard shardFor(Key key) {
+        int hash = key.hashCode;
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    /**
+     * Gives a key array value semantics. Cached keys are never modified by the store.
+     */
+    private static final class Key {
+
+        private final byte[] bytes;
+        private final int hashCode;
+
+        private Key(byte[] bytes) {
+            this.bytes = bytes;
+            this.hashCode = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && hashCode == other.hashCode && Arrays.equals(bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private record Entry(byte[] value, int weight) {
+    }
+
+    private final class Shard {
+
+        private final long maximumBytes;
+        private final long protectedMaximumBytes;
+        private final LinkedHashMap<Key, Entry> probation;
+        private final LinkedHashMap<Key, Entry> protectedSegment;
+        private long probationBytes;
+        private long protectedBytes;
+
+        private Shard(long maximumBytes) {
+            this.maximumBytes = maximumBytes;
+            this.protectedMaximumBytes = (long) (maximumBytes * PROTECTED_RATIO);
+            this.probation = new LinkedHashMap<>(16, 0.75f, true);
+            this.protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        private synchronized byte[] get(Key key) {
+            Entry entry = protectedSegment.get(key);
+            if (entry != null) {
+                return entry.value;
+            }
+            entry = probation.remove(key);
+            if (entry == null) {
+                return null;
+            }
+            probationBytes -= entry.weight;
+            protectedSegment.put(key, entry);
+            protectedBytes += entry.weight;
+            // Overflow of the protected segment gets a second chance as the most recent probationary entry
+            while (protectedBytes > protectedMaximumBytes) {
+                Map.Entry<Key, Entry> eldest = removeEldest(protectedSegment);
+                protectedBytes -= eldest.getValue().weight;
+                probation.put(eldest.getKey(), eldest.getValue());
+                probationBytes += eldest.getValue().weight;
+            }
+            return entry.value;
+        }
+
+        private synchronized void put(Key key, byte[] value) {
+            invalidate(key);
+            Entry entry = new Entry(value, weigh(key.bytes, value));
+            if (entry.weight > maximumBytes) {
+                return;
+            }
+            probation.put(key, entry);
+            probationBytes += entry.weight;
+            while (probationBytes + protectedBytes > maximumBytes) {
+                if (!probation.isEmpty()) {
+                    probationBytes -= removeEldest(probation).getValue().weight;
+                } else {
+                    protectedBytes -= removeEldest(protectedSegment).getValue().weight;
+                }
+                evictionCount.increment();
+            }
+        }
+
+        private synchronized void invalidate(Key key) {
+            Entry entry = probation.remove(key);
+            if (entry != null) {
+                probationBytes -= entry.weight;
+            }
+            entry = protectedSegment.remove(key);
+            if (entry != null) {
+                protectedBytes -= entry.weight;
+            }
+        }
+
+        private static Map.Entry<Key, Entry> removeEldest(LinkedHashMap<Key, Entry> segment) {
+            Iterator<Map.Entry<Key, Entry>> iterator = segment.entrySet().iterator();
+            Map.Entry<Key, Entry> eldest = iterator.next();
+            iterator.remove();
+            return eldest;
+        }
+    }
+}
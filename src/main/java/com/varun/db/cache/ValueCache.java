@@ -0,0 +1,19 @@
+package com.varun.db.cache;
+
+/**
+ * Cache of values read from disk by {@link com.varun.db.storage.KeyValueStore}. Implementations must be safe to be
+ * used from multiple threads.
+ */
+public interface ValueCache {
+
+    /**
+     * @return cached value or null if the key is not cached
+     */
+    byte[] get(byte[] key);
+
+    void put(byte[] key, byte[] value);
+
+    void invalidate(byte[] key);
+
+    CacheStats stats();
+}
@@ -1,8 +1,15 @@
 package com.varun.db.command;
 
-import com.varun.db.storage.KeyValueStore;
+import com.varun.db.storage.Store;
 
 public interface Command {
 
-    void execute(KeyValueStore keyValueStore);
+    CommandResponse execute(Store keyValueStore);
+
+    /**
+     * @return true if the command does not modify the store, so it may run concurrently with other read-only commands
+     */
+    default boolean isReadOnly() {
+        return false;
+    }
 }
@@ -2,8 +2,17 @@ package com.varun.db.command;
 
 import com.varun.db.exception.InvalidCommandException;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static com.varun.db.util.FileRecordConfig.SCAN_DEFAULT_LIMIT;
+
 public class CommandFactory {
 
+    private static final Set<String> SUPPORTED_OPERATIONS = Set.of("GET", "SET", "DEL", "MGET", "MSET", "MDEL", "SCAN",
+            "STATS", "INFO");
+
     /**
      * Parses given input String to a concrete {@link Command} implementation
      *
@@ -14,12 +23,24 @@ public class CommandFactory {
     public static Command parseCommand(String input) throws InvalidCommandException {
         int cursor = 0;
         cursor = cleanWhiteSpace(input, cursor);
-        if (cursor + 2 >= input.length()) {
+        int operationStart = cursor;
+        while (cursor < input.length() && input.charAt(cursor) != ' ') {
+            cursor++;
+        }
+        String operation = input.substring(operationStart, cursor).toUpperCase();
+        if (operation.isEmpty()) {
             throw new InvalidCommandException("Operation needs to be specified in the command");
         }
-        String operation = input.substring(cursor, cursor + 3).toUpperCase();
-        cursor += 3;
+        if (!SUPPORTED_OPERATIONS.contains(operation)) {
+            throw new InvalidCommandException("Operation not supported");
+        }
         cursor = cleanWhiteSpace(input, cursor);
+        if (operation.equals("STATS") || operation.equals("INFO")) {
+            if (cursor != input.length()) {
+                throw new InvalidCommandException("STATS/INFO operation should not contain any parameters");
+            }
+            return new StatsCommand();
+        }
         if (cursor == input.length()) {
             throw new InvalidCommandException("Operands needs to be specified in the command");
         }
@@ -27,6 +48,10 @@ public class CommandFactory {
             case "GET" -> parseGetCommand(input, cursor);
             case "SET" -> parseSetCommand(input, cursor);
             case "DEL" -> parseDeleteCommand(input, cursor);
+            case "MGET" -> new MultiGetCommand(parseOperands(input, cursor));
+            case "MSET" -> parseMultiSetCommand(input, cursor);
+            case "MDEL" -> new MultiDeleteCommand(parseOperands(input, cursor));
+            case "SCAN" -> parseScanCommand(input, cursor);
             default -> throw new InvalidCommandException("Operation not supported");
         };
     }
@@ -47,10 +72,83 @@ public class CommandFactory {
         }
         String value = sb.toString();
         cursor = cleanWhiteSpace(input, cursor);
-        if (cursor != input.length()) {
+        if (cursor == input.length()) {
+            return new SetCommand(key, value);
+        }
+        List<String> options = parseOperands(input, cursor);
+        if (!options.get(0).equalsIgnoreCase("EX")) {
             throw new InvalidCommandException("SET operation should not contain parameters in addition to key & value");
         }
-        return new SetCommand(key, value);
+        if (options.size() != 2) {
+            throw new InvalidCommandException("SET operation should contain the number of seconds after EX");
+        }
+        long ttlSeconds;
+        try {
+            ttlSeconds = Long.parseLong(options.get(1));
+        } catch (NumberFormatException e) {
+            ttlSeconds = 0;
+        }
+        if (ttlSeconds <= 0) {
+            throw new InvalidCommandException("SET expiry should be a positive number of seconds");
+        }
+        return new SetCommand(key, value, ttlSeconds);
+    }
+
+    private static MultiSetCommand parseMultiSetCommand(String input, int cursor) throws InvalidCommandException {
+        List<String> operands = parseOperands(input, cursor);
+        if (operands.size() % 2 != 0) {
+            throw new InvalidCommandException("MSET operation should contain a value for every key");
+        }
+        List<String> keys = new ArrayList<>(operands.size() / 2);
+        List<String> values = new ArrayList<>(operands.size() / 2);
+        for (int i = 0; i < operands.size(); i += 2) {
+            keys.add(operands.get(i));
+            values.add(operands.get(i + 1));
+        }
+        return new MultiSetCommand(keys, values);
+    }
+
+    /**
+     * Parses either {@code <prefix>* [<limit>]} or {@code <startKey> <endKey> [<limit>]}
+     */
+    private static Command parseScanCommand(String input, int cursor) throws InvalidCommandException {
+        List<String> operands = parseOperands(input, cursor);
+        boolean isPrefixScan = operands.get(0).endsWith("*");
+        int rangeOperands = isPrefixScan ? 1 : 2;
+        if (operands.size() < rangeOperands || operands.size() > rangeOperands + 1) {
+            throw new InvalidCommandException("SCAN operation should contain a prefix ending with * or a start and "
+                    + "end key, followed by an optional limit");
+        }
+        int limit = SCAN_DEFAULT_LIMIT;
+        if (operands.size() > rangeOperands) {
+            try {
+                limit = Integer.parseInt(operands.get(rangeOperands));
+            } catch (NumberFormatException e) {
+                limit = 0;
+            }
+            if (limit <= 0) {
+                throw new InvalidCommandException("SCAN limit should be a positive number");
+            }
+        }
+        if (isPrefixScan) {
+            String pattern = operands.get(0);
+            return new PrefixScanCommand(pattern.substring(0, pattern.length() - 1), limit);
+        }
+        return new ScanCommand(operands.get(0), operands.get(1), limit);
+    }
+
+    private static List<String> parseOperands(String input, int cursor) {
+        List<String> operands = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        while (cursor < input.length()) {
+            while (cursor < input.length() && input.charAt(cursor) != ' ') {
+                sb.append(input.charAt(cursor++));
+            }
+            operands.add(sb.toString());
+            sb.setLength(0);
+            cursor = cleanWhiteSpace(input, cursor);
+        }
+        return operands;
     }
 
     private static DeleteCommand parseDeleteCommand(String input, int cursor) throws InvalidCommandException {
@@ -0,0 +1,34 @@
+package com.varun.db.command;
+
+/**
+ * Result of executing a {@link Command} which is sent back to the client
+ *
+ * @param status  outcome of the command
+ * @param message value for a successful read or a human-readable message otherwise
+ */
+public record CommandResponse(Status status, String message) {
+
+    private static final String OK_MESSAGE = "OK";
+
+    public enum Status {
+        OK,
+        NOT_FOUND,
+        ERROR
+    }
+
+    public static CommandResponse ok() {
+        return new CommandResponse(Status.OK, OK_MESSAGE);
+    }
+
+    public static CommandResponse ok(String message) {
+        return new CommandResponse(Status.OK, message);
+    }
+
+    public static CommandResponse notFound(String message) {
+        return new CommandResponse(Status.NOT_FOUND, message);
+    }
+
+    public static CommandResponse error(String message) {
+        return new CommandResponse(Status.ERROR, message);
+    }
+}
@@ -1,17 +1,18 @@
 package com.varun.db.command;
 
 import com.varun.db.exception.KeyNotFoundException;
-import com.varun.db.storage.KeyValueStore;
+import com.varun.db.storage.Store;
 
 import java.io.IOException;
 
 public record DeleteCommand(String key) implements Command {
     @Override
-    public void execute(KeyValueStore keyValueStore) {
+    public CommandResponse execute(Store keyValueStore) {
         try {
             keyValueStore.delete(key);
+            return CommandResponse.ok();
         } catch (KeyNotFoundException e) {
-            System.out.printf("Key %s not found \n", key);
+            return CommandResponse.notFound(String.format("Key %s not found", key));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -1,19 +1,24 @@
 package com.varun.db.command;
 
 import com.varun.db.exception.KeyNotFoundException;
-import com.varun.db.storage.KeyValueStore;
+import com.varun.db.storage.Store;
 
 import java.io.IOException;
 
 public record GetCommand(String key) implements Command {
     @Override
-    public void execute(KeyValueStore keyValueStore) {
+    public CommandResponse execute(Store keyValueStore) {
         try {
-            System.out.println(keyValueStore.get(key));
+            return CommandResponse.ok(keyValueStore.get(key));
         } catch (KeyNotFoundException e) {
-            System.out.printf("Key %s not found \n", key);
+            return CommandResponse.notFound(String.format("Key %s not found", key));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 }
@@ -0,0 +1,24 @@
+package com.varun.db.command;
+
+import com.varun.db.storage.Store;
+import com.varun.db.storage.WriteBatch;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Deletes all keys atomically. Keys which are not present are skipped rather than reported as not found.
+ */
+public record MultiDeleteCommand(List<String> keys) implements Command {
+    @Override
+    public CommandResponse execute(Store keyValueStore) {
+        WriteBatch writeBatch = new WriteBatch();
+        keys.forEach(writeBatch::delete);
+        try {
+            keyValueStore.write(writeBatch);
+            return CommandResponse.ok();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
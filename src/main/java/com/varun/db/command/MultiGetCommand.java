@@ -0,0 +1,39 @@
+package com.varun.db.command;
+
+import com.varun.db.storage.Store;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Looks up all keys at once and responds with one line per key: {@code +<value>} for a key that is present and
+ * {@code -} for a key that is not, so a missing key cannot be mistaken for an empty value
+ */
+public record MultiGetCommand(List<String> keys) implements Command {
+
+    public static final String FOUND_PREFIX = "+";
+
+    public static final String NOT_FOUND = "-";
+
+    @Override
+    public CommandResponse execute(Store keyValueStore) {
+        try {
+            List<byte[]> values = keyValueStore.multiGet(keys.stream()
+                    .map(key -> key.getBytes(StandardCharsets.UTF_8))
+                    .toList());
+            return CommandResponse.ok(values.stream()
+                    .map(value -> value == null ? NOT_FOUND :
+                            FOUND_PREFIX + new String(value, StandardCharsets.UTF_8))
+                    .collect(Collectors.joining("\n")));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
@@ -0,0 +1,26 @@
+package com.varun.db.command;
+
+import com.varun.db.storage.Store;
+import com.varun.db.storage.WriteBatch;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Sets all key-value pairs atomically, the value of a key is at the same index as the key
+ */
+public record MultiSetCommand(List<String> keys, List<String> values) implements Command {
+    @Override
+    public CommandResponse execute(Store keyValueStore) {
+        WriteBatch writeBatch = new WriteBatch();
+        for (int i = 0; i < keys.size(); i++) {
+            writeBatch.put(keys.get(i), values.get(i));
+        }
+        try {
+            keyValueStore.write(writeBatch);
+            return CommandResponse.ok();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
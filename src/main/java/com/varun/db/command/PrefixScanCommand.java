@@ -0,0 +1,24 @@
+package com.varun.db.command;
+
+import com.varun.db.storage.Store;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Responds with one {@code <key> <value>} line per key starting with {@code prefix}
+ */
+public record PrefixScanCommand(String prefix, int limit) implements Command {
+    @Override
+    public CommandResponse execute(Store keyValueStore) {
+        try {
+            return ScanCommand.respond(keyValueStore.prefixScan(prefix.getBytes(StandardCharsets.UTF_8), limit));
+        } catch (UnsupportedOperationException e) {
+            return CommandResponse.error(e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
@@ -0,0 +1,41 @@
+package com.varun.db.command;
+
+import com.varun.db.storage.Store;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Responds with one {@code <key> <value>} line per key from {@code startKey} inclusive to {@code endKey} exclusive
+ */
+public record ScanCommand(String startKey, String endKey, int limit) implements Command {
+    @Override
+    public CommandResponse execute(Store keyValueStore) {
+        try {
+            return respond(keyValueStore.scan(startKey.getBytes(StandardCharsets.UTF_8),
+                    endKey.getBytes(StandardCharsets.UTF_8), limit));
+        } catch (UnsupportedOperationException e) {
+            return CommandResponse.error(e.getMessage());
+        }
+    }
+
+    static CommandResponse respond(Iterator<Map.Entry<byte[], byte[]>> entries) {
+        StringBuilder sb = new StringBuilder();
+        while (entries.hasNext()) {
+            Map.Entry<byte[], byte[]> entry = entries.next();
+            if (!sb.isEmpty()) {
+                sb.append('\n');
+            }
+            sb.append(new String(entry.getKey(), StandardCharsets.UTF_8))
+                    .append(' ')
+                    .append(new String(entry.getValue(), StandardCharsets.UTF_8));
+        }
+        return CommandResponse.ok(sb.toString());
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
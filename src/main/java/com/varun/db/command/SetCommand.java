@@ -1,14 +1,24 @@
 package com.varun.db.command;
 
-import com.varun.db.storage.KeyValueStore;
+import com.varun.db.storage.Store;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @param ttlSeconds seconds after which the key expires, 0 for a key which never expires
+ */
+public record SetCommand(String key, String value, long ttlSeconds) implements Command {
+
+    public SetCommand(String key, String value) {
+        this(key, value, 0L);
+    }
 
-public record SetCommand(String key, String value) implements Command {
     @Override
-    public void execute(KeyValueStore keyValueStore) {
+    public CommandResponse execute(Store keyValueStore) {
         try {
-            keyValueStore.set(key, value);
+            keyValueStore.set(key, value, TimeUnit.SECONDS.toMillis(ttlSeconds));
+            return CommandResponse.ok();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
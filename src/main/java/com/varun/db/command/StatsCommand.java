@@ -0,0 +1,58 @@
+package com.varun.db.command;
+
+import com.varun.db.metrics.LatencyHistogram;
+import com.varun.db.metrics.StoreStats;
+import com.varun.db.storage.Store;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Responds with one {@code <name> <value>} line per gauge, counter and latency percentile of the store. Latencies are
+ * in microseconds.
+ */
+public record StatsCommand() implements Command {
+    @Override
+    public CommandResponse execute(Store keyValueStore) {
+        StoreStats stats = keyValueStore.getStats();
+        StringBuilder sb = new StringBuilder();
+        append(sb, "key_count", stats.keyCount());
+        append(sb, "key_directory_bytes", stats.keyDirectoryBytes());
+        append(sb, "segment_count", stats.segmentCount());
+        append(sb, "total_bytes", stats.totalBytes());
+        append(sb, "live_bytes", stats.liveBytes());
+        append(sb, "cache_hit_ratio", String.format(Locale.ROOT, "%.4f", stats.cacheStats().hitRatio()));
+        append(sb, "cache_entry_count", stats.cacheStats().entryCount());
+        append(sb, "cache_eviction_count", stats.cacheStats().evictionCount());
+        append(sb, "bytes_appended", stats.bytesAppended());
+        append(sb, "reclaimed_bytes", stats.reclaimedBytes());
+        append(sb, "expired_key_count", stats.expiredKeyCount());
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : stats.latencies().entrySet()) {
+            String operation = entry.getKey();
+            LatencyHistogram.Snapshot snapshot = entry.getValue();
+            append(sb, operation + "_count", snapshot.count());
+            append(sb, operation + "_mean_us", micros(snapshot.meanNanos()));
+            append(sb, operation + "_p50_us", micros(snapshot.percentileNanos(50)));
+            append(sb, operation + "_p99_us", micros(snapshot.percentileNanos(99)));
+            append(sb, operation + "_p999_us", micros(snapshot.percentileNanos(99.9)));
+            append(sb, operation + "_max_us", micros(snapshot.maxNanos()));
+        }
+        return CommandResponse.ok(sb.toString());
+    }
+
+    private static void append(StringBuilder sb, String name, Object value) {
+        if (!sb.isEmpty()) {
+            sb.append('\n');
+        }
+        sb.append(name).append(' ').append(value);
+    }
+
+    private static String micros(double nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
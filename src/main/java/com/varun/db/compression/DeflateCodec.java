@@ -0,0 +1,90 @@
+package com.varun.db.compression;
+
+import com.varun.db.exception.CorruptRecordException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * {@link ValueCodec} backed by the JDK's zlib. The compressed form is the length of the value followed by a raw
+ * deflate stream, so decompression allocates the output exactly once.
+ * <p>
+ * Deflaters and inflaters hold native memory which is expensive to set up, so every thread reuses its own.
+ */
+public class DeflateCodec implements ValueCodec {
+
+    public static final byte ID = 1;
+
+    private static final int LENGTH_PREFIX = 4;
+
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters;
+
+    /**
+     * @param level from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     */
+    public DeflateCodec(int level) {
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, /* nowrap= */ true));
+        this.inflaters = ThreadLocal.withInitial(() -> new Inflater(/* nowrap= */ true));
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] value) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(value);
+        deflater.finish();
+        // Incompressible input grows by a few bytes per 16KB block, the caller keeps the value as is in that case
+        byte[] output = new byte[LENGTH_PREFIX + value.length + (value.length >>> 12) + 64];
+        ByteBuffer.wrap(output).putInt(value.length);
+        int length = LENGTH_PREFIX;
+        while (!deflater.finished()) {
+            if (length == output.length) {
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+            length += deflater.deflate(output, length, output.length - length);
+        }
+        return Arrays.copyOf(output, length);
+    }
+
+    @Override
+    public byte[] decompress(byte[] compressed) throws IOException {
+        if (compressed.length < LENGTH_PREFIX) {
+            throw new CorruptRecordException("Compressed value is missing its length");
+        }
+        int length = ByteBuffer.wrap(compressed).getInt();
+        if (length < 0) {
+            throw new CorruptRecordException("Compressed value has a negative length");
+        }
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(compressed, LENGTH_PREFIX, compressed.length - LENGTH_PREFIX);
+        byte[] value = new byte[length];
+        try {
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int read = inflater.inflate(value, inflated, length - inflated);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += read;
+            }
+            if (inflated != length) {
+                throw new CorruptRecordException(String.format("Expected %d bytes after decompression, got %d",
+                        length, inflated));
+            }
+        } catch (DataFormatException e) {
+            throw new CorruptRecordException("Invalid deflate stream: " + e.getMessage());
+        }
+        return value;
+    }
+}
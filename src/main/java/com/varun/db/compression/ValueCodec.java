@@ -0,0 +1,20 @@
+package com.varun.db.compression;
+
+import java.io.IOException;
+
+/**
+ * Compresses values before they are written to a data file. The ID of the codec is stored in the flags of every
+ * record it compressed, so a codec must keep its ID and its format for as long as data files written with it exist.
+ * Implementations must be safe to be used from multiple threads.
+ */
+public interface ValueCodec {
+
+    /**
+     * @return ID stored in the record flags, between 1 and {@link ValueCodecs#MAX_ID}. 0 means uncompressed.
+     */
+    byte id();
+
+    byte[] compress(byte[] value);
+
+    byte[] decompress(byte[] compressed) throws IOException;
+}
@@ -0,0 +1,69 @@
+package com.varun.db.compression;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+/**
+ * Registry of the codecs a data file may have been written with. Records name their codec by ID, so every codec
+ * ever used for a data directory has to be registered before the store is opened.
+ */
+public class ValueCodecs {
+
+    public static final byte NONE_ID = 0;
+
+    public static final int MAX_ID = 7;
+
+    /**
+     * Stores values as they are
+     */
+    public static final ValueCodec NONE = new ValueCodec() {
+        @Override
+        public byte id() {
+            return NONE_ID;
+        }
+
+        @Override
+        public byte[] compress(byte[] value) {
+            return value;
+        }
+
+        @Override
+        public byte[] decompress(byte[] compressed) {
+            return compressed;
+        }
+    };
+
+    public static final ValueCodec DEFLATE = new DeflateCodec(Deflater.BEST_SPEED);
+
+    private static volatile ValueCodec[] codecs = new ValueCodec[MAX_ID + 1];
+
+    static {
+        register(NONE);
+        register(DEFLATE);
+    }
+
+    public static synchronized void register(ValueCodec codec) {
+        if (codec.id() < 0 || codec.id() > MAX_ID) {
+            throw new IllegalArgumentException(String.format("Codec ID must be between 0 and %d", MAX_ID));
+        }
+        ValueCodec registered = codecs[codec.id()];
+        if (registered != null && registered != codec) {
+            throw new IllegalArgumentException(String.format("Codec ID %d is already taken", codec.id()));
+        }
+        // Lookups are lock-free, so registering publishes a new array
+        ValueCodec[] newCodecs = codecs.clone();
+        newCodecs[codec.id()] = codec;
+        codecs = newCodecs;
+    }
+
+    public static ValueCodec forId(byte id) throws IOException {
+        ValueCodec codec = id >= 0 && id <= MAX_ID ? codecs[id] : null;
+        if (codec == null) {
+            throw new IOException(String.format("No codec registered for ID %d", id));
+        }
+        return codec;
+    }
+
+    private ValueCodecs() {
+    }
+}
@@ -0,0 +1,9 @@
+package com.varun.db.exception;
+
+import java.io.IOException;
+
+public class CorruptRecordException extends IOException {
+    public CorruptRecordException(String message) {
+        super(message);
+    }
+}
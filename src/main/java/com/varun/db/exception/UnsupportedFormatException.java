@@ -0,0 +1,9 @@
+package com.varun.db.exception;
+
+import java.io.IOException;
+
+public class UnsupportedFormatException extends IOException {
+    public UnsupportedFormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,165 @@
+package com.varun.db.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Registers the stats of a store with the platform MBean server, as one {@link StoreMXBean} under
+ * {@code com.varun.db:type=Store,name=<name>} and one {@link LatencyMXBean} per operation under
+ * {@code com.varun.db:type=Latency,name=<name>,operation=<operation>}. Every attribute read takes a fresh snapshot.
+ */
+public class JmxRegistration implements Closeable {
+
+    private static final String DOMAIN = "com.varun.db";
+
+    private final MBeanServer mBeanServer;
+    private final List<ObjectName> objectNames;
+
+    /**
+     * @param name  distinguishes stores of the same JVM, e.g. by their DB directory
+     * @param stats supplies a snapshot of the current stats of the store
+     */
+    public JmxRegistration(String name, Supplier<StoreStats> stats) throws JMException {
+        this.mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        this.objectNames = new ArrayList<>();
+        String quotedName = ObjectName.quote(name);
+        try {
+            register(new ObjectName(DOMAIN + ":type=Store,name=" + quotedName), new StoreBean(stats));
+            for (String operation : stats.get().latencies().keySet()) {
+                register(new ObjectName(DOMAIN + ":type=Latency,name=" + quotedName + ",operation=" + operation),
+                        new LatencyBean(operation, stats));
+            }
+        } catch (JMException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        for (ObjectName objectName : objectNames) {
+            try {
+                mBeanServer.unregisterMBean(objectName);
+            } catch (JMException e) {
+                System.out.printf("Failed to unregister %s: %s\n", objectName, e.getMessage());
+            }
+        }
+        objectNames.clear();
+    }
+
+    private void register(ObjectName objectName, Object mBean) throws JMException {
+        mBeanServer.registerMBean(mBean, objectName);
+        objectNames.add(objectName);
+    }
+
+    private record StoreBean(Supplier<StoreStats> stats) implements StoreMXBean {
+
+        @Override
+        public long getKeyCount() {
+            return stats.get().keyCount();
+        }
+
+        @Override
+        public long getKeyDirectoryBytes() {
+            return stats.get().keyDirectoryBytes();
+        }
+
+        @Override
+        public int getSegmentCount() {
+            return stats.get().segmentCount();
+        }
+
+        @Override
+        public long getTotalBytes() {
+            return stats.get().totalBytes();
+        }
+
+        @Override
+        public long getLiveBytes() {
+            return stats.get().liveBytes();
+        }
+
+        @Override
+        public double getCacheHitRatio() {
+            return stats.get().cacheStats().hitRatio();
+        }
+
+        @Override
+        public long getCacheEntryCount() {
+            return stats.get().cacheStats().entryCount();
+        }
+
+        @Override
+        public long getCacheWeightBytes() {
+            return stats.get().cacheStats().weightBytes();
+        }
+
+        @Override
+        public long getCacheEvictionCount() {
+            return stats.get().cacheStats().evictionCount();
+        }
+
+        @Override
+        public long getBytesAppended() {
+            return stats.get().bytesAppended();
+        }
+
+        @Override
+        public long getReclaimedBytes() {
+            return stats.get().reclaimedBytes();
+        }
+
+        @Override
+        public long getExpiredKeyCount() {
+            return stats.get().expiredKeyCount();
+        }
+    }
+
+    private record LatencyBean(String operation, Supplier<StoreStats> stats) implements LatencyMXBean {
+
+        @Override
+        public long getCount() {
+            return snapshot().count();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return snapshot().meanNanos() / 1000;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return snapshot().percentileNanos(50) / 1000.0;
+        }
+
+        @Override
+        public double getP90Micros() {
+            return snapshot().percentileNanos(90) / 1000.0;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return snapshot().percentileNanos(99) / 1000.0;
+        }
+
+        @Override
+        public double getP999Micros() {
+            return snapshot().percentileNanos(99.9) / 1000.0;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return snapshot().maxNanos() / 1000.0;
+        }
+
+        private LatencyHistogram.Snapshot snapshot() {
+            return stats.get().latencies().getOrDefault(operation, LatencyHistogram.Snapshot.EMPTY);
+        }
+    }
+}
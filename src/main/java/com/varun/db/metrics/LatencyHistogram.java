@@ -0,0 +1,125 @@
+package com.varun.db.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in the style of HdrHistogram. Every power of two range of nanoseconds is split into
+ * {@code 16} linear buckets, so a recorded value is reported with at most 1/16 relative error, using a fixed 5 KB of
+ * counters for anything from 1 ns up to about half an hour.
+ * <p>
+ * Recording is a few atomic increments and safe from any number of threads. A {@link Snapshot} taken while values are
+ * recorded may miss some of them, but never counts a value twice.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_TRACKABLE_NANOS = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final LongAdder totalNanos;
+    private final AtomicLong maxNanos;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.totalNanos = new LongAdder();
+        this.maxNanos = new AtomicLong();
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_TRACKABLE_NANOS));
+        counts.incrementAndGet(bucketIndex(value));
+        totalNanos.add(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos}, as returned by {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public Snapshot snapshot() {
+        long[] snapshotCounts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshotCounts[i] = counts.get(i);
+        }
+        return new Snapshot(snapshotCounts, totalNanos.sum(), maxNanos.get());
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return largest value which falls into the bucket
+     */
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    /**
+     * Point in time copy of a histogram. Snapshots of histograms of the same kind of operation, e.g. from different
+     * shards, can be merged.
+     */
+    public record Snapshot(long[] counts, long totalNanos, long maxNanos) {
+
+        public static final Snapshot EMPTY = new Snapshot(new long[BUCKET_COUNT], 0, 0);
+
+        public long count() {
+            return Arrays.stream(counts).sum();
+        }
+
+        public double meanNanos() {
+            long count = count();
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return value at or below which the given percentage of the recorded values fall, 0 if nothing was recorded
+         */
+        public long percentileNanos(double percentile) {
+            long count = count();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        public Snapshot merge(Snapshot other) {
+            long[] mergedCounts = counts.clone();
+            for (int i = 0; i < mergedCounts.length; i++) {
+                mergedCounts[i] += other.counts[i];
+            }
+            return new Snapshot(mergedCounts, totalNanos + other.totalNanos, Math.max(maxNanos, other.maxNanos));
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.varun.db.metrics;
+
+/**
+ * Latency of one kind of operation as exposed over JMX, in microseconds
+ */
+public interface LatencyMXBean {
+
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
@@ -0,0 +1,31 @@
+package com.varun.db.metrics;
+
+/**
+ * Gauges and counters of a store as exposed over JMX, see {@link StoreStats} for their meaning
+ */
+public interface StoreMXBean {
+
+    long getKeyCount();
+
+    long getKeyDirectoryBytes();
+
+    int getSegmentCount();
+
+    long getTotalBytes();
+
+    long getLiveBytes();
+
+    double getCacheHitRatio();
+
+    long getCacheEntryCount();
+
+    long getCacheWeightBytes();
+
+    long getCacheEvictionCount();
+
+    long getBytesAppended();
+
+    long getReclaimedBytes();
+
+    long getExpiredKeyCount();
+}
@@ -0,0 +1,49 @@
+package com.varun.db.metrics;
+
+import com.varun.db.cache.CacheStats;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.LinkedHashMap;
+
+/**
+ * Point in time snapshot of the gauges, counters and latencies of a store
+ *
+ * @param keyCount          number of keys in the key directory
+ * @param keyDirectoryBytes estimated heap used by the key directory
+ * @param segmentCount      number of data files
+ * @param totalBytes        bytes of all data files
+ * @param liveBytes         bytes of the records the key directory points to
+ * @param cacheStats        counters of the value cache
+ * @param bytesAppended     bytes appended to data files since the store was opened
+ * @param reclaimedBytes    bytes of data files freed by compaction since the store was opened
+ * @param expiredKeyCount   number of keys removed because they expired since the store was opened
+ * @param latencies         latency of every kind of operation, by operation name
+ */
+public record StoreStats(long keyCount, long keyDirectoryBytes, int segmentCount, long totalBytes, long liveBytes,
+                         CacheStats cacheStats, long bytesAppended, long reclaimedBytes, long expiredKeyCount,
+                         Map<String, LatencyHistogram.Snapshot> latencies) {
+
+    public static final String GET = "get";
+    public static final String MULTI_GET = "multi_get";
+    public static final String SET = "set";
+    public static final String DELETE = "delete";
+    public static final String WRITE_BATCH = "write_batch";
+    public static final String FSYNC = "fsync";
+    public static final String COMPACTION = "compaction";
+
+    /**
+     * Adds up the stats of two stores, e.g. two shards. Latency histograms are merged, so percentiles stay exact to
+     * the precision of the histograms.
+     */
+    public StoreStats merge(StoreStats other) {
+        Map<String, LatencyHistogram.Snapshot> mergedLatencies = new LinkedHashMap<>(latencies);
+        other.latencies.forEach((operation, snapshot) -> mergedLatencies.merge(operation, snapshot,
+                LatencyHistogram.Snapshot::merge));
+        return new StoreStats(keyCount + other.keyCount, keyDirectoryBytes + other.keyDirectoryBytes,
+                segmentCount + other.segmentCount, totalBytes + other.totalBytes, liveBytes + other.liveBytes,
+                cacheStats.merge(other.cacheStats), bytesAppended + other.bytesAppended,
+                reclaimedBytes + other.reclaimedBytes, expiredKeyCount + other.expiredKeyCount,
+                Collections.unmodifiableMap(mergedLatencies));
+    }
+}
@@ -0,0 +1,125 @@
+package com.varun.db.server;
+
+import com.varun.db.command.Command;
+import com.varun.db.command.CommandFactory;
+import com.varun.db.command.CommandResponse;
+import com.varun.db.exception.InvalidCommandException;
+import com.varun.db.storage.Store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.varun.db.util.FileRecordConfig.PIPELINE_MAX_BATCH_SIZE;
+
+/**
+ * Serves the requests of a single client connection until the client disconnects.
+ * <p>
+ * Clients may pipeline requests, i.e. send more of them before reading the responses. Every request already received
+ * when the handler gets to it is executed as part of one batch, and the responses of a batch are sent with a single
+ * flush. Within a batch, consecutive read-only commands run concurrently on the read executor while a write waits for
+ * the commands before it, so every command sees the effects of the ones sent earlier on the connection and responses
+ * go back in request order.
+ */
+public class ClientHandler implements Runnable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Socket socket;
+    private final Store keyValueStore;
+    private final Executor readExecutor;
+    private final int maxBatchSize;
+
+    public ClientHandler(Socket socket, Store keyValueStore) {
+        this(socket, keyValueStore, Runnable::run, PIPELINE_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param readExecutor runs the read-only commands of a batch, may be shared by connections
+     * @param maxBatchSize most requests executed together before their responses are flushed
+     */
+    public ClientHandler(Socket socket, Store keyValueStore, Executor readExecutor, int maxBatchSize) {
+        this.socket = socket;
+        this.keyValueStore = keyValueStore;
+        this.readExecutor = readExecutor;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public void run() {
+        try (socket;
+             DataInputStream inputStream = new DataInputStream(
+                     new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+             DataOutputStream outputStream = new DataOutputStream(
+                     new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE))) {
+            while (true) {
+                List<String> requests;
+                try {
+                    requests = readBatch(inputStream);
+                } catch (EOFException e) {
+                    return;
+                }
+                for (CompletableFuture<CommandResponse> response : execute(requests)) {
+                    FrameCodec.writeResponse(outputStream, response.join());
+                }
+                outputStream.flush();
+            }
+        } catch (IOException | RejectedExecutionException e) {
+            // Connection is dropped or the server is stopping, the client is expected to reconnect
+        }
+    }
+
+    /**
+     * Blocks for the next request and adds the ones the client already sent after it
+     */
+    private List<String> readBatch(DataInputStream inputStream) throws IOException {
+        List<String> requests = new ArrayList<>();
+        requests.add(FrameCodec.readRequest(inputStream));
+        while (requests.size() < maxBatchSize && inputStream.available() > 0) {
+            requests.add(FrameCodec.readRequest(inputStream));
+        }
+        return requests;
+    }
+
+    private List<CompletableFuture<CommandResponse>> execute(List<String> requests) {
+        List<CompletableFuture<CommandResponse>> responses = new ArrayList<>(requests.size());
+        List<CompletableFuture<CommandResponse>> pendingReads = new ArrayList<>();
+        for (String request : requests) {
+            Command command;
+            try {
+                command = CommandFactory.parseCommand(request);
+            } catch (InvalidCommandException e) {
+                responses.add(CompletableFuture.completedFuture(CommandResponse.error(e.getMessage())));
+                continue;
+            }
+            if (command.isReadOnly() && requests.size() > 1) {
+                CompletableFuture<CommandResponse> response =
+                        CompletableFuture.supplyAsync(() -> execute(command), readExecutor);
+                pendingReads.add(response);
+                responses.add(response);
+            } else {
+                CompletableFuture.allOf(pendingReads.toArray(CompletableFuture[]::new)).join();
+                pendingReads.clear();
+                responses.add(CompletableFuture.completedFuture(execute(command)));
+            }
+        }
+        return responses;
+    }
+
+    private CommandResponse execute(Command command) {
+        try {
+            return command.execute(keyValueStore);
+        } catch (RuntimeException e) {
+            return CommandResponse.error(String.format("Failed to execute command: %s", e.getMessage()));
+        }
+    }
+}
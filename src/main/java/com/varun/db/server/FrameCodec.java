@@ -0,0 +1,60 @@
+package com.varun.db.server;
+
+import com.varun.db.command.CommandResponse;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes and decodes the frames exchanged between a client and {@link com.varun.db.DbServer}.
+ * <pre>
+ * Request:  | Length(4 bytes) | Command(Length bytes, UTF-8) |
+ * Response: | Status(1 byte)  | Length(4 bytes) | Message(Length bytes, UTF-8) |
+ * </pre>
+ * Status is the ordinal of {@link CommandResponse.Status}.
+ */
+public class FrameCodec {
+
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    public static void writeRequest(DataOutputStream outputStream, String command) throws IOException {
+        byte[] bytes = command.getBytes(StandardCharsets.UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    public static String readRequest(DataInputStream inputStream) throws IOException {
+        return new String(readPayload(inputStream), StandardCharsets.UTF_8);
+    }
+
+    public static void writeResponse(DataOutputStream outputStream, CommandResponse response) throws IOException {
+        byte[] bytes = response.message().getBytes(StandardCharsets.UTF_8);
+        outputStream.writeByte(response.status().ordinal());
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    public static CommandResponse readResponse(DataInputStream inputStream) throws IOException {
+        int status = inputStream.readUnsignedByte();
+        if (status >= CommandResponse.Status.values().length) {
+            throw new IOException(String.format("Unknown response status %d", status));
+        }
+        String message = new String(readPayload(inputStream), StandardCharsets.UTF_8);
+        return new CommandResponse(CommandResponse.Status.values()[status], message);
+    }
+
+    private static byte[] readPayload(DataInputStream inputStream) throws IOException {
+        int length = inputStream.readInt();
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException(String.format("Invalid frame length %d", length));
+        }
+        byte[] bytes = new byte[length];
+        inputStream.readFully(bytes);
+        return bytes;
+    }
+
+    private FrameCodec() {
+    }
+}
@@ -0,0 +1,78 @@
+package com.varun.db.storage;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+
+import static com.varun.db.util.FileRecordConfig.BLOOM_FILTER_FALSE_POSITIVE_RATE;
+
+/**
+ * Bloom filter files are written next to sealed data files and tell which keys the data file cannot contain.
+ * <pre>
+ * +---------------------------+--------------+
+ * | Data File Length(8 bytes) | Bloom Filter |
+ * +---------------------------+--------------+
+ * </pre>
+ * The data file length guards against using a filter which does not describe the data file sitting next to it.
+ */
+public class BloomFilterFile {
+
+    public static final String BLOOM_FILTER_SUFFIX = ".bloom";
+
+    public static File bloomFilterFileFor(File dataFile) {
+        return new File(dataFile.getPath() + BLOOM_FILTER_SUFFIX);
+    }
+
+    /**
+     * Filters are safe to be used from multiple threads
+     */
+    public static BloomFilter<byte[]> create(long expectedKeys) {
+        return BloomFilter.create(Funnels.byteArrayFunnel(), Math.max(1, expectedKeys),
+                BLOOM_FILTER_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Writes the filter file and forces it to disk, so a compaction committed after it never finds it partial
+     */
+    public static void write(File bloomFilterFile, long dataFileLength, BloomFilter<byte[]> bloomFilter)
+            throws IOException {
+        FileOutputStream fileOutputStream = new FileOutputStream(bloomFilterFile);
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream))) {
+            outputStream.writeLong(dataFileLength);
+            bloomFilter.writeTo(outputStream);
+            outputStream.flush();
+            fileOutputStream.getFD().sync();
+        }
+    }
+
+    /**
+     * @return filter of the file or empty if there is no usable filter for a data file of given length
+     */
+    public static Optional<BloomFilter<byte[]>> read(File bloomFilterFile, long dataFileLength) throws IOException {
+        if (!bloomFilterFile.exists()) {
+            return Optional.empty();
+        }
+        try (DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(bloomFilterFile)))) {
+            if (inputStream.readLong() != dataFileLength) {
+                return Optional.empty();
+            }
+            return Optional.of(BloomFilter.readFrom(inputStream, Funnels.byteArrayFunnel()));
+        } catch (IOException e) {
+            // A truncated filter is ignored and rebuilt from the data file
+            return Optional.empty();
+        }
+    }
+
+    private BloomFilterFile() {
+    }
+}
@@ -0,0 +1,52 @@
+package com.varun.db.storage;
+
+import java.io.File;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which data files are worth compacting
+ *
+ * @param minDeadRatio      a file is compacted once at least this fraction of its bytes is dead
+ * @param maxGarbageBytes   once the dead bytes of all files add up to this, every file with dead bytes is compacted
+ * @param windowStart       start of the time of day compaction may run in, null to allow compaction at any time
+ * @param windowEnd         end of the time of day compaction may run in, may be before windowStart to span midnight
+ * @param maxBytesPerSecond cap on the bytes compaction reads and writes per second, 0 for no cap
+ */
+public record CompactionPolicy(double minDeadRatio, long maxGarbageBytes, LocalTime windowStart, LocalTime windowEnd,
+                               long maxBytesPerSecond) {
+
+    public boolean isWithinWindow(LocalTime now) {
+        if (windowStart == null || windowEnd == null) {
+            return true;
+        }
+        if (windowStart.isBefore(windowEnd)) {
+            return !now.isBefore(windowStart) && now.isBefore(windowEnd);
+        }
+        return !now.isBefore(windowStart) || now.isBefore(windowEnd);
+    }
+
+    /**
+     * @param sealedFiles  files which are no longer written to, sorted from the least recent to the most recent file
+     * @param segmentStats live and dead bytes per file
+     * @return files to compact in the same order, empty if compaction is not worth it
+     */
+    public List<File> selectFilesToCompact(List<File> sealedFiles, Map<String, SegmentStats> segmentStats) {
+        long garbageBytes = 0;
+        for (File file : sealedFiles) {
+            SegmentStats stats = segmentStats.get(file.getPath());
+            if (stats != null) {
+                garbageBytes += stats.deadBytes();
+            }
+        }
+        boolean compactAllGarbage = garbageBytes > 0 && garbageBytes >= maxGarbageBytes;
+        return sealedFiles.stream()
+                .filter(file -> {
+                    SegmentStats stats = segmentStats.get(file.getPath());
+                    return stats != null && stats.deadBytes() > 0 &&
+                            (compactAllGarbage || stats.deadRatio() >= minDeadRatio);
+                })
+                .toList();
+    }
+}
@@ -0,0 +1,192 @@
+package com.varun.db.storage;
+
+import com.varun.db.exception.UnsupportedFormatException;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.varun.db.util.FileRecordConfig.*;
+
+/**
+ * Streams the records of a data file one at a time through a reusable buffer, so scanning a file needs memory for
+ * a single record instead of the whole file.
+ * <pre>
+ * while (scanner.next()) {
+ *     scanner.key();
+ * }
+ * </pre>
+ * A record which is cut short at the end of the file or fails its checksum, e.g. because of a crash in the middle of
+ * a write, ends the scan. {@link #validLength()} then tells where the intact part of the file ends.
+ * <p>
+ * A file whose first record is an intact record of another format version was written by an incompatible version,
+ * and fails the scan with an {@link UnsupportedFormatException} instead, so it is never mistaken for a torn write and
+ * cut off. Any other damage to the first record, e.g. zeros left by a crash, ends the scan like a torn write.
+ */
+public class DataFileScanner implements Closeable {
+
+    private static final int RECORD_SIZE_LENGTH = 4;
+
+    private final File file;
+    private final DataInputStream inputStream;
+    private final long fileLength;
+    private byte[] recordBuffer;
+    private ByteBuffer recordView;
+    private long nextRecordOffset;
+    private long recordOffset;
+    private int recordSize;
+
+    public DataFileScanner(File file) throws IOException {
+        this.file = file;
+        this.inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        this.fileLength = file.length();
+        this.recordBuffer = new byte[256];
+        this.recordView = ByteBuffer.wrap(recordBuffer);
+    }
+
+    /**
+     * Moves to the next record
+     *
+     * @return false if there are no more intact records in the file
+     */
+    public boolean next() throws IOException {
+        try {
+            int size = inputStream.readInt();
+            // A torn size prefix must not make us allocate or read past the end of the file
+            if (size < 0 || nextRecordOffset + RECORD_SIZE_LENGTH + size > fileLength) {
+                return false;
+            }
+            if (size > recordBuffer.length) {
+                recordBuffer = new byte[Math.max(size, recordBuffer.length * 2)];
+                recordView = ByteBuffer.wrap(recordBuffer);
+            }
+            inputStream.readFully(recordBuffer, 0, size);
+            if (!FileRecord.isValid(recordBuffer, size)) {
+                if (nextRecordOffset == 0 && FileRecord.hasOtherFormat(recordBuffer, size)) {
+                    throw new UnsupportedFormatException(String.format("%s does not start with a record of format "
+                            + "version %d, it was written by an incompatible version", file.getPath(),
+                            RECORD_FORMAT_VERSION));
+                }
+                return false;
+            }
+            recordSize = size;
+        } catch (EOFException e) {
+            return false;
+        }
+        recordOffset = nextRecordOffset;
+        nextRecordOffset += RECORD_SIZE_LENGTH + recordSize;
+        return true;
+    }
+
+    /**
+     * @return length of the file up to the end of the last intact record returned by {@link #next()}
+     */
+    public long validLength() {
+        return nextRecordOffset;
+    }
+
+    /**
+     * @return whether the scan stopped before the end of the file because of a torn or corrupt record, only meaningful
+     * once {@link #next()} returned false
+     */
+    public boolean hasCorruptTail() {
+        return nextRecordOffset < fileLength;
+    }
+
+    /**
+     * @return offset of the current record including its size prefix
+     */
+    public long recordOffset() {
+        return recordOffset;
+    }
+
+    /**
+     * @return length of the current record including its size prefix
+     */
+    public int recordLength() {
+        return RECORD_SIZE_LENGTH + recordSize;
+    }
+
+    public long timestamp() {
+        return recordView.getLong(TIMESTAMP_OFFSET);
+    }
+
+    public byte flags() {
+        return recordView.get(FLAGS_OFFSET);
+    }
+
+    public byte codecId() {
+        return (byte) (flags() & FLAGS_CODEC_MASK);
+    }
+
+    public int keySize() {
+        return recordView.getInt(KEY_SIZE_OFFSET);
+    }
+
+    public int valueSize() {
+        return recordView.getInt(VALUE_SIZE_OFFSET);
+    }
+
+    public String key() {
+        return new String(recordBuffer, KEY_OFFSET, keySize(), StandardCharsets.UTF_8);
+    }
+
+    public byte[] keyBytes() {
+        return Arrays.copyOfRange(recordBuffer, KEY_OFFSET, KEY_OFFSET + keySize());
+    }
+
+    /**
+     * @return buffer holding the current record without its size prefix, overwritten by the next call to
+     * {@link #next()}. The key starts at {@code KEY_OFFSET}.
+     */
+    public byte[] recordBuffer() {
+        return recordBuffer;
+    }
+
+    public int valuePosition() {
+        return (int) (recordOffset + RECORD_SIZE_LENGTH + FileRecord.valueOffset(flags(), keySize()));
+    }
+
+    /**
+     * @return epoch milliseconds after which the value is gone, 0 if it never expires
+     */
+    public long expiresAt() {
+        return FileRecord.expiryLength(flags()) > 0 ? recordView.getLong(KEY_OFFSET + keySize()) : 0L;
+    }
+
+    /**
+     * Clears the given flag bits of the current record in the buffer and updates its checksum to match
+     */
+    public void clearFlags(int mask) {
+        byte flags = flags();
+        if ((flags & mask) == 0) {
+            return;
+        }
+        recordView.put(FLAGS_OFFSET, (byte) (flags & ~mask));
+        recordView.putInt(CHECKSUM_OFFSET, FileRecord.checksum(recordBuffer, recordSize));
+    }
+
+    /**
+     * Copies the current record including its size prefix as is
+     */
+    public void copyRecordTo(OutputStream outputStream) throws IOException {
+        outputStream.write(recordSize >>> 24);
+        outputStream.write(recordSize >>> 16);
+        outputStream.write(recordSize >>> 8);
+        outputStream.write(recordSize);
+        outputStream.write(recordBuffer, 0, recordSize);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
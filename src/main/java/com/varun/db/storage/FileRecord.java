@@ -1,59 +1,174 @@
 package com.varun.db.storage;
 
-import com.google.common.primitives.Ints;
-import com.google.common.primitives.Longs;
-
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
 
 import static com.varun.db.util.FileRecordConfig.*;
 
-public record FileRecord(long timestamp, int keySize, int valueSize, String key, String value) {
+/**
+ * A key-value pair as laid out in a data file. Keys and values are opaque bytes.
+ * <pre>
+ * +-----------------+-----------------+---------------+--------------------+-------------------+---------------------+-----+----------------------+-------+
+ * | CRC32C(4 bytes) | Version(1 byte) | Flags(1 byte) | Timestamp(8 bytes) | Key Size(4 bytes) | Value Size(4 bytes) | Key | Expires At(8 bytes)? | Value |
+ * +-----------------+-----------------+---------------+--------------------+-------------------+---------------------+-----+----------------------+-------+
+ * </pre>
+ * The checksum covers every byte after it, so a record torn by a crash or damaged on disk is detected when it is
+ * read back. The low bits of the flags hold the ID of the codec the value is compressed with, see
+ * {@link com.varun.db.compression.ValueCodecs}. The next bits mark the records of a {@link WriteBatch}, whether
+ * the record carries an expiry time in epoch milliseconds and whether it is a tombstone. Records which never expire go
+ * without the expiry time, tombstones have an empty value.
+ *
+ * @param expiresAt epoch milliseconds after which the value is gone, 0 if it never expires
+ */
+public record FileRecord(long timestamp, byte flags, int keySize, int valueSize, byte[] key, byte[] value,
+                         long expiresAt) {
+
+    // Layout of the records written before checksums and versions were added
+    private static final int LEGACY_KEY_SIZE_OFFSET = 8;
+    private static final int LEGACY_VALUE_SIZE_OFFSET = 12;
+    private static final int LEGACY_KEY_OFFSET = 16;
+
+    public FileRecord(long timestamp, byte[] key, byte[] value) {
+        this(timestamp, (byte) 0, key, value);
+    }
+
+    public FileRecord(long timestamp, byte flags, byte[] key, byte[] value) {
+        this(timestamp, flags, key, value, 0L);
+    }
+
+    public FileRecord(long timestamp, byte flags, byte[] key, byte[] value, long expiresAt) {
+        this(timestamp, (byte) (expiresAt != 0 ? flags | FLAGS_EXPIRY : flags & ~FLAGS_EXPIRY), key.length,
+                value.length, key, value, expiresAt);
+    }
+
+    /**
+     * @return record marking the key as deleted as of given time
+     */
+    public static FileRecord tombstone(long timestamp, byte flags, byte[] key) {
+        return new FileRecord(timestamp, (byte) (flags | FLAGS_TOMBSTONE), key, new byte[0]);
+    }
 
     public static FileRecord buildFileRecord(byte[] bytes) {
-        long timestamp = parseTimestamp(bytes);
-        int keySize = parseKeySize(bytes);
-        int valueSize = parseValueSize(bytes);
-        String key = parseKey(bytes, keySize);
-        String value = parseValue(bytes,/* valuePosition= */ KEY_OFFSET + keySize, valueSize);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long timestamp = buffer.getLong(TIMESTAMP_OFFSET);
+        byte flags = buffer.get(FLAGS_OFFSET);
+        int keySize = buffer.getInt(KEY_SIZE_OFFSET);
+        int valueSize = buffer.getInt(VALUE_SIZE_OFFSET);
+        byte[] key = new byte[keySize];
+        byte[] value = new byte[valueSize];
+        buffer.get(KEY_OFFSET, key);
+        long expiresAt = expiryLength(flags) > 0 ? buffer.getLong(KEY_OFFSET + keySize) : 0L;
+        buffer.get(valueOffset(flags, keySize), value);
+
+        return new FileRecord(timestamp, flags, keySize, valueSize, key, value, expiresAt);
+    }
+
+    /**
+     * @return number of bytes taken by the expiry time of a record with given flags
+     */
+    public static int expiryLength(byte flags) {
+        return (flags & FLAGS_EXPIRY) != 0 ? EXPIRY_LENGTH : 0;
+    }
+
+    /**
+     * @return offset of the value from the start of a record with given flags and key size
+     */
+    public static int valueOffset(byte flags, int keySize) {
+        return KEY_OFFSET + keySize + expiryLength(flags);
+    }
+
+    /**
+     * Checks that {@code length} bytes of the buffer hold a single well-formed record of a known version with a
+     * matching checksum
+     */
+    public static boolean isValid(byte[] buffer, int length) {
+        return hasKnownFormat(buffer, length) && ByteBuffer.wrap(buffer).getInt(CHECKSUM_OFFSET) == checksum(buffer,
+                length);
+    }
+
+    /**
+     * Checks that {@code length} bytes of the buffer are laid out like a single record of a known version, without
+     * checking its checksum
+     */
+    private static boolean hasKnownFormat(byte[] buffer, int length) {
+        if (length < KEY_OFFSET || buffer[VERSION_OFFSET] != RECORD_FORMAT_VERSION) {
+            return false;
+        }
+        ByteBuffer view = ByteBuffer.wrap(buffer, 0, length);
+        long expectedLength = (long) KEY_OFFSET + view.getInt(KEY_SIZE_OFFSET) + expiryLength(view.get(FLAGS_OFFSET))
+                + view.getInt(VALUE_SIZE_OFFSET);
+        return view.getInt(KEY_SIZE_OFFSET) >= 0 && view.getInt(VALUE_SIZE_OFFSET) >= 0 && expectedLength == length;
+    }
 
-        return new FileRecord(timestamp, keySize, valueSize, key, value);
+    /**
+     * Checks whether {@code length} bytes of the buffer hold an intact record of another version: either one whose
+     * checksum matches but whose version byte is not the current one, or one laid out like the records written before
+     * checksums and versions were added, i.e. timestamp, key size, value size, key and value. Bytes left by a torn
+     * write are neither.
+     */
+    public static boolean hasOtherFormat(byte[] buffer, int length) {
+        if (length >= KEY_OFFSET && buffer[VERSION_OFFSET] != RECORD_FORMAT_VERSION
+                && ByteBuffer.wrap(buffer).getInt(CHECKSUM_OFFSET) == checksum(buffer, length)) {
+            return true;
+        }
+        if (length < LEGACY_KEY_OFFSET) {
+            return false;
+        }
+        ByteBuffer view = ByteBuffer.wrap(buffer, 0, length);
+        int keySize = view.getInt(LEGACY_KEY_SIZE_OFFSET);
+        int valueSize = view.getInt(LEGACY_VALUE_SIZE_OFFSET);
+        return keySize > 0 && valueSize >= 0 && (long) LEGACY_KEY_OFFSET + keySize + valueSize == length;
     }
 
-    private static long parseTimestamp(byte[] bytes) {
-        byte[] longBytes = Arrays.copyOfRange(bytes, TIMESTAMP_OFFSET, TIMESTAMP_OFFSET + TIMESTAMP_LENGTH);
-        return Longs.fromByteArray(longBytes);
+    /**
+     * @return checksum of the record held in the first {@code length} bytes of the buffer
+     */
+    public static int checksum(byte[] buffer, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer, VERSION_OFFSET, length - VERSION_OFFSET);
+        return (int) crc.getValue();
     }
 
-    private static int parseKeySize(byte[] bytes) {
-        byte[] intBytes = Arrays.copyOfRange(bytes, KEY_SIZE_OFFSET, KEY_SIZE_OFFSET + KEY_SIZE_LENGTH);
-        return Ints.fromByteArray(intBytes);
+    /**
+     * @return number of bytes written by {@link #writeTo(ByteBuffer)}
+     */
+    public int encodedLength() {
+        return valueOffset(flags, keySize) + valueSize;
     }
 
-    private static int parseValueSize(byte[] bytes) {
-        byte[] intBytes = Arrays.copyOfRange(bytes, VALUE_SIZE_OFFSET, VALUE_SIZE_OFFSET + VALUE_SIZE_LENGTH);
-        return Ints.fromByteArray(intBytes);
+    /**
+     * Encodes the record at the position of the buffer and advances the position past it
+     */
+    public void writeTo(ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.position(start + CHECKSUM_LENGTH);
+        buffer.put(RECORD_FORMAT_VERSION);
+        buffer.put(flags);
+        buffer.putLong(timestamp);
+        buffer.putInt(keySize);
+        buffer.putInt(valueSize);
+        buffer.put(key);
+        if (expiryLength(flags) > 0) {
+            buffer.putLong(expiresAt);
+        }
+        buffer.put(value);
+        // CRC32C is an intrinsic on current JDKs and is computed in place, without copying a direct buffer
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(start + VERSION_OFFSET).limit(buffer.position()));
+        buffer.putInt(start + CHECKSUM_OFFSET, (int) crc.getValue());
     }
 
-    private static String parseKey(byte[] bytes, int keySize) {
-        byte[] keyBytes = Arrays.copyOfRange(bytes, KEY_OFFSET, KEY_OFFSET + keySize);
-        return new String(keyBytes, StandardCharsets.UTF_8);
+    public byte codecId() {
+        return (byte) (flags & FLAGS_CODEC_MASK);
     }
 
-    private static String parseValue(byte[] bytes, int valuePosition, int valueSize) {
-        byte[] valueBytes = Arrays.copyOfRange(bytes, valuePosition, valuePosition + valueSize);
-        return new String(valueBytes, StandardCharsets.UTF_8);
+    public boolean isTombstone() {
+        return (flags & FLAGS_TOMBSTONE) != 0;
     }
 
-    public byte[] toBytes() throws IOException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        outputStream.write(Longs.toByteArray(timestamp));
-        outputStream.write(Ints.toByteArray(keySize));
-        outputStream.write(Ints.toByteArray(valueSize));
-        outputStream.write(key.getBytes());
-        outputStream.write(value.getBytes());
-        return outputStream.toByteArray();
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedLength());
+        writeTo(buffer);
+        return buffer.array();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,137 @@
+package com.varun.db.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import static com.varun.db.util.FileRecordConfig.FLAGS_CODEC_MASK;
+import static com.varun.db.util.FileRecordConfig.FLAGS_TOMBSTONE;
+
+/**
+ * Hint files are written next to compacted data files and contain just enough to rebuild the key directory for the
+ * data file without reading any values.
+ * <pre>
+ * +---------------------------+----------------------+---------+-------------------+
+ * | Data File Length(8 bytes) | Entry Count(4 bytes) | Entries | Checksum(4 bytes) |
+ * +---------------------------+----------------------+---------+-------------------+
+ *
+ * Entry:
+ * +--------------------+-------------------+---------------------+-------------------------+---------------+---------------------+-----+
+ * | Timestamp(8 bytes) | Key Size(4 bytes) | Value Size(4 bytes) | Value Position(4 bytes) | Flags(1 byte) | Expires At(8 bytes) | Key |
+ * +--------------------+-------------------+---------------------+-------------------------+---------------+---------------------+-----+
+ * </pre>
+ * The flags hold the codec ID and the tombstone bit the same way the record flags do.
+ * The data file length guards against using a hint which does not describe the data file sitting next to it, the
+ * CRC32C checksum covers everything before it.
+ */
+public class HintFile {
+
+    public static final String HINT_SUFFIX = ".hint";
+
+    private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private static final int ENTRY_HEADER_SIZE = Long.BYTES + 3 * Integer.BYTES + Byte.BYTES + Long.BYTES;
+
+    /**
+     * @param expiresAt epoch milliseconds after which the value is gone, 0 if it never expires
+     * @param tombstone whether the record marks the key as deleted
+     */
+    public record Entry(byte[] key, long timestamp, int valueSize, int valuePosition, byte codecId, long expiresAt,
+                        boolean tombstone) {
+    }
+
+    public static File hintFileFor(File dataFile) {
+        return new File(dataFile.getPath() + HINT_SUFFIX);
+    }
+
+    /**
+     * Writes the hint file and forces it to disk, so a compaction committed after it never finds it partial
+     */
+    public static void write(File hintFile, long dataFileLength, Collection<Entry> entries) throws IOException {
+        FileOutputStream fileOutputStream = new FileOutputStream(hintFile);
+        CRC32C checksum = new CRC32C();
+        try (DataOutputStream outputStream = new DataOutputStream(
+                new CheckedOutputStream(new BufferedOutputStream(fileOutputStream), checksum))) {
+            outputStream.writeLong(dataFileLength);
+            outputStream.writeInt(entries.size());
+            for (Entry entry : entries) {
+                outputStream.writeLong(entry.timestamp());
+                outputStream.writeInt(entry.key().length);
+                outputStream.writeInt(entry.valueSize());
+                outputStream.writeInt(entry.valuePosition());
+                outputStream.writeByte(entry.tombstone() ? entry.codecId() | FLAGS_TOMBSTONE : entry.codecId());
+                outputStream.writeLong(entry.expiresAt());
+                outputStream.write(entry.key());
+            }
+            outputStream.writeInt((int) checksum.getValue());
+            outputStream.flush();
+            fileOutputStream.getFD().sync();
+        }
+    }
+
+    /**
+     * @return entries of the hint file or empty if there is no usable hint file for a data file of given length, in
+     * which case the data file has to be scanned instead
+     */
+    public static Optional<List<Entry>> read(File hintFile, long dataFileLength) throws IOException {
+        if (!hintFile.exists()) {
+            return Optional.empty();
+        }
+        // Counts and sizes are checked against the bytes left before anything is allocated with them, so a corrupt
+        // hint file is ignored like a truncated one rather than failing the rebuild
+        long remainingBytes = hintFile.length() - HEADER_SIZE - Integer.BYTES;
+        CRC32C checksum = new CRC32C();
+        try (DataInputStream inputStream = new DataInputStream(
+                new CheckedInputStream(new BufferedInputStream(new FileInputStream(hintFile)), checksum))) {
+            if (remainingBytes < 0 || inputStream.readLong() != dataFileLength) {
+                return Optional.empty();
+            }
+            int entryCount = inputStream.readInt();
+            if (entryCount < 0 || entryCount > remainingBytes / ENTRY_HEADER_SIZE) {
+                return Optional.empty();
+            }
+            List<Entry> entries = new ArrayList<>(entryCount);
+            for (int i = 0; i < entryCount; i++) {
+                long timestamp = inputStream.readLong();
+                int keySize = inputStream.readInt();
+                int valueSize = inputStream.readInt();
+                int valuePosition = inputStream.readInt();
+                byte flags = inputStream.readByte();
+                long expiresAt = inputStream.readLong();
+                remainingBytes -= ENTRY_HEADER_SIZE;
+                if (keySize < 0 || keySize > remainingBytes || valueSize < 0 || valuePosition < 0
+                        || (long) valuePosition + valueSize > dataFileLength) {
+                    return Optional.empty();
+                }
+                remainingBytes -= keySize;
+                byte[] keyBytes = new byte[keySize];
+                inputStream.readFully(keyBytes);
+                entries.add(new Entry(keyBytes, timestamp, valueSize, valuePosition,
+                        (byte) (flags & FLAGS_CODEC_MASK), expiresAt, (flags & FLAGS_TOMBSTONE) != 0));
+            }
+            int expectedChecksum = (int) checksum.getValue();
+            if (remainingBytes != 0 || inputStream.readInt() != expectedChecksum) {
+                return Optional.empty();
+            }
+            return Optional.of(entries);
+        } catch (IOException e) {
+            // A truncated hint file is ignored and the data file is scanned instead
+            return Optional.empty();
+        }
+    }
+
+    private HintFile() {
+    }
+}
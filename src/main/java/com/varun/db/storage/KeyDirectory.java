@@ -0,0 +1,409 @@
+package com.varun.db.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Key directory which keeps every entry in primitive arrays instead of a {@code String} key, a {@link ValueMetadata}
+ * object and a hash map node per key.
+ * <p>
+ * Keys are stored as UTF-8 bytes in a per-shard arena and data files are referred to by small int IDs, so an entry
+ * costs a 41 byte slot plus its key bytes. Every shard is an open-addressing table with linear probing and
+ * backward-shift deletion, guarded by its own lock. {@link ValueMetadata} is only materialized on the way out.
+ */
+public class KeyDirectory {
+
+    private static final int INITIAL_SHARD_CAPACITY = 64;
+    private static final double LOAD_FACTOR = 0.75;
+    private static final int INITIAL_ARENA_BYTES = 1024;
+
+    private final Shard[] shards;
+    private final int shardShift;
+    private final ConcurrentMap<String, Integer> fileIdsByName;
+    private volatile String[] fileNames;
+
+    public KeyDirectory(int concurrencyLevel) {
+        if (concurrencyLevel <= 0 || Integer.bitCount(concurrencyLevel) != 1) {
+            throw new IllegalArgumentException("Concurrency level must be a positive power of two");
+        }
+        this.shards = new Shard[concurrencyLevel];
+        this.shardShift = Integer.SIZE - Integer.numberOfTrailingZeros(concurrencyLevel);
+        for (int i = 0; i < concurrencyLevel; i++) {
+            this.shards[i] = new Shard();
+        }
+        this.fileIdsByName = new ConcurrentHashMap<>();
+        // ID 0 marks an empty slot
+        this.fileNames = new String[]{null};
+    }
+
+    public ValueMetadata get(String key) {
+        return get(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public ValueMetadata get(byte[] key) {
+        int hash = hash(key, 0, key.length);
+        return shardFor(hash).get(key, 0, key.length, hash);
+    }
+
+    public boolean containsKey(byte[] key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return metadata previously associated with the key, null if there was none
+     */
+    public ValueMetadata put(String key, ValueMetadata valueMetadata) {
+        return put(key.getBytes(StandardCharsets.UTF_8), valueMetadata);
+    }
+
+    /**
+     * @return metadata previously associated with the key, null if there was none
+     */
+    public ValueMetadata put(byte[] key, ValueMetadata valueMetadata) {
+        return put(key, 0, key.length, valueMetadata);
+    }
+
+    /**
+     * Same as {@link #put(byte[], ValueMetadata)} for a key held in a slice of a larger buffer, which is copied
+     */
+    public ValueMetadata put(byte[] buffer, int keyOffset, int keySize, ValueMetadata valueMetadata) {
+        int hash = hash(buffer, keyOffset, keySize);
+        return shardFor(hash).put(buffer, keyOffset, keySize, hash, fileIdFor(valueMetadata.fileId()),
+                valueMetadata, null, false);
+    }
+
+    /**
+     * @return metadata already associated with the key, null if the key was added
+     */
+    public ValueMetadata putIfAbsent(byte[] key, ValueMetadata valueMetadata) {
+        int hash = hash(key, 0, key.length);
+        return shardFor(hash).put(key, 0, key.length, hash, fileIdFor(valueMetadata.fileId()), valueMetadata, null,
+                true);
+    }
+
+    /**
+     * Points the key to {@code to} only if it still points to {@code from}
+     */
+    public boolean replace(byte[] key, ValueMetadata from, ValueMetadata to) {
+        int hash = hash(key, 0, key.length);
+        return from.equals(shardFor(hash).put(key, 0, key.length, hash, fileIdFor(to.fileId()), to, from, false));
+    }
+
+    /**
+     * @return metadata previously associated with the key, null if there was none
+     */
+    public ValueMetadata remove(byte[] key) {
+        int hash = hash(key, 0, key.length);
+        return shardFor(hash).remove(key, 0, key.length, hash);
+    }
+
+    public long size() {
+        long size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Visits every entry one shard at a time. The action must not modify the key directory.
+     */
+    public void forEach(BiConsumer<byte[], ValueMetadata> action) {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (int slot = 0; slot < shard.fileIds.length; slot++) {
+                    if (shard.fileIds[slot] != 0) {
+                        int keyOffset = shard.keyOffsets[slot];
+                        action.accept(Arrays.copyOfRange(shard.keyArena, keyOffset, keyOffset + shard.keyLengths[slot]),
+                                shard.valueMetadataAt(slot));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return bytes held by the slot arrays and key arenas of all shards
+     */
+    public long memoryUsageBytes() {
+        long bytes = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                bytes += (long) shard.fileIds.length * Shard.SLOT_BYTES + shard.keyArena.length;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the largest distance of an entry from its home slot, in slots
+     */
+    int longestProbeDistance() {
+        int longest = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                int mask = shard.fileIds.length - 1;
+                for (int slot = 0; slot < shard.fileIds.length; slot++) {
+                    if (shard.fileIds[slot] != 0) {
+                        longest = Math.max(longest, (slot - (shard.hashes[slot] & mask)) & mask);
+                    }
+                }
+            }
+        }
+        return longest;
+    }
+
+    private Shard shardFor(int hash) {
+        // The low bits pick the slot within a shard, so the shard is picked with the top bits. Any fixed middle bits
+        // would overlap the slot bits once a shard grows large enough.
+        return shards.length == 1 ? shards[0] : shards[hash >>> shardShift];
+    }
+
+    private int fileIdFor(String fileName) {
+        Integer fileId = fileIdsByName.get(fileName);
+        if (fileId != null) {
+            return fileId;
+        }
+        synchronized (fileIdsByName) {
+            fileId = fileIdsByName.get(fileName);
+            if (fileId == null) {
+                String[] newFileNames = Arrays.copyOf(fileNames, fileNames.length + 1);
+                fileId = fileNames.length;
+                newFileNames[fileId] = fileName;
+                // Publish the name before the ID can show up in a slot
+                fileNames = newFileNames;
+                fileIdsByName.put(fileName, fileId);
+            }
+            return fileId;
+        }
+    }
+
+    private static int hash(byte[] buffer, int keyOffset, int keySize) {
+        int hash = 1;
+        for (int i = keyOffset; i < keyOffset + keySize; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        // Murmur3 finalizer, spreads the poorly distributed bits of the polynomial hash
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private final class Shard {
+
+        /**
+         * hash, key offset, key length, file ID, value size, value position, timestamp, flags and expiry
+         */
+        private static final int SLOT_BYTES = 6 * Integer.BYTES + 2 * Long.BYTES + Byte.BYTES;
+
+        private int[] hashes;
+        private int[] keyOffsets;
+        private int[] keyLengths;
+        private int[] fileIds;
+        private int[] valueSizes;
+        private int[] valuePositions;
+        private long[] timestamps;
+        private byte[] flags;
+        private long[] expiresAts;
+        private int size;
+        private byte[] keyArena;
+        private int arenaSize;
+        private int arenaGarbage;
+
+        private Shard() {
+            allocateSlots(INITIAL_SHARD_CAPACITY);
+            this.keyArena = new byte[INITIAL_ARENA_BYTES];
+        }
+
+        private synchronized ValueMetadata get(byte[] buffer, int keyOffset, int keySize, int hash) {
+            int slot = find(buffer, keyOffset, keySize, hash);
+            return slot < 0 ? null : valueMetadataAt(slot);
+        }
+
+        /**
+         * @param expected when not null the entry is only updated if it currently equals this
+         * @return metadata associated with the key before the call
+         */
+        private synchronized ValueMetadata put(byte[] buffer, int keyOffset, int keySize, int hash, int fileId,
+                                               ValueMetadata valueMetadata, ValueMetadata expected,
+                                               boolean onlyIfAbsent) {
+            int slot = find(buffer, keyOffset, keySize, hash);
+            if (slot >= 0) {
+                ValueMetadata previous = valueMetadataAt(slot);
+                if (!onlyIfAbsent && (expected == null || expected.equals(previous))) {
+                    setValue(slot, fileId, valueMetadata);
+                }
+                return previous;
+            }
+            if (expected != null) {
+                return null;
+            }
+            if (size + 1 > fileIds.length * LOAD_FACTOR) {
+                resize(fileIds.length * 2);
+            }
+            slot = hash & (fileIds.length - 1);
+            while (fileIds[slot] != 0) {
+                slot = (slot + 1) & (fileIds.length - 1);
+            }
+            hashes[slot] = hash;
+            keyOffsets[slot] = appendKey(buffer, keyOffset, keySize);
+            keyLengths[slot] = keySize;
+            setValue(slot, fileId, valueMetadata);
+            size++;
+            return null;
+        }
+
+        private synchronized ValueMetadata remove(byte[] buffer, int keyOffset, int keySize, int hash) {
+            int slot = find(buffer, keyOffset, keySize, hash);
+            if (slot < 0) {
+                return null;
+            }
+            ValueMetadata previous = valueMetadataAt(slot);
+            arenaGarbage += keyLengths[slot];
+            size--;
+            // Shift back the following entries of the probe sequence so lookups never stop at the freed slot
+            int mask = fileIds.length - 1;
+            int free = slot;
+            int next = (free + 1) & mask;
+            while (fileIds[next] != 0) {
+                int home = hashes[next] & mask;
+                boolean canMove = free <= next ? (home <= free || home > next) : (home <= free && home > next);
+                if (canMove) {
+                    moveSlot(next, free);
+                    free = next;
+                }
+                next = (next + 1) & mask;
+            }
+            fileIds[free] = 0;
+            return previous;
+        }
+
+        private int find(byte[] buffer, int keyOffset, int keySize, int hash) {
+            int mask = fileIds.length - 1;
+            int slot = hash & mask;
+            while (fileIds[slot] != 0) {
+                if (hashes[slot] == hash && keyLengths[slot] == keySize && Arrays.equals(keyArena,
+                        keyOffsets[slot], keyOffsets[slot] + keySize, buffer, keyOffset, keyOffset + keySize)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private ValueMetadata valueMetadataAt(int slot) {
+            return ValueMetadata.fromFlags(fileNames[fileIds[slot]], valueSizes[slot], valuePositions[slot],
+                    timestamps[slot], flags[slot], expiresAts[slot]);
+        }
+
+        private void setValue(int slot, int fileId, ValueMetadata valueMetadata) {
+            fileIds[slot] = fileId;
+            valueSizes[slot] = valueMetadata.valueSize();
+            valuePositions[slot] = valueMetadata.valuePosition();
+            timestamps[slot] = valueMetadata.timestamp();
+            flags[slot] = valueMetadata.flags();
+            expiresAts[slot] = valueMetadata.expiresAt();
+        }
+
+        private void moveSlot(int from, int to) {
+            hashes[to] = hashes[from];
+            keyOffsets[to] = keyOffsets[from];
+            keyLengths[to] = keyLengths[from];
+            fileIds[to] = fileIds[from];
+            valueSizes[to] = valueSizes[from];
+            valuePositions[to] = valuePositions[from];
+            timestamps[to] = timestamps[from];
+            flags[to] = flags[from];
+            expiresAts[to] = expiresAts[from];
+        }
+
+        private int appendKey(byte[] buffer, int keyOffset, int keySize) {
+            if (arenaSize + keySize > keyArena.length) {
+                if (arenaGarbage > arenaSize / 2) {
+                    compactArena();
+                }
+                if (arenaSize + keySize > keyArena.length) {
+                    long newLength = Math.max((long) keyArena.length * 2, (long) arenaSize + keySize);
+                    if (newLength > Integer.MAX_VALUE - 8) {
+                        throw new IllegalStateException("Key directory shard is out of key space");
+                    }
+                    keyArena = Arrays.copyOf(keyArena, (int) newLength);
+                }
+            }
+            System.arraycopy(buffer, keyOffset, keyArena, arenaSize, keySize);
+            int offset = arenaSize;
+            arenaSize += keySize;
+            return offset;
+        }
+
+        /**
+         * Drops the bytes of removed keys from the arena
+         */
+        private void compactArena() {
+            byte[] newKeyArena = new byte[keyArena.length];
+            int newArenaSize = 0;
+            for (int slot = 0; slot < fileIds.length; slot++) {
+                if (fileIds[slot] != 0) {
+                    System.arraycopy(keyArena, keyOffsets[slot], newKeyArena, newArenaSize, keyLengths[slot]);
+                    keyOffsets[slot] = newArenaSize;
+                    newArenaSize += keyLengths[slot];
+                }
+            }
+            keyArena = newKeyArena;
+            arenaSize = newArenaSize;
+            arenaGarbage = 0;
+        }
+
+        private void resize(int capacity) {
+            int[] oldHashes = hashes;
+            int[] oldKeyOffsets = keyOffsets;
+            int[] oldKeyLengths = keyLengths;
+            int[] oldFileIds = fileIds;
+            int[] oldValueSizes = valueSizes;
+            int[] oldValuePositions = valuePositions;
+            long[] oldTimestamps = timestamps;
+            byte[] oldFlags = flags;
+            long[] oldExpiresAts = expiresAts;
+            allocateSlots(capacity);
+            int mask = capacity - 1;
+            for (int oldSlot = 0; oldSlot < oldFileIds.length; oldSlot++) {
+                if (oldFileIds[oldSlot] == 0) {
+                    continue;
+                }
+                int slot = oldHashes[oldSlot] & mask;
+                while (fileIds[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[oldSlot];
+                keyOffsets[slot] = oldKeyOffsets[oldSlot];
+                keyLengths[slot] = oldKeyLengths[oldSlot];
+                fileIds[slot] = oldFileIds[oldSlot];
+                valueSizes[slot] = oldValueSizes[oldSlot];
+                valuePositions[slot] = oldValuePositions[oldSlot];
+                timestamps[slot] = oldTimestamps[oldSlot];
+                flags[slot] = oldFlags[oldSlot];
+                expiresAts[slot] = oldExpiresAts[oldSlot];
+            }
+        }
+
+        private void allocateSlots(int capacity) {
+            hashes = new int[capacity];
+            keyOffsets = new int[capacity];
+            keyLengths = new int[capacity];
+            fileIds = new int[capacity];
+            valueSizes = new int[capacity];
+            valuePositions = new int[capacity];
+            timestamps = new long[capacity];
+            flags = new byte[capacity];
+            expiresAts = new long[capacity];
+        }
+    }
+}
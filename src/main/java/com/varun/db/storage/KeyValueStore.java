@@ -1,232 +1,1197 @@
 package com.varun.db.storage;
 
-import com.google.common.primitives.Ints;
+import com.google.common.hash.BloomFilter;
+import com.google.common.util.concurrent.RateLimiter;
+import com.varun.db.cache.CacheStats;
+import com.varun.db.cache.SegmentedLruCache;
+import com.varun.db.cache.ValueCache;
+import com.varun.db.compression.ValueCodec;
+import com.varun.db.compression.ValueCodecs;
+import com.varun.db.exception.CorruptRecordException;
 import com.varun.db.exception.KeyNotFoundException;
+import com.varun.db.metrics.LatencyHistogram;
+import com.varun.db.metrics.StoreStats;
+import com.varun.db.util.DbConfig;
 import com.varun.db.util.DiskWriter;
 import com.varun.db.util.DiskWriterResponse;
 import com.varun.db.util.FileSystemUtil;
+import com.varun.db.util.FsyncMode;
+import com.varun.db.util.SegmentReaderPool;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-public class KeyValueStore {
+import static com.varun.db.util.FileRecordConfig.BLOOM_FILTER_AVERAGE_RECORD_BYTES;
+import static com.varun.db.util.FileRecordConfig.EXPIRATION_SWEEP_BATCH_SIZE;
+import static com.varun.db.util.FileRecordConfig.EXPIRY_LENGTH;
+import static com.varun.db.util.FileRecordConfig.FLAGS_BATCH;
+import static com.varun.db.util.FileRecordConfig.FLAGS_BATCH_END;
+import static com.varun.db.util.FileRecordConfig.KEY_OFFSET;
+import static com.varun.db.util.FileRecordConfig.MULTI_GET_MAX_GAP_BYTES;
+import static com.varun.db.util.FileRecordConfig.MULTI_GET_MAX_READ_BYTES;
+import static com.varun.db.util.FileRecordConfig.ORDERED_INDEX_ENABLED;
+import static com.varun.db.util.FileRecordConfig.SCAN_BATCH_SIZE;
 
-    private static final String TOMBSTONE_VALUE = "tombstone";
+/**
+ * Bitcask style key-value store which is safe to be shared across threads.
+ * <p>
+ * Reads take the shared side of {@code segmentLock}, and the lock of a single key directory shard only for the lookup
+ * itself. Writes are serialized through {@code writeLock} so that appends to the active file and the corresponding
+ * key directory updates happen in the same order. Compaction takes the exclusive side of {@code segmentLock} only while
+ * swapping in the compacted file, so readers never see a file pointer to a deleted file.
+ * <p>
+ * Every data file has a Bloom filter of its keys. The filter of the active file is sized for a full segment and filled
+ * as records are appended. Once the file is sealed, a filter sized for the keys the file actually holds is built in
+ * the background and persisted next to the file. Compaction writes the filters of its output files and recovery
+ * rebuilds any filter which is missing or stale.
+ */
+public class KeyValueStore implements Store {
 
-    private final Map<String, String> cache;
-    private final Map<String, ValueMetadata> keyToValueMetadata;
+    private final ValueCache cache;
+    private final KeyDirectory keyToValueMetadata;
     private final DiskWriter diskWriter;
+    private final SegmentReaderPool segmentReaderPool;
     private final String dbDirectory;
+    private final ReentrantLock writeLock;
+    private final ReentrantLock compactionLock;
+    private final ReadWriteLock segmentLock;
+    private final SegmentManager segmentManager;
+    private final CompactionPolicy compactionPolicy;
+    private final RateLimiter compactionRateLimiter;
+    private final boolean verifyChecksums;
+    private final ValueCodec valueCodec;
+    private final int compressionThresholdBytes;
+    private final long segmentSizeBytes;
+    private final int recoveryParallelism;
+    private final int multiGetParallelism;
+    private final ForkJoinPool multiGetPool;
+    private final NavigableSet<byte[]> orderedKeys;
+    private final NavigableSet<ExpiringKey> expiryQueue;
+    private final ScheduledExecutorService expirationExecutor;
+    private final ExecutorService bloomFilterExecutor;
+    private final Map<String, BloomFilter<byte[]>> bloomFilters;
+    // Bytes of tombstones and expired records kept by compaction, by the older file which forced them to be kept and
+    // then by the file they were kept in, guarded by compactionLock
+    private final Map<String, Map<String, Long>> retainedBytesByShadowedFile;
+    private final LatencyHistogram getLatency;
+    private final LatencyHistogram multiGetLatency;
+    private final LatencyHistogram setLatency;
+    private final LatencyHistogram deleteLatency;
+    private final LatencyHistogram writeBatchLatency;
+    private final LatencyHistogram compactionLatency;
+    private final LongAdder reclaimedBytes;
+    private final LongAdder expiredKeyCount;
+    // File the last record was appended to, guarded by writeLock
+    private String lastWrittenFileName;
 
     public KeyValueStore(String dbDirectory) throws IOException {
-        this.dbDirectory = dbDirectory;
-        this.cache = new HashMap<>();
-        this.keyToValueMetadata = new HashMap<>();
+        this(DbConfig.builder().dbDirectory(dbDirectory).build());
+    }
+
+    public KeyValueStore(String dbDirectory, FsyncMode fsyncMode, long fsyncIntervalMillis) throws IOException {
+        this(DbConfig.builder().dbDirectory(dbDirectory).fsyncMode(fsyncMode).fsyncIntervalMillis(fsyncIntervalMillis)
+                .build());
+    }
+
+    public KeyValueStore(String dbDirectory, FsyncMode fsyncMode, long fsyncIntervalMillis, ValueCache cache)
+            throws IOException {
+        this(DbConfig.builder().dbDirectory(dbDirectory).fsyncMode(fsyncMode).fsyncIntervalMillis(fsyncIntervalMillis)
+                .build(), cache);
+    }
+
+    public KeyValueStore(String dbDirectory, FsyncMode fsyncMode, long fsyncIntervalMillis, ValueCache cache,
+                         CompactionPolicy compactionPolicy, boolean verifyChecksums, ValueCodec valueCodec,
+                         int compressionThresholdBytes) throws IOException {
+        this(dbDirectory, fsyncMode, fsyncIntervalMillis, cache, compactionPolicy, verifyChecksums, valueCodec,
+                compressionThresholdBytes, ORDERED_INDEX_ENABLED);
+    }
+
+    /**
+     * @param verifyChecksums           whether every read from disk checks the record checksum, on top of the checks
+     *                                  done when the store is opened
+     * @param valueCodec                codec new values are compressed with, {@link ValueCodecs#NONE} to store them
+     *                                  as they are
+     * @param compressionThresholdBytes values smaller than this are never compressed
+     * @param orderedIndex              whether keys are also kept sorted to support {@link #scan(byte[], byte[], int)}
+     */
+    public KeyValueStore(String dbDirectory, FsyncMode fsyncMode, long fsyncIntervalMillis, ValueCache cache,
+                         CompactionPolicy compactionPolicy, boolean verifyChecksums, ValueCodec valueCodec,
+                         int compressionThresholdBytes, boolean orderedIndex) throws IOException {
+        this(DbConfig.builder().dbDirectory(dbDirectory).fsyncMode(fsyncMode).fsyncIntervalMillis(fsyncIntervalMillis)
+                .compactionPolicy(compactionPolicy).verifyChecksums(verifyChecksums).valueCodec(valueCodec)
+                .compressionThresholdBytes(compressionThresholdBytes).orderedIndex(orderedIndex).build(), cache);
+    }
+
+    /**
+     * Opens the store in the DB directory of the config, with a value cache of the configured budget
+     */
+    public KeyValueStore(DbConfig config) throws IOException {
+        this(config, new SegmentedLruCache(config.cacheMaximumBytes(), config.cacheConcurrencyLevel()));
+    }
+
+    /**
+     * @param cache cache used instead of one built from the cache settings of the config
+     */
+    public KeyValueStore(DbConfig config, ValueCache cache) throws IOException {
+        this.dbDirectory = config.dbDirectory();
+        // The data files of a sharded store live in shard directories, none of which would be looked at
+        if (new File(dbDirectory, ShardedKeyValueStore.SHARD_COUNT_FILE).exists()) {
+            throw new IllegalStateException(String.format("%s holds a sharded store, it has to be opened with its "
+                    + "shard count", dbDirectory));
+        }
+        this.verifyChecksums = config.verifyChecksums();
+        this.valueCodec = config.valueCodec();
+        this.compressionThresholdBytes = config.compressionThresholdBytes();
+        this.segmentSizeBytes = config.segmentSizeBytes();
+        this.recoveryParallelism = config.recoveryParallelism();
+        this.multiGetParallelism = config.multiGetParallelism();
+        this.cache = cache;
+        this.compactionPolicy = config.compactionPolicy();
+        this.compactionRateLimiter = compactionPolicy.maxBytesPerSecond() > 0 ?
+                RateLimiter.create(compactionPolicy.maxBytesPerSecond()) : null;
+        this.bloomFilters = new ConcurrentHashMap<>();
+        this.retainedBytesByShadowedFile = new HashMap<>();
+        this.getLatency = new LatencyHistogram();
+        this.multiGetLatency = new LatencyHistogram();
+        this.setLatency = new LatencyHistogram();
+        this.deleteLatency = new LatencyHistogram();
+        this.writeBatchLatency = new LatencyHistogram();
+        this.compactionLatency = new LatencyHistogram();
+        this.reclaimedBytes = new LongAdder();
+        this.expiredKeyCount = new LongAdder();
+        this.keyToValueMetadata = new KeyDirectory(config.keyDirectoryConcurrencyLevel());
+        this.writeLock = new ReentrantLock();
+        this.compactionLock = new ReentrantLock();
+        this.segmentLock = new ReentrantReadWriteLock();
+        this.segmentReaderPool = new SegmentReaderPool(config.maxOpenDataFiles());
+        this.multiGetPool = multiGetParallelism > 1 ? new ForkJoinPool(multiGetParallelism) : null;
+        this.orderedKeys = config.orderedIndex() ? new ConcurrentSkipListSet<>(Arrays::compareUnsigned) : null;
         FileSystemUtil.createFileIfNotExists(dbDirectory, true);
+        this.expiryQueue = new ConcurrentSkipListSet<>(Comparator.comparingLong(ExpiringKey::expiresAt)
+                .thenComparing(ExpiringKey::key, Arrays::compareUnsigned));
+        SegmentMerger.recover(dbDirectory);
+        this.segmentManager = new SegmentManager(dbDirectory);
         rebuild();
-        this.diskWriter = new DiskWriter(this.dbDirectory);
+        this.diskWriter = new DiskWriter(config, segmentManager);
+        this.bloomFilterExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bit-db-bloom-filter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long expirationSweepIntervalMillis = config.expirationSweepIntervalMillis();
+        if (expirationSweepIntervalMillis > 0) {
+            this.expirationExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "bit-db-expiration");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.expirationExecutor.scheduleWithFixedDelay(this::expireKeys, expirationSweepIntervalMillis,
+                    expirationSweepIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.expirationExecutor = null;
+        }
     }
 
-    public String get(String key) throws KeyNotFoundException, IOException {
-        if (!this.keyToValueMetadata.containsKey(key)) {
-            throw new KeyNotFoundException(String.format("Key %s not present in the storage", key));
+    @Override
+    public byte[] get(byte[] key) throws KeyNotFoundException, IOException {
+        long start = System.nanoTime();
+        try {
+            ValueMetadata valueMetadata;
+            segmentLock.readLock().lock();
+            try {
+                valueMetadata = this.keyToValueMetadata.get(key);
+                if (valueMetadata != null && !valueMetadata.isExpired(System.currentTimeMillis())) {
+                    byte[] cachedValue = this.cache.get(key);
+                    if (cachedValue != null) {
+                        return cachedValue.clone();
+                    }
+                    byte[] storedValue = verifyChecksums ? readVerified(key, valueMetadata) :
+                            segmentReaderPool.read(valueMetadata.fileId(), valueMetadata.valuePosition(),
+                                    valueMetadata.valueSize());
+                    // The cache holds decompressed values, so only misses pay for decompression
+                    byte[] value = ValueCodecs.forId(valueMetadata.codecId()).decompress(storedValue);
+                    cacheLoadedValue(key, valueMetadata, value);
+                    return value.clone();
+                }
+            } finally {
+                segmentLock.readLock().unlock();
+            }
+            if (valueMetadata != null) {
+                expireLazily(key, valueMetadata);
+            }
+            throw new KeyNotFoundException(String.format("Key %s not present in the storage", printable(key)));
+        } finally {
+            getLatency.recordSince(start);
         }
-        if (this.cache.containsKey(key)) {
-            System.out.println("Cache hit");
-            return this.cache.get(key);
+    }
+
+    /**
+     * Looks up many keys at once. Cache misses are grouped by data file and sorted by position, so values which are
+     * close to each other on disk are fetched with a single read, and different files are read in parallel.
+     *
+     * @return copies of the values in the order of the keys, null for keys which are not present
+     */
+    @Override
+    public List<byte[]> multiGet(List<byte[]> keys) throws IOException {
+        long start = System.nanoTime();
+        byte[][] values = new byte[keys.size()][];
+        List<Map.Entry<byte[], ValueMetadata>> expiredEntries = new ArrayList<>();
+        segmentLock.readLock().lock();
+        try {
+            Map<String, List<PendingRead>> pendingReadsByFile = new HashMap<>();
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < keys.size(); i++) {
+                byte[] key = keys.get(i);
+                ValueMetadata valueMetadata = this.keyToValueMetadata.get(key);
+                if (valueMetadata == null) {
+                    continue;
+                }
+                if (valueMetadata.isExpired(now)) {
+                    expiredEntries.add(Map.entry(key, valueMetadata));
+                    continue;
+                }
+                byte[] cachedValue = this.cache.get(key);
+                if (cachedValue != null) {
+                    values[i] = cachedValue.clone();
+                    continue;
+                }
+                pendingReadsByFile.computeIfAbsent(valueMetadata.fileId(), fileId -> new ArrayList<>())
+                        .add(new PendingRead(i, key, valueMetadata));
+            }
+            List<List<PendingRead>> files = new ArrayList<>(pendingReadsByFile.values());
+            if (multiGetPool == null || files.size() < 2) {
+                for (List<PendingRead> pendingReads : files) {
+                    readFile(pendingReads, values);
+                }
+            } else {
+                // Files are spread over a few tasks rather than one task each, since a read from a file with a single
+                // pending value is cheaper than handing it to another thread. The workers read while this thread holds
+                // the shared segment lock, so no file goes away under them.
+                int taskCount = Math.min(multiGetParallelism, files.size());
+                List<ForkJoinTask<Void>> tasks = new ArrayList<>(taskCount);
+                for (int t = 0; t < taskCount; t++) {
+                    int firstFile = t;
+                    tasks.add(multiGetPool.submit(() -> {
+                        for (int f = firstFile; f < files.size(); f += taskCount) {
+                            readFile(files.get(f), values);
+                        }
+                        return null;
+                    }));
+                }
+                for (ForkJoinTask<Void> task : tasks) {
+                    task.get();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading values", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Failed to read values", e.getCause());
+        } finally {
+            segmentLock.readLock().unlock();
+            multiGetLatency.recordSince(start);
+        }
+        for (Map.Entry<byte[], ValueMetadata> entry : expiredEntries) {
+            expireLazily(entry.getKey(), entry.getValue());
         }
-        ValueMetadata valueMetadata = this.keyToValueMetadata.get(key);
-        byte[] bytes = FileSystemUtil.readNBytesFromFilePointer(valueMetadata.fileId, valueMetadata.valuePosition, valueMetadata.valueSize);
-        String value = new String(bytes, StandardCharsets.UTF_8);
-        cache.put(key, value);
+        return Arrays.asList(values);
+    }
+
+    /**
+     * @param ttlMillis time after which the key is gone as if it was deleted, 0 for a key which never expires
+     */
+    @Override
+    public void set(byte[] key, byte[] value, long ttlMillis) throws IOException {
+        long start = System.nanoTime();
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("TTL must not be negative");
+        }
+        // Compression runs before taking the write lock so concurrent writers compress in parallel
+        FileRecord fileRecord = buildFileRecord(key, value, 0, ttlMillis == 0 ? 0L : expiresAt(ttlMillis));
 
-        return value;
+        DiskWriterResponse diskWriterResponse;
+        writeLock.lock();
+        try {
+            diskWriterResponse = this.diskWriter.persistToDiskForActiveFile(fileRecord);
+            ValueMetadata previousValueMetadata = this.keyToValueMetadata.put(fileRecord.key(),
+                    buildValueMetadata(fileRecord, diskWriterResponse.fileName(), diskWriterResponse.valuePosition()));
+            recordWritten(diskWriterResponse.fileName(), fileRecord, true);
+            recordDead(previousValueMetadata, fileRecord.keySize());
+            updateOrderedIndex(fileRecord.key(), true, previousValueMetadata);
+            addToBloomFilter(diskWriterResponse.fileName(), fileRecord.key());
+            if (fileRecord.expiresAt() != 0) {
+                expiryQueue.add(new ExpiringKey(fileRecord.expiresAt(), fileRecord.key().clone()));
+            }
+            // We remove the key from cache if it is present. Cache is populated only during the get path.
+            this.cache.invalidate(fileRecord.key());
+        } finally {
+            writeLock.unlock();
+        }
+        // Waiting outside the write lock lets concurrent writers share a single fsync
+        this.diskWriter.awaitDurable(diskWriterResponse.commitSequence());
+        setLatency.recordSince(start);
     }
 
-    public void set(String key, String value) throws IOException {
-        FileRecord fileRecord = new FileRecord(
-                /* timestamp= */ System.currentTimeMillis(),
-                /* keySize= */ key.getBytes().length,
-                /* valSize= */ value.getBytes().length,
-                key,
-                value);
+    @Override
+    public void delete(byte[] key) throws KeyNotFoundException, IOException {
+        long start = System.nanoTime();
+        DiskWriterResponse diskWriterResponse;
+        writeLock.lock();
+        try {
+            ValueMetadata currentValueMetadata = keyToValueMetadata.get(key);
+            if (currentValueMetadata == null || currentValueMetadata.isExpired(System.currentTimeMillis())) {
+                throw new KeyNotFoundException(String.format("Key %s not present in the storage", printable(key)));
+            }
+            FileRecord fileRecord = FileRecord.tombstone(/* timestamp= */ System.currentTimeMillis(), (byte) 0, key);
+            diskWriterResponse = this.diskWriter.persistToDiskForActiveFile(fileRecord);
+            recordWritten(diskWriterResponse.fileName(), fileRecord, false);
+            ValueMetadata previousValueMetadata = this.keyToValueMetadata.remove(key);
+            recordDead(previousValueMetadata, fileRecord.keySize());
+            updateOrderedIndex(key, false, previousValueMetadata);
+            addToBloomFilter(diskWriterResponse.fileName(), key);
+            this.cache.invalidate(key);
+        } finally {
+            writeLock.unlock();
+        }
+        this.diskWriter.awaitDurable(diskWriterResponse.commitSequence());
+        deleteLatency.recordSince(start);
+    }
 
-        // We remove the key from cache if it is present. Cache is populated only during the get path.
-        this.cache.remove(key);
+    /**
+     * Appends every operation of the batch with a single write and applies them to the key directory at once, so
+     * readers see either none or all of them. After a crash the batch is recovered only if all of its records made it
+     * to disk.
+     */
+    @Override
+    public void write(WriteBatch writeBatch) throws IOException {
+        if (writeBatch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<WriteBatch.Operation> operations = writeBatch.operations();
+        List<FileRecord> fileRecords = new ArrayList<>(operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+            WriteBatch.Operation operation = operations.get(i);
+            int flags = FLAGS_BATCH | (i == operations.size() - 1 ? FLAGS_BATCH_END : 0);
+            fileRecords.add(operation.isDelete() ?
+                    FileRecord.tombstone(/* timestamp= */ System.currentTimeMillis(), (byte) flags, operation.key()) :
+                    buildFileRecord(operation.key(), operation.value(), flags, 0L));
+        }
 
-        DiskWriterResponse diskWriterResponse = this.diskWriter.persistToDiskForActiveFile(fileRecord);
-        this.keyToValueMetadata.put(key,
-                buildValueMetadata(fileRecord, diskWriterResponse.fileName(), diskWriterResponse.valuePosition()));
+        List<DiskWriterResponse> diskWriterResponses;
+        writeLock.lock();
+        try {
+            diskWriterResponses = this.diskWriter.persistToDiskForActiveFile(fileRecords);
+            for (int i = 0; i < fileRecords.size(); i++) {
+                addToBloomFilter(diskWriterResponses.get(i).fileName(), fileRecords.get(i).key());
+            }
+            // Readers are blocked for the few key directory updates so they never see half a batch
+            segmentLock.writeLock().lock();
+            try {
+                for (int i = 0; i < fileRecords.size(); i++) {
+                    FileRecord fileRecord = fileRecords.get(i);
+                    DiskWriterResponse diskWriterResponse = diskWriterResponses.get(i);
+                    boolean live = !operations.get(i).isDelete();
+                    ValueMetadata previousValueMetadata = live ?
+                            this.keyToValueMetadata.put(fileRecord.key(), buildValueMetadata(fileRecord,
+                                    diskWriterResponse.fileName(), diskWriterResponse.valuePosition())) :
+                            this.keyToValueMetadata.remove(fileRecord.key());
+                    recordWritten(diskWriterResponse.fileName(), fileRecord, live);
+                    recordDead(previousValueMetadata, fileRecord.keySize());
+                    updateOrderedIndex(fileRecord.key(), live, previousValueMetadata);
+                    this.cache.invalidate(fileRecord.key());
+                }
+            } finally {
+                segmentLock.writeLock().unlock();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        this.diskWriter.awaitDurable(diskWriterResponses.get(diskWriterResponses.size() - 1).commitSequence());
+        writeBatchLatency.recordSince(start);
     }
 
-    public void delete(String key) throws KeyNotFoundException, IOException {
-        if (!keyToValueMetadata.containsKey(key)) {
-            throw new KeyNotFoundException(String.format("Key %s not present in the storage", key));
+    /**
+     * Streams the entries with keys from {@code startKey} inclusive to {@code endKey} exclusive in unsigned byte
+     * order. Values are fetched lazily, {@link com.varun.db.util.FileRecordConfig#SCAN_BATCH_SIZE} at a time.
+     *
+     * @param startKey first key of the range, null to start at the smallest key
+     * @param endKey   end of the range, null to scan up to the largest key
+     * @param limit    maximum number of entries returned
+     * @throws UnsupportedOperationException if the store was opened without the ordered index
+     */
+    @Override
+    public Iterator<Map.Entry<byte[], byte[]>> scan(byte[] startKey, byte[] endKey, int limit) {
+        if (orderedKeys == null) {
+            throw new UnsupportedOperationException("Scans need the ordered index to be enabled");
         }
-        this.cache.remove(key);
-        this.diskWriter.persistToDiskForActiveFile(new FileRecord(
-                /* timestamp= */ System.currentTimeMillis(),
-                /* keySize= */ key.getBytes().length,
-                /* valSize= */ TOMBSTONE_VALUE.getBytes().length,
-                key,
-                TOMBSTONE_VALUE));
+        NavigableSet<byte[]> range;
+        if (startKey != null && endKey != null) {
+            range = Arrays.compareUnsigned(startKey, endKey) < 0 ? orderedKeys.subSet(startKey, true, endKey, false) :
+                    Collections.emptyNavigableSet();
+        } else if (startKey != null) {
+            range = orderedKeys.tailSet(startKey, true);
+        } else if (endKey != null) {
+            range = orderedKeys.headSet(endKey, false);
+        } else {
+            range = orderedKeys;
+        }
+        return new ScanIterator(this, range.iterator(), limit, SCAN_BATCH_SIZE);
+    }
+
+    /**
+     * Streams the entries whose keys start with {@code prefix}, see {@link #scan(byte[], byte[], int)}
+     */
+    @Override
+    public Iterator<Map.Entry<byte[], byte[]>> prefixScan(byte[] prefix, int limit) {
+        return scan(prefix, prefixEnd(prefix), limit);
+    }
+
+    /**
+     * @return the smallest key which is larger than every key starting with the prefix, null if there is none
+     */
+    private static byte[] prefixEnd(byte[] prefix) {
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xFF) {
+                byte[] end = Arrays.copyOf(prefix, i + 1);
+                end[i]++;
+                return end;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the keys which expired by now from the key directory, so they no longer take up memory and count as
+     * dead bytes for compaction. Runs every {@link com.varun.db.util.FileRecordConfig#EXPIRATION_SWEEP_INTERVAL_MILLIS}
+     * in the background.
+     *
+     * @return number of keys removed
+     */
+    @Override
+    public int expireKeys() {
+        long now = System.currentTimeMillis();
+        int expiredKeys = 0;
+        boolean moreDue = true;
+        while (moreDue) {
+            // The write lock is given up between batches so writers are not stalled by a large sweep
+            writeLock.lock();
+            try {
+                int polled = 0;
+                while (polled < EXPIRATION_SWEEP_BATCH_SIZE && !expiryQueue.isEmpty()
+                        && expiryQueue.first().expiresAt() <= now) {
+                    ExpiringKey expiringKey = expiryQueue.pollFirst();
+                    polled++;
+                    // The queue is not updated on overwrites, so the key may have moved on to another expiry or none
+                    ValueMetadata valueMetadata = this.keyToValueMetadata.get(expiringKey.key());
+                    if (valueMetadata != null && valueMetadata.expiresAt() == expiringKey.expiresAt()) {
+                        expire(expiringKey.key(), valueMetadata);
+                        expiredKeys++;
+                    }
+                }
+                moreDue = polled == EXPIRATION_SWEEP_BATCH_SIZE;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return expiredKeys;
+    }
+
+    /**
+     * Drops a key a read found expired, unless it was overwritten or removed meanwhile. Must be called without holding
+     * the segment lock, which is taken after the write lock.
+     */
+    private void expireLazily(byte[] key, ValueMetadata valueMetadata) {
+        writeLock.lock();
+        try {
+            if (valueMetadata.equals(this.keyToValueMetadata.get(key))) {
+                expire(key, valueMetadata);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Drops an expired key, must be called while holding the write lock
+     */
+    private void expire(byte[] key, ValueMetadata valueMetadata) {
         this.keyToValueMetadata.remove(key);
+        expiredKeyCount.increment();
+        recordDead(valueMetadata, key.length);
+        updateOrderedIndex(key, false, valueMetadata);
+        this.cache.invalidate(key);
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
-    private static File[] getFilesSortedByCreationTime(String dbDirectory, boolean desc) {
-        File directory = new File(dbDirectory);
-        File[] files = directory.listFiles();
-        Optional<String> compactedFileName = Arrays.stream(Objects.requireNonNull(files))
-                .map(File::getPath)
-                .filter(path -> path.endsWith("#"))
-                .findFirst();
-        if (compactedFileName.isPresent()) {
-            File compactedFile = new File(compactedFileName.get());
-            String nameWithoutPrefix = compactedFileName.get().substring(0, compactedFileName.get().length() - 1);
-            if (Arrays.stream(files)
-                    .map(File::getPath)
-                    .anyMatch(path -> path.equals(nameWithoutPrefix))) {
-                compactedFile.delete();
-            } else {
-                File renamedFileWithoutSuffix = new File(nameWithoutPrefix);
-                compactedFile.renameTo(renamedFileWithoutSuffix);
+    @Override
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return live and dead bytes of every data file keyed by file name
+     */
+    @Override
+    public Map<String, SegmentStats> getSegmentStats() {
+        return segmentManager.stats();
+    }
+
+    /**
+     * Counters are read one after the other without a lock, so they may be off by the operations running meanwhile
+     */
+    @Override
+    public StoreStats getStats() {
+        long totalBytes = 0;
+        long liveBytes = 0;
+        int segmentCount = 0;
+        for (SegmentStats stats : segmentManager.stats().values()) {
+            totalBytes += stats.totalBytes();
+            liveBytes += stats.liveBytes();
+            segmentCount++;
+        }
+        Map<String, LatencyHistogram.Snapshot> latencies = new LinkedHashMap<>();
+        latencies.put(StoreStats.GET, getLatency.snapshot());
+        latencies.put(StoreStats.MULTI_GET, multiGetLatency.snapshot());
+        latencies.put(StoreStats.SET, setLatency.snapshot());
+        latencies.put(StoreStats.DELETE, deleteLatency.snapshot());
+        latencies.put(StoreStats.WRITE_BATCH, writeBatchLatency.snapshot());
+        latencies.put(StoreStats.FSYNC, diskWriter.getFsyncLatency());
+        latencies.put(StoreStats.COMPACTION, compactionLatency.snapshot());
+        return new StoreStats(keyToValueMetadata.size(), keyToValueMetadata.memoryUsageBytes(), segmentCount,
+                totalBytes, liveBytes, cache.stats(), diskWriter.getBytesAppended(), reclaimedBytes.sum(),
+                expiredKeyCount.sum(), Collections.unmodifiableMap(latencies));
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Filters of sealed files are finished first, as building them waits for a running compaction which in turn
+        // waits for the write lock
+        bloomFilterExecutor.shutdown();
+        try {
+            bloomFilterExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeLock.lock();
+        segmentLock.writeLock().lock();
+        try {
+            diskWriter.close();
+            persistBloomFilter(lastWrittenFileName);
+            segmentReaderPool.close();
+            if (multiGetPool != null) {
+                multiGetPool.shutdown();
             }
+            if (expirationExecutor != null) {
+                expirationExecutor.shutdownNow();
+            }
+        } finally {
+            segmentLock.writeLock().unlock();
+            writeLock.unlock();
         }
-        Arrays.sort(Objects.requireNonNull(files), (o1, o2) -> {
-            long l1 = Long.parseLong(o1.getName().split("_")[1]);
-            long l2 = Long.parseLong(o2.getName().split("_")[1]);
-            return desc ? (int) (l2 - l1) : (int) (l1 - l2);
-        });
-        return files;
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @Override
     public void performCompaction() throws IOException {
         /*
           How does compaction works?
-          1. List down files all but the currently opened file
-            - Edge case if there is only one file in addition to currently opened file, then we don't perform compaction
-          2. Start iterating from the most recent file to the least recent file
-          3. Build a mapping of key to ValueMetadata with most recent record for each key
-          4. Create a new file with name equal to name of most recent file in files that are listed in step 1 and suffix
-             it with a # sign
-          5. Write all the data from mapping to the file
-          6. Delete all listed files
-          7. Rename the file to remove the # sign
-          8. Iterate through the mapping and update original keyToValueMetadata
-
-          How is node failure handled?:
-          1. DB node crashes after building the mapping but before writing to new file
-          => No action needed. Compaction will restart the process.
-          2. DB nodes crashes after creating new file but before deleting the listed files.
-          => During rebuild, we check if there is a file with # sign and if there is a corresponding file without the
-          # sign. If yes then we remove the file with # sign. This brings back us to the scenario mentioned in 1.
-          3. DB nodes crashes after creating new file and after deleting the listed files.
-          => During rebuild, if we see a file with # sign but no corresponding file without the # sign, then we rename
-          the file to remove # sign and move ahead with rebuild. As this file contains the merged data, the
-          keyToValueMetadata will contain correct info
+          1. List down files all but the currently opened file and let the CompactionPolicy pick the ones with enough
+             dead bytes to be worth compacting. Picked files which are next to each other are merged together, one
+             run after the other
+          2. Stream every record of the run from the least recent to the most recent file
+          3. Copy the record to a new file with a # sign only if keyToValueMetadata still points to it. New files are
+             rolled over at the segment size and take over the names of the picked files
+          4. Write a commit file listing the files to be replaced or deleted
+          5. Delete the picked files and rename the new files to remove the # sign
+          6. Point keyToValueMetadata to the new location of every copied record
+
+          Node failure during compaction is handled by SegmentMerger.recover() when the store is opened.
           */
-        // Validation check
-        long numberOfFiles = Objects.requireNonNull(new File(dbDirectory).listFiles()).length;
-        if (numberOfFiles < 3) {
-            return;
+        compactionLock.lock();
+        try {
+            if (!compactionPolicy.isWithinWindow(LocalTime.now())) {
+                return;
+            }
+            // List down all but currently opened file
+            String activeFilePath = diskWriter.getActiveFilePath();
+            List<File> sealedFiles = segmentManager.segments().stream()
+                    .filter(file -> !file.getPath().equals(activeFilePath))
+                    .toList();
+            List<File> filesToCompact = compactionPolicy.selectFilesToCompact(sealedFiles, segmentManager.stats());
+            // Validation check
+            if (filesToCompact.isEmpty()) {
+                return;
+            }
+            long start = System.nanoTime();
+            for (List<File> run : adjacentRuns(sealedFiles, filesToCompact)) {
+                compact(run);
+            }
+            compactionLatency.recordSince(start);
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Splits the files to compact into runs of files which are next to each other. The output of a merge takes over the
+     * name of its most recent input file, so merging files with a file left out in between could move a tombstone or
+     * expired record past a more recent record of its key in the file left out.
+     */
+    private static List<List<File>> adjacentRuns(List<File> sealedFiles, List<File> filesToCompact) {
+        List<List<File>> runs = new ArrayList<>();
+        List<File> run = new ArrayList<>();
+        for (File file : sealedFiles) {
+            if (filesToCompact.contains(file)) {
+                run.add(file);
+            } else if (!run.isEmpty()) {
+                runs.add(run);
+                run = new ArrayList<>();
+            }
+        }
+        if (!run.isEmpty()) {
+            runs.add(run);
         }
-        // List down all but currently opened file
-        List<File> filesToCompact = Arrays.stream(getFilesSortedByCreationTime(dbDirectory, false))
-                .limit(numberOfFiles - 1)
+        return runs;
+    }
+
+    /**
+     * Merges a run of adjacent sealed files, must be called while holding the compaction lock
+     */
+    private void compact(List<File> filesToCompact) throws IOException {
+        // Files of runs merged before this one have been replaced meanwhile
+        String activeFilePath = diskWriter.getActiveFilePath();
+        List<File> sealedFiles = segmentManager.segments().stream()
+                .filter(file -> !file.getPath().equals(activeFilePath))
                 .toList();
-        // Rebuild keyToValueMetadata by processing all files
-        Map<String, ValueMetadata> compactedFilesKeyToValueMetadata = new HashMap<>();
-        Map<String, String> keyToValueMapping = new HashMap<>();
-        for (int i = filesToCompact.size() - 1; i >= 0; i--) {
-            Map<String, String> tempMapping = processFileAndReturnKeyValueMapping(filesToCompact.get(i),
-                    compactedFilesKeyToValueMetadata);
-            for (String key : tempMapping.keySet()) {
-                if (!keyToValueMapping.containsKey(key)) {
-                    keyToValueMapping.put(key, tempMapping.get(key));
-                }
-            }
-        }
-        // Create new file with '#' suffix
-        String compactedFileName = filesToCompact.get(filesToCompact.size() - 1).getPath() + "#";
-        File compactedFile = new File(compactedFileName);
-        compactedFile.createNewFile();
-        // Write the mapping to new file
-        for (Map.Entry<String, ValueMetadata> entry : compactedFilesKeyToValueMetadata.entrySet()) {
-            FileRecord fileRecord = new FileRecord(
-                    entry.getValue().timestamp,
-                    entry.getKey().getBytes().length,
-                    entry.getValue().valueSize,
-                    entry.getKey(),
-                    keyToValueMapping.get(entry.getKey())
-            );
-            DiskWriter.persistToDiskForFile(fileRecord, compactedFile);
-        }
-        // Delete the listed files
-        filesToCompact.forEach(File::delete);
-        // Rename the compacted file to remove '#' suffix
-        File renamedFileWithoutSuffix = new File(compactedFileName.substring(0, compactedFileName.length() - 1));
-        compactedFile.renameTo(renamedFileWithoutSuffix);
-        // Update existing mapping to new file
-        for (Map.Entry<String, ValueMetadata> entry : compactedFilesKeyToValueMetadata.entrySet()) {
-            if (this.keyToValueMetadata.containsKey(entry.getKey()) &&
-                    this.keyToValueMetadata.get(entry.getKey()).timestamp == entry.getValue().timestamp &&
-                    !this.keyToValueMetadata.get(entry.getKey()).fileId.equals(entry.getValue().fileId)) {
-                this.keyToValueMetadata.put(entry.getKey(), entry.getValue());
+        // Tombstones and expired records hide the older records of their key from recovery, so they can only be
+        // dropped when none of the older files left out of the merge can hold the key. The files left out are
+        // collected from the most recent one on, and every compacted file only has to check the ones after it.
+        List<File> filesOutsideMerge = new ArrayList<>();
+        Map<String, Integer> olderFilesOutsideMerge = new HashMap<>();
+        for (int i = sealedFiles.size() - 1; i >= 0; i--) {
+            File file = sealedFiles.get(i);
+            if (filesToCompact.contains(file)) {
+                olderFilesOutsideMerge.put(file.getPath(), filesOutsideMerge.size());
+            } else {
+                filesOutsideMerge.add(file);
+            }
+        }
+        long now = System.currentTimeMillis();
+        List<Map.Entry<byte[], ValueMetadata>> droppedExpiredEntries = new ArrayList<>();
+        Map<ValueMetadata, String> shadowedFiles = new HashMap<>();
+        SegmentMerger segmentMerger = new SegmentMerger(filesToCompact, segmentSizeBytes,
+                (key, valueMetadata) -> {
+                    ValueMetadata current = this.keyToValueMetadata.get(key);
+                    if (!valueMetadata.tombstone() && !valueMetadata.isExpired(now)) {
+                        return valueMetadata.equals(current);
+                    }
+                    // A more recent record of the key hides the older ones by itself
+                    if (current != null && !valueMetadata.equals(current)) {
+                        return false;
+                    }
+                    String shadowedFile = mostRecentFileMightHold(filesOutsideMerge.subList(
+                            olderFilesOutsideMerge.get(valueMetadata.fileId()), filesOutsideMerge.size()), key);
+                    if (shadowedFile != null) {
+                        shadowedFiles.put(valueMetadata, shadowedFile);
+                        return true;
+                    }
+                    // Tombstones are never in the key directory, unlike expired keys the sweep has not removed yet
+                    if (current != null) {
+                        droppedExpiredEntries.add(Map.entry(key, valueMetadata));
+                    }
+                    return false;
+                },
+                compactionRateLimiter);
+        SegmentMerger.MergeResult mergeResult = segmentMerger.merge();
+        // Writers are paused so the stats of the new files account for every overwrite. Readers are blocked only
+        // while the files are swapped and the key directory points to the new files.
+        writeLock.lock();
+        segmentLock.writeLock().lock();
+        try {
+            long compactedBytes = 0;
+            for (File file : filesToCompact) {
+                compactedBytes += file.length();
+                segmentReaderPool.close(file.getPath());
+                bloomFilters.remove(file.getPath());
+            }
+            segmentMerger.commit(dbDirectory, mergeResult);
+            bloomFilters.putAll(mergeResult.bloomFilters());
+            releaseRetainedBytes(filesToCompact);
+            // Keys which were overwritten or deleted while compaction was running no longer point to the
+            // compacted files and are left untouched. Tombstones and expired records which were kept are retained
+            // rather than dead, otherwise a file holding only those would be picked and rewritten again by every
+            // compaction until the file they hide records of is compacted.
+            Map<String, Long> outputLiveBytes = new HashMap<>();
+            Map<String, Long> outputRetainedBytes = new HashMap<>();
+            for (SegmentMerger.Relocation relocation : mergeResult.relocations()) {
+                ValueMetadata to = relocation.to();
+                if (this.keyToValueMetadata.replace(relocation.key(), relocation.from(), to)) {
+                    outputLiveBytes.merge(to.fileId(), (long) relocation.recordLength(), Long::sum);
+                } else if (to.tombstone() || to.isExpired(now)) {
+                    outputRetainedBytes.merge(to.fileId(), (long) relocation.recordLength(), Long::sum);
+                    retain(shadowedFiles.get(relocation.from()), to.fileId(), relocation.recordLength());
+                }
+            }
+            // Expired keys the sweep has not caught up with yet would otherwise point to a deleted file
+            for (Map.Entry<byte[], ValueMetadata> entry : droppedExpiredEntries) {
+                if (entry.getValue().equals(this.keyToValueMetadata.get(entry.getKey()))) {
+                    expire(entry.getKey(), entry.getValue());
+                }
             }
+            Map<String, SegmentStats> outputStats = new HashMap<>();
+            for (String outputFileName : mergeResult.outputFileNames()) {
+                long outputBytes = new File(outputFileName).length();
+                outputStats.put(outputFileName, new SegmentStats(outputBytes,
+                        outputLiveBytes.getOrDefault(outputFileName, 0L),
+                        outputRetainedBytes.getOrDefault(outputFileName, 0L)));
+                compactedBytes -= outputBytes;
+            }
+            segmentManager.replace(filesToCompact, outputStats);
+            reclaimedBytes.add(compactedBytes);
+        } finally {
+            segmentLock.writeLock().unlock();
+            writeLock.unlock();
         }
     }
 
+    /**
+     * Every file is scanned into its own key directory on a fork-join pool. The per-file key directories are then
+     * merged from the most recent file to the least recent one, so the most recent record of a key wins exactly as if
+     * the files were scanned one after the other.
+     */
     private void rebuild() throws IOException {
-        File[] files = getFilesSortedByCreationTime(dbDirectory, true);
+        List<File> files = segmentManager.segmentsNewestFirst();
+        ForkJoinPool recoveryPool = new ForkJoinPool(recoveryParallelism);
+        try {
+            List<ForkJoinTask<KeyDirectory>> tasks = new ArrayList<>(files.size());
+            for (int i = 0; i < files.size(); i++) {
+                File file = files.get(i);
+                // Only the most recent file was being appended to when the store went down
+                boolean wasActiveFile = i == 0;
+                tasks.add(recoveryPool.submit(() -> {
+                    KeyDirectory fileKeyToValueMetadata = new KeyDirectory(1);
+                    processFile(file, fileKeyToValueMetadata, wasActiveFile);
+                    loadBloomFilter(file, fileKeyToValueMetadata);
+                    return fileKeyToValueMetadata;
+                }));
+            }
+            for (ForkJoinTask<KeyDirectory> task : tasks) {
+                task.get().forEach(this.keyToValueMetadata::putIfAbsent);
+            }
+            // Tombstones and expired records take part in the merge above, so they hide older records of their key, and
+            // are only dropped afterwards. They are retained the same way compaction keeps them.
+            Map<String, Long> liveBytes = new HashMap<>();
+            Map<String, Long> retainedBytes = new HashMap<>();
+            Map<String, Integer> fileIndexes = new HashMap<>();
+            for (int i = 0; i < files.size(); i++) {
+                fileIndexes.put(files.get(i).getPath(), i);
+            }
+            List<byte[]> deadKeys = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            this.keyToValueMetadata.forEach((key, valueMetadata) -> {
+                if (valueMetadata.tombstone() || valueMetadata.isExpired(now)) {
+                    deadKeys.add(key);
+                    String shadowedFile = mostRecentFileMightHold(
+                            files.subList(fileIndexes.get(valueMetadata.fileId()) + 1, files.size()), key);
+                    if (shadowedFile != null) {
+                        int recordLength = recordLength(key.length, valueMetadata);
+                        retainedBytes.merge(valueMetadata.fileId(), (long) recordLength, Long::sum);
+                        retain(shadowedFile, valueMetadata.fileId(), recordLength);
+                    }
+                    return;
+                }
+                liveBytes.merge(valueMetadata.fileId(), (long) recordLength(key.length, valueMetadata), Long::sum);
+                if (orderedKeys != null) {
+                    orderedKeys.add(key);
+                }
+                if (valueMetadata.expiresAt() != 0) {
+                    expiryQueue.add(new ExpiringKey(valueMetadata.expiresAt(), key));
+                }
+            });
+            deadKeys.forEach(this.keyToValueMetadata::remove);
+            for (File file : files) {
+                segmentManager.putStats(file.getPath(), new SegmentStats(file.length(),
+                        liveBytes.getOrDefault(file.getPath(), 0L), retainedBytes.getOrDefault(file.getPath(), 0L)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rebuilding the key directory", e);
+        } catch (ExecutionException e) {
+            // Checked exceptions of the tasks come back wrapped by the fork-join pool
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException ioException) {
+                    throw ioException;
+                }
+            }
+            throw new IOException("Failed to rebuild the key directory", e.getCause());
+        } finally {
+            recoveryPool.shutdown();
+        }
+    }
+
+    private void processFile(File file, KeyDirectory keyToValueMetadata, boolean wasActiveFile) throws IOException {
+        Optional<List<HintFile.Entry>> hintEntries = HintFile.read(HintFile.hintFileFor(file), file.length());
+        if (hintEntries.isPresent()) {
+            for (HintFile.Entry entry : hintEntries.get()) {
+                keyToValueMetadata.put(entry.key(), new ValueMetadata(file.getPath(), entry.valueSize(),
+                        entry.valuePosition(), entry.timestamp(), entry.codecId(), entry.expiresAt(),
+                        entry.tombstone()));
+            }
+            return;
+        }
+        // Later records of a key within the same file replace the earlier ones. Keys are copied straight out of the
+        // scan buffer, except for batches which are held back until their last record shows up.
+        try (DataFileScanner scanner = new DataFileScanner(file)) {
+            List<Map.Entry<byte[], ValueMetadata>> pendingBatch = new ArrayList<>();
+            long pendingBatchOffset = 0;
+            while (scanner.next()) {
+                ValueMetadata valueMetadata = ValueMetadata.fromFlags(file.getPath(), scanner.valueSize(),
+                        scanner.valuePosition(), scanner.timestamp(), scanner.flags(), scanner.expiresAt());
+                if ((scanner.flags() & FLAGS_BATCH) == 0) {
+                    // A batch is appended with a single write, so a plain record never follows an unfinished one
+                    pendingBatch.clear();
+                    keyToValueMetadata.put(scanner.recordBuffer(), KEY_OFFSET, scanner.keySize(), valueMetadata);
+                    continue;
+                }
+                if (pendingBatch.isEmpty()) {
+                    pendingBatchOffset = scanner.recordOffset();
+                }
+                pendingBatch.add(Map.entry(scanner.keyBytes(), valueMetadata));
+                if ((scanner.flags() & FLAGS_BATCH_END) != 0) {
+                    pendingBatch.forEach(entry -> keyToValueMetadata.put(entry.getKey(), entry.getValue()));
+                    pendingBatch.clear();
+                }
+            }
+            // An unfinished batch at the end of the file is treated like a torn write
+            long validLength = pendingBatch.isEmpty() ? scanner.validLength() : pendingBatchOffset;
+            if (validLength < file.length()) {
+                handleCorruptTail(file, validLength, wasActiveFile);
+            }
+        }
+    }
+
+    /**
+     * Uses the persisted filter of the file if it still matches the file, otherwise builds it from the keys of the file
+     * and persists it. The store always appends to a new file, so every recovered file is sealed.
+     */
+    private void loadBloomFilter(File file, KeyDirectory fileKeyToValueMetadata) throws IOException {
+        File bloomFilterFile = BloomFilterFile.bloomFilterFileFor(file);
+        Optional<BloomFilter<byte[]>> persistedBloomFilter = BloomFilterFile.read(bloomFilterFile, file.length());
+        if (persistedBloomFilter.isPresent()) {
+            bloomFilters.put(file.getPath(), persistedBloomFilter.get());
+            return;
+        }
+        BloomFilter<byte[]> bloomFilter = BloomFilterFile.create(fileKeyToValueMetadata.size());
+        fileKeyToValueMetadata.forEach((key, valueMetadata) -> bloomFilter.put(key));
+        BloomFilterFile.write(bloomFilterFile, file.length(), bloomFilter);
+        bloomFilters.put(file.getPath(), bloomFilter);
+    }
+
+    /**
+     * Adds the key to the filter of the file it was appended to, must be called while holding the write lock. The
+     * writer only moves on to a new file when appending, so the previous file is sealed once a record lands elsewhere
+     * and its filter is rebuilt and persisted in the background.
+     */
+    private void addToBloomFilter(String fileName, byte[] key) {
+        if (!fileName.equals(lastWrittenFileName)) {
+            String sealedFileName = lastWrittenFileName;
+            if (sealedFileName != null) {
+                try {
+                    bloomFilterExecutor.execute(() -> persistSealedBloomFilter(sealedFileName));
+                } catch (RejectedExecutionException e) {
+                    // The store is closing, recovery builds the missing filter
+                }
+            }
+            lastWrittenFileName = fileName;
+        }
+        bloomFilters.computeIfAbsent(fileName,
+                name -> BloomFilterFile.create(segmentSizeBytes / BLOOM_FILTER_AVERAGE_RECORD_BYTES)).put(key);
+    }
+
+    /**
+     * Holds the compaction lock, so the sealed file is not compacted away while its keys are read
+     */
+    private void persistSealedBloomFilter(String fileName) {
+        compactionLock.lock();
+        try {
+            persistBloomFilter(fileName);
+        } catch (IOException e) {
+            // The filter sized for a full segment stays in use and recovery builds the missing file
+            System.out.printf("Failed to persist Bloom filter of %s: %s\n", fileName, e.getMessage());
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the filter of a file which is no longer appended to with one sized for the keys it holds and persists
+     * it next to the file. The filter of the active file is sized for a full segment, which would otherwise be kept in
+     * memory and on disk for every sealed file no matter how few keys it holds.
+     */
+    private void persistBloomFilter(String fileName) throws IOException {
+        BloomFilter<byte[]> activeBloomFilter = fileName == null ? null : bloomFilters.get(fileName);
+        // Compaction may have replaced the file already
+        if (activeBloomFilter == null) {
+            return;
+        }
+        File file = new File(fileName);
+        BloomFilter<byte[]> bloomFilter = BloomFilterFile.create(activeBloomFilter.approximateElementCount());
+        try (DataFileScanner scanner = new DataFileScanner(file)) {
+            while (scanner.next()) {
+                bloomFilter.put(scanner.keyBytes());
+            }
+        }
+        BloomFilterFile.write(BloomFilterFile.bloomFilterFileFor(file), file.length(), bloomFilter);
+        bloomFilters.replace(fileName, activeBloomFilter, bloomFilter);
+    }
+
+    /**
+     * @param files files sorted from the most recent to the least recent one, a file without a filter might hold any
+     *              key
+     * @return the most recent of the files which might hold a record of the key, null if none can
+     */
+    private String mostRecentFileMightHold(List<File> files, byte[] key) {
         for (File file : files) {
-            processFile(file, this.keyToValueMetadata);
+            BloomFilter<byte[]> bloomFilter = bloomFilters.get(file.getPath());
+            if (bloomFilter == null || bloomFilter.mightContain(key)) {
+                return file.getPath();
+            }
         }
+        return null;
     }
 
-    private void processFile(File file, Map<String, ValueMetadata> keyToValueMetadata) throws IOException {
-        processFileAndReturnKeyValueMapping(file, keyToValueMetadata);
+    /**
+     * Remembers that a record was kept in a file because of a record of its key the shadowed file might hold
+     */
+    private void retain(String shadowedFileName, String fileName, int recordLength) {
+        retainedBytesByShadowedFile.computeIfAbsent(shadowedFileName, name -> new HashMap<>())
+                .merge(fileName, (long) recordLength, Long::sum);
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
-    private Map<String, String> processFileAndReturnKeyValueMapping(File file, Map<String, ValueMetadata> keyToValueMetadata) throws IOException {
-        Map<String, String> keyToValueMapping = new HashMap<>();
-        byte[] bytes = new byte[(int) file.length()];
-        try (FileInputStream inputStream = new FileInputStream(file)) {
-            inputStream.read(bytes);
+    /**
+     * Forgets the records kept in the compacted files, and turns the records other files kept because of the compacted
+     * files into garbage. If a compacted file still holds the key, compacting the file which kept the record keeps it
+     * again.
+     */
+    private void releaseRetainedBytes(List<File> compactedFiles) {
+        for (File file : compactedFiles) {
+            for (Map<String, Long> retainedBytesByFile : retainedBytesByShadowedFile.values()) {
+                retainedBytesByFile.remove(file.getPath());
+            }
         }
-        int byteCursor = 0;
-        while (byteCursor < bytes.length) {
-            int recordSize = Ints.fromByteArray(Arrays.copyOfRange(bytes, byteCursor, byteCursor + 4));
-            byteCursor += 4;
-            byte[] record = Arrays.copyOfRange(bytes, byteCursor, byteCursor + recordSize);
-            FileRecord fileRecord = FileRecord.buildFileRecord(record);
-            int valuePosition = (
-                    byteCursor +
-                            /* timestamp */ 8 +
-                            /* key size */ 4 +
-                            /* value size */ 4 +
-                            /* key */ fileRecord.key().getBytes().length
-            );
-            if (!keyToValueMetadata.containsKey(fileRecord.key()) ||
-                    keyToValueMetadata.get(fileRecord.key()).fileId.equals(file.getPath())) {
-                keyToValueMetadata.put(fileRecord.key(),
-                        buildValueMetadata(fileRecord, file.getPath(), valuePosition));
-                keyToValueMapping.put(fileRecord.key(), fileRecord.value());
+        for (File file : compactedFiles) {
+            Map<String, Long> retainedBytesByFile = retainedBytesByShadowedFile.remove(file.getPath());
+            if (retainedBytesByFile == null) {
+                continue;
+            }
+            for (Map.Entry<String, Long> entry : retainedBytesByFile.entrySet()) {
+                SegmentStats stats = segmentManager.stats(entry.getKey());
+                if (stats != null) {
+                    stats.recordReleased(entry.getValue());
+                }
             }
-            byteCursor += recordSize;
         }
-        return keyToValueMapping;
     }
 
-    private ValueMetadata buildValueMetadata(FileRecord fileRecord, String fileName, int valuePosition) {
-        return new ValueMetadata(fileName, fileRecord.valueSize(), valuePosition, fileRecord.timestamp());
+    /**
+     * A torn write at the end of the file that was active during a crash is expected and is cut off, so the next
+     * scan does not trip over it again. Damage in any other file is left in place for inspection and the records
+     * after it are ignored.
+     */
+    private static void handleCorruptTail(File file, long validLength, boolean wasActiveFile) throws IOException {
+        if (!wasActiveFile) {
+            System.out.printf("Ignoring %d bytes after a corrupt record at offset %d of %s\n",
+                    file.length() - validLength, validLength, file.getPath());
+            return;
+        }
+        System.out.printf("Truncating torn write of %d bytes at offset %d of %s\n", file.length() - validLength,
+                validLength, file.getPath());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(validLength);
+            channel.force(true);
+        }
     }
 
-    private record ValueMetadata(String fileId, int valueSize, int valuePosition, long timestamp) {
+    /**
+     * Adds keys which were not present before and removes deleted ones, overwrites leave the index untouched
+     */
+    private void updateOrderedIndex(byte[] key, boolean live, ValueMetadata previousValueMetadata) {
+        if (orderedKeys == null) {
+            return;
+        }
+        if (live && previousValueMetadata == null) {
+            orderedKeys.add(key.clone());
+        } else if (!live && previousValueMetadata != null) {
+            orderedKeys.remove(key);
+        }
+    }
+
+    private void recordWritten(String fileName, FileRecord fileRecord, boolean live) {
+        segmentManager.stats(fileName).recordWritten(/* recordSizeAsInteger */ 4 + fileRecord.encodedLength(), live);
+    }
+
+    private void recordDead(ValueMetadata valueMetadata, int keySize) {
+        if (valueMetadata == null) {
+            return;
+        }
+        SegmentStats stats = segmentManager.stats(valueMetadata.fileId());
+        if (stats != null) {
+            stats.recordDead(recordLength(keySize, valueMetadata));
+        }
+    }
+
+    private static int recordLength(int keySize, ValueMetadata valueMetadata) {
+        return /* recordSizeAsInteger */ 4 + recordSize(keySize, valueMetadata);
+    }
+
+    /**
+     * @return expiry time of a key set now, saturated so a TTL too large to add up never expires instead of wrapping
+     * around into the past
+     */
+    private static long expiresAt(long ttlMillis) {
+        long now = System.currentTimeMillis();
+        return ttlMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + ttlMillis;
+    }
+
+    /**
+     * Keys are arbitrary bytes, so they are decoded leniently for error messages only
+     */
+    private static String printable(byte[] key) {
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the whole record around the value so its checksum can be checked
+     */
+    private byte[] readVerified(byte[] key, ValueMetadata valueMetadata) throws IOException {
+        byte[] record = segmentReaderPool.read(valueMetadata.fileId(), recordPosition(key, valueMetadata),
+                recordSize(key.length, valueMetadata));
+        return verifiedValue(key, valueMetadata, record);
+    }
+
+    private static byte[] verifiedValue(byte[] key, ValueMetadata valueMetadata, byte[] record)
+            throws CorruptRecordException {
+        int recordSize = recordSize(key.length, valueMetadata);
+        if (!FileRecord.isValid(record, recordSize)) {
+            throw new CorruptRecordException(String.format("Checksum mismatch for key %s in %s at %d", printable(key),
+                    valueMetadata.fileId(), recordPosition(key, valueMetadata)));
+        }
+        return Arrays.copyOfRange(record, recordSize - valueMetadata.valueSize(), recordSize);
+    }
+
+    private static int recordPosition(byte[] key, ValueMetadata valueMetadata) {
+        return valueMetadata.valuePosition() - (recordSize(key.length, valueMetadata) - valueMetadata.valueSize());
+    }
+
+    /**
+     * @return size of the record without its size prefix
+     */
+    private static int recordSize(int keySize, ValueMetadata valueMetadata) {
+        return KEY_OFFSET + keySize + (valueMetadata.expiresAt() != 0 ? EXPIRY_LENGTH : 0) + valueMetadata.valueSize();
+    }
+
+    /**
+     * Serves the pending reads of a single data file, merging reads which are close to each other into one
+     */
+    private void readFile(List<PendingRead> pendingReads, byte[][] values) throws IOException {
+        pendingReads.sort(Comparator.comparingInt(pendingRead -> pendingRead.valueMetadata().valuePosition()));
+        String fileId = pendingReads.get(0).valueMetadata().fileId();
+        int start = 0;
+        while (start < pendingReads.size()) {
+            long rangeStart = readStart(pendingReads.get(start));
+            long rangeEnd = readEnd(pendingReads.get(start));
+            int end = start + 1;
+            while (end < pendingReads.size()) {
+                PendingRead next = pendingReads.get(end);
+                if (readStart(next) - rangeEnd > MULTI_GET_MAX_GAP_BYTES
+                        || readEnd(next) - rangeStart > MULTI_GET_MAX_READ_BYTES) {
+                    break;
+                }
+                rangeEnd = Math.max(rangeEnd, readEnd(next));
+                end++;
+            }
+            byte[] range = segmentReaderPool.read(fileId, rangeStart, (int) (rangeEnd - rangeStart));
+            for (int i = start; i < end; i++) {
+                PendingRead pendingRead = pendingReads.get(i);
+                int offset = (int) (readStart(pendingRead) - rangeStart);
+                byte[] storedValue = Arrays.copyOfRange(range, offset, (int) (offset + readEnd(pendingRead)
+                        - readStart(pendingRead)));
+                if (verifyChecksums) {
+                    storedValue = verifiedValue(pendingRead.key(), pendingRead.valueMetadata(), storedValue);
+                }
+                byte[] value = ValueCodecs.forId(pendingRead.valueMetadata().codecId()).decompress(storedValue);
+                cacheLoadedValue(pendingRead.key(), pendingRead.valueMetadata(), value);
+                values[pendingRead.index()] = value.clone();
+            }
+            start = end;
+        }
+    }
+
+    private long readStart(PendingRead pendingRead) {
+        return verifyChecksums ? recordPosition(pendingRead.key(), pendingRead.valueMetadata()) :
+                pendingRead.valueMetadata().valuePosition();
+    }
+
+    private long readEnd(PendingRead pendingRead) {
+        ValueMetadata valueMetadata = pendingRead.valueMetadata();
+        return (long) valueMetadata.valuePosition() + valueMetadata.valueSize();
+    }
+
+    private void cacheLoadedValue(byte[] key, ValueMetadata valueMetadata, byte[] value) {
+        cache.put(key.clone(), value);
+        // A concurrent write could have replaced the key after we read its metadata. Writers update the key
+        // directory before invalidating the cache, so re-checking here guarantees we never leave a stale value.
+        if (!valueMetadata.equals(this.keyToValueMetadata.get(key))) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Values are only stored compressed if they are large enough for compression to pay off and actually shrink
+     */
+    private FileRecord buildFileRecord(byte[] key, byte[] value, int flags, long expiresAt) {
+        long timestamp = System.currentTimeMillis();
+        if (valueCodec.id() != ValueCodecs.NONE_ID && value.length >= compressionThresholdBytes) {
+            byte[] compressedValue = valueCodec.compress(value);
+            if (compressedValue.length < value.length) {
+                return new FileRecord(timestamp, (byte) (flags | valueCodec.id()), key, compressedValue, expiresAt);
+            }
+        }
+        return new FileRecord(timestamp, (byte) flags, key, value, expiresAt);
+    }
+
+    /**
+     * @param index position of the key in the multi-get request
+     */
+    private record PendingRead(int index, byte[] key, ValueMetadata valueMetadata) {
+    }
+
+    private record ExpiringKey(long expiresAt, byte[] key) {
+    }
+
+    private ValueMetadata buildValueMetadata(FileRecord fileRecord, String fileName, int valuePosition) {
+        return new ValueMetadata(fileName, fileRecord.valueSize(), valuePosition, fileRecord.timestamp(),
+                fileRecord.codecId(), fileRecord.expiresAt());
     }
 }
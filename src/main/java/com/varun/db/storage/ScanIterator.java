@@ -0,0 +1,71 @@
+package com.varun.db.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+/**
+ * Walks keys in order and fetches their values a batch at a time through {@link KeyValueStore#multiGet(List)}, so a
+ * scan holds at most one batch of values on the heap. Keys deleted after the scan started are skipped.
+ * <p>
+ * No lock is held between batches, so a scan does not see a snapshot: writes made while it runs may or may not show
+ * up. A failed read surfaces as an {@link UncheckedIOException}.
+ */
+final class ScanIterator implements Iterator<Map.Entry<byte[], byte[]>> {
+
+    private final KeyValueStore keyValueStore;
+    private final Iterator<byte[]> keys;
+    private final int batchSize;
+    private final Queue<Map.Entry<byte[], byte[]>> fetched;
+    private int remaining;
+
+    ScanIterator(KeyValueStore keyValueStore, Iterator<byte[]> keys, int limit, int batchSize) {
+        this.keyValueStore = keyValueStore;
+        this.keys = keys;
+        this.batchSize = batchSize;
+        this.fetched = new ArrayDeque<>(batchSize);
+        this.remaining = limit;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (fetched.isEmpty() && remaining > 0 && keys.hasNext()) {
+            fetchBatch();
+        }
+        return !fetched.isEmpty();
+    }
+
+    @Override
+    public Map.Entry<byte[], byte[]> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return fetched.remove();
+    }
+
+    private void fetchBatch() {
+        List<byte[]> batch = new ArrayList<>(Math.min(batchSize, remaining));
+        while (batch.size() < Math.min(batchSize, remaining) && keys.hasNext()) {
+            // Keys of the index are shared, callers get their own copy
+            batch.add(keys.next().clone());
+        }
+        List<byte[]> values;
+        try {
+            values = keyValueStore.multiGet(batch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (values.get(i) != null) {
+                fetched.add(Map.entry(batch.get(i), values.get(i)));
+                remaining--;
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.varun.db.storage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static com.varun.db.util.FileRecordConfig.FILE_PREFIX;
+
+/**
+ * Registry of the data files of a store and their live and dead bytes. Data files are named {@code file_<id>} with
+ * IDs handed out in increasing order, so the ID orders files from the least recent to the most recent one. Compaction
+ * outputs take over the names, and so the IDs, of the files they replace.
+ * <p>
+ * The IDs of the data files and the next ID to hand out are persisted in a manifest:
+ * <pre>
+ * next &lt;id&gt;
+ * &lt;id&gt;
+ * ...
+ * </pre>
+ * A new ID is written to the manifest before its file is created, and compacted files are taken out of it after the
+ * compaction is committed, so the manifest may list files which are gone but never misses one. Opening a store reads
+ * the manifest instead of listing the directory, which is only listed once for a directory written before the
+ * manifest existed.
+ * <p>
+ * Every open starts a new active file, so files left empty by a store which was closed without writing are deleted
+ * when the manifest is loaded instead of piling up.
+ */
+public class SegmentManager {
+
+    public static final String MANIFEST_FILE = "MANIFEST";
+
+    private static final String NEXT_SEGMENT_ID = "next";
+
+    private final String dbDirectory;
+    private final NavigableMap<Long, File> segments;
+    private final Map<String, SegmentStats> segmentStats;
+    // Guarded by this
+    private long nextSegmentId;
+
+    /**
+     * Loads the manifest of the directory, dropping files which no longer exist and deleting empty ones. Has to run
+     * after {@link SegmentMerger#recover(String)}, which may still move files around.
+     */
+    public SegmentManager(String dbDirectory) throws IOException {
+        this.dbDirectory = dbDirectory;
+        this.segments = new ConcurrentSkipListMap<>();
+        this.segmentStats = new ConcurrentHashMap<>();
+        File manifestFile = new File(dbDirectory, MANIFEST_FILE);
+        List<Long> segmentIds = manifestFile.exists() ? readManifest(manifestFile) : listSegmentIds(dbDirectory);
+        long maxSegmentId = 0;
+        for (long segmentId : segmentIds) {
+            maxSegmentId = Math.max(maxSegmentId, segmentId);
+            File file = fileFor(segmentId);
+            if (file.length() > 0) {
+                segments.put(segmentId, file);
+            } else {
+                delete(file);
+            }
+        }
+        this.nextSegmentId = Math.max(nextSegmentId, maxSegmentId + 1);
+        synchronized (this) {
+            writeManifest();
+        }
+    }
+
+    /**
+     * Hands out the next ID and records it in the manifest. The caller creates the file.
+     *
+     * @return the new data file, which is the most recent one from now on
+     */
+    public synchronized File newSegment() throws IOException {
+        File file = fileFor(nextSegmentId);
+        // Files left behind by a lost manifest must not be appended to
+        while (file.exists()) {
+            file = fileFor(++nextSegmentId);
+        }
+        long segmentId = nextSegmentId++;
+        segments.put(segmentId, file);
+        segmentStats.put(file.getPath(), new SegmentStats(0, 0));
+        writeManifest();
+        return file;
+    }
+
+    /**
+     * @return data files sorted from the least recent to the most recent one
+     */
+    public List<File> segments() {
+        return new ArrayList<>(segments.values());
+    }
+
+    /**
+     * @return data files sorted from the most recent to the least recent one
+     */
+    public List<File> segmentsNewestFirst() {
+        return new ArrayList<>(segments.descendingMap().values());
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return stats of the data file, null for a file which is not registered
+     */
+    public SegmentStats stats(String fileName) {
+        return segmentStats.get(fileName);
+    }
+
+    /**
+     * @return live and dead bytes of every data file keyed by file name
+     */
+    public Map<String, SegmentStats> stats() {
+        return Collections.unmodifiableMap(segmentStats);
+    }
+
+    /**
+     * Sets the stats of a registered data file, e.g. after counting its live bytes during recovery
+     */
+    public void putStats(String fileName, SegmentStats stats) {
+        segmentStats.put(fileName, stats);
+    }
+
+    /**
+     * Swaps the stats of compacted files for the stats of the files which replace them, and takes the files which
+     * were not replaced out of the registry and the manifest
+     *
+     * @param compactedFiles input files of the compaction
+     * @param outputStats    stats of the output files, by file name
+     */
+    public synchronized void replace(Collection<File> compactedFiles, Map<String, SegmentStats> outputStats)
+            throws IOException {
+        for (File file : compactedFiles) {
+            segmentStats.remove(file.getPath());
+            if (!outputStats.containsKey(file.getPath())) {
+                segments.values().remove(file);
+            }
+        }
+        segmentStats.putAll(outputStats);
+        writeManifest();
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private static void delete(File file) {
+        HintFile.hintFileFor(file).delete();
+        BloomFilterFile.bloomFilterFileFor(file).delete();
+        file.delete();
+    }
+
+    private File fileFor(long segmentId) {
+        return new File(dbDirectory, FILE_PREFIX + segmentId);
+    }
+
+    private List<Long> readManifest(File manifestFile) throws IOException {
+        List<Long> segmentIds = new ArrayList<>();
+        for (String line : Files.readAllLines(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                if (line.startsWith(NEXT_SEGMENT_ID + " ")) {
+                    nextSegmentId = Long.parseLong(line.substring(NEXT_SEGMENT_ID.length() + 1).trim());
+                } else {
+                    segmentIds.add(Long.parseLong(line.trim()));
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException(String.format("Malformed manifest line '%s' in %s", line, manifestFile), e);
+            }
+        }
+        return segmentIds;
+    }
+
+    /**
+     * Lists the data files of a directory written before the manifest existed
+     */
+    private static List<Long> listSegmentIds(String dbDirectory) {
+        List<Long> segmentIds = new ArrayList<>();
+        for (File file : Objects.requireNonNull(new File(dbDirectory).listFiles())) {
+            String name = file.getName();
+            if (!name.startsWith(FILE_PREFIX)) {
+                continue;
+            }
+            try {
+                segmentIds.add(Long.parseLong(name.substring(FILE_PREFIX.length())));
+            } catch (NumberFormatException e) {
+                // Hint, Bloom filter and in-progress compaction files
+            }
+        }
+        return segmentIds;
+    }
+
+    /**
+     * Replaces the manifest atomically, so a crash leaves either the old or the new one behind
+     */
+    private void writeManifest() throws IOException {
+        StringBuilder sb = new StringBuilder().append(NEXT_SEGMENT_ID).append(' ').append(nextSegmentId).append('\n');
+        for (long segmentId : segments.keySet()) {
+            sb.append(segmentId).append('\n');
+        }
+        File temporaryManifestFile = new File(dbDirectory, MANIFEST_FILE + ".tmp");
+        try (FileOutputStream outputStream = new FileOutputStream(temporaryManifestFile)) {
+            outputStream.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            outputStream.getFD().sync();
+        }
+        Files.move(temporaryManifestFile.toPath(), new File(dbDirectory, MANIFEST_FILE).toPath(),
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,294 @@
+package com.varun.db.storage;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.util.concurrent.RateLimiter;
+import com.varun.db.util.FileSystemUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+
+import static com.varun.db.util.FileRecordConfig.FLAGS_BATCH_MASK;
+
+/**
+ * Merges data files into new data files which only contain the records still referenced by the key directory, along
+ * with the tombstones and expired records which still hide older records of their key.
+ * <p>
+ * Input files are streamed one record at a time and live records are copied byte for byte into buffered output
+ * files, so memory use does not depend on the amount of data being merged. A new output file is started at the first
+ * input file boundary after the current one reaches {@code maxSegmentBytes}. Every output file takes over the name of
+ * the most recent input file it holds records of, with a '#' suffix until the merge is committed. Records therefore
+ * only ever move to a file which is at least as recent as the one they came from. As the input files have to be next
+ * to each other, that keeps them more recent than any older version and less recent than any newer version of the key
+ * in files that are not part of the merge.
+ * <p>
+ * How is node failure handled?:
+ * <ol>
+ *     <li>Crash while merging. No commit file exists, so the '#' files are deleted during recovery and the input files
+ *     are left untouched.</li>
+ *     <li>Crash after the commit file is written. Recovery applies the commit file again: input files are deleted, '#'
+ *     files are renamed over the input file with the same name, and the commit file is deleted last. Applying the
+ *     commit file is idempotent so a crash while applying it is handled the same way.</li>
+ * </ol>
+ */
+public class SegmentMerger {
+
+    public static final String COMPACTION_COMMIT_FILE = "compaction.commit";
+
+    private static final String IN_PROGRESS_SUFFIX = "#";
+    private static final String REPLACE = "replace";
+    private static final String DELETE = "delete";
+
+    private final List<File> inputFiles;
+    private final long maxSegmentBytes;
+    private final BiPredicate<byte[], ValueMetadata> isLive;
+    private final RateLimiter rateLimiter;
+
+    /**
+     * @param inputFiles      data files sorted from the least recent to the most recent file, with no other data file
+     *                        in between
+     * @param maxSegmentBytes size after which a new output file is started
+     * @param isLive          whether the record of a key at given location has to be kept, usually because the key
+     *                        directory still references it
+     * @param rateLimiter     limits the bytes read and written per second, null to merge at full speed
+     */
+    public SegmentMerger(List<File> inputFiles, long maxSegmentBytes, BiPredicate<byte[], ValueMetadata> isLive,
+                         RateLimiter rateLimiter) {
+        this.inputFiles = inputFiles;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.isLive = isLive;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * @param key          key of a copied record
+     * @param from         location of the record in the input file
+     * @param to           location of the record once the merge is committed
+     * @param recordLength length of the record including its size prefix
+     */
+    record Relocation(byte[] key, ValueMetadata from, ValueMetadata to, int recordLength) {
+    }
+
+    /**
+     * @param outputFileNames names of the output files, each replacing the input file of the same name
+     * @param relocations     new location of every copied record
+     * @param bloomFilters    filter of the keys of every output file, by output file name
+     */
+    record MergeResult(List<String> outputFileNames, List<Relocation> relocations,
+                       Map<String, BloomFilter<byte[]>> bloomFilters) {
+    }
+
+    /**
+     * Writes the '#' output files along with their hint and Bloom filter files. Nothing is visible until {@link #commit} is called.
+     */
+    MergeResult merge() throws IOException {
+        List<String> outputFileNames = new ArrayList<>();
+        List<Relocation> relocations = new ArrayList<>();
+        Map<String, BloomFilter<byte[]>> bloomFilters = new HashMap<>();
+        OutputFile outputFile = null;
+        try {
+            for (File inputFile : inputFiles) {
+                if (outputFile != null && outputFile.offset >= maxSegmentBytes) {
+                    outputFileNames.add(outputFile.close(relocations, bloomFilters));
+                    outputFile = null;
+                }
+                try (DataFileScanner scanner = new DataFileScanner(inputFile)) {
+                    while (scanner.next()) {
+                        throttle(scanner.recordLength());
+                        byte[] key = scanner.keyBytes();
+                        ValueMetadata from = ValueMetadata.fromFlags(inputFile.getPath(), scanner.valueSize(),
+                                scanner.valuePosition(), scanner.timestamp(), scanner.flags(), scanner.expiresAt());
+                        if (!isLive.test(key, from)) {
+                            continue;
+                        }
+                        if (outputFile == null) {
+                            outputFile = new OutputFile(inputFile.getPath());
+                        }
+                        outputFile.append(scanner, key, from);
+                        throttle(scanner.recordLength());
+                    }
+                }
+                if (outputFile != null) {
+                    outputFile.renameTo(inputFile.getPath());
+                }
+            }
+        } finally {
+            if (outputFile != null) {
+                outputFileNames.add(outputFile.close(relocations, bloomFilters));
+            }
+        }
+        return new MergeResult(outputFileNames, relocations, bloomFilters);
+    }
+
+    /**
+     * Durably records that the merge is complete and then swaps the output files in place of the input files. Read
+     * handles of the input files must be closed before calling this.
+     */
+    void commit(String dbDirectory, MergeResult mergeResult) throws IOException {
+        writeCommitFile(dbDirectory, mergeResult);
+        applyCommitFile(dbDirectory);
+    }
+
+    void writeCommitFile(String dbDirectory, MergeResult mergeResult) throws IOException {
+        // The '#' files are forced to disk as they are closed, their directory entries have to be as well before the
+        // commit file refers to them
+        FileSystemUtil.syncDirectory(dbDirectory);
+        StringBuilder sb = new StringBuilder();
+        for (File inputFile : inputFiles) {
+            sb.append(mergeResult.outputFileNames().contains(inputFile.getPath()) ? REPLACE : DELETE)
+                    .append(' ').append(inputFile.getPath()).append('\n');
+        }
+        File temporaryCommitFile = new File(dbDirectory, COMPACTION_COMMIT_FILE + ".tmp");
+        try (FileOutputStream outputStream = new FileOutputStream(temporaryCommitFile)) {
+            outputStream.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            outputStream.getFD().sync();
+        }
+        Files.move(temporaryCommitFile.toPath(), new File(dbDirectory, COMPACTION_COMMIT_FILE).toPath(),
+                StandardCopyOption.ATOMIC_MOVE);
+        FileSystemUtil.syncDirectory(dbDirectory);
+    }
+
+    /**
+     * Brings the directory back to a consistent state after a crash in the middle of a merge
+     */
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    public static void recover(String dbDirectory) throws IOException {
+        applyCommitFile(dbDirectory);
+        File[] files = Objects.requireNonNull(new File(dbDirectory).listFiles());
+        for (File file : files) {
+            String path = file.getPath();
+            if (!path.endsWith(IN_PROGRESS_SUFFIX)) {
+                continue;
+            }
+            String pathWithoutSuffix = path.substring(0, path.length() - IN_PROGRESS_SUFFIX.length());
+            boolean isSideFile = pathWithoutSuffix.endsWith(HintFile.HINT_SUFFIX)
+                    || pathWithoutSuffix.endsWith(BloomFilterFile.BLOOM_FILTER_SUFFIX);
+            if (isSideFile || Arrays.stream(files).anyMatch(other -> other.getPath().equals(pathWithoutSuffix))) {
+                file.delete();
+            } else {
+                // Left behind by a merge whose input files were already deleted
+                file.renameTo(new File(pathWithoutSuffix));
+            }
+        }
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private static void applyCommitFile(String dbDirectory) throws IOException {
+        File commitFile = new File(dbDirectory, COMPACTION_COMMIT_FILE);
+        if (!commitFile.exists()) {
+            return;
+        }
+        for (String line : Files.readAllLines(commitFile.toPath(), StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            int separator = line.indexOf(' ');
+            String action = line.substring(0, separator);
+            File file = new File(line.substring(separator + 1));
+            File hintFile = HintFile.hintFileFor(file);
+            File bloomFilterFile = BloomFilterFile.bloomFilterFileFor(file);
+            if (action.equals(DELETE)) {
+                hintFile.delete();
+                bloomFilterFile.delete();
+                file.delete();
+                continue;
+            }
+            File outputFile = new File(file.getPath() + IN_PROGRESS_SUFFIX);
+            // An output which is already renamed must not be deleted when the commit file is applied again
+            if (outputFile.exists()) {
+                hintFile.delete();
+                bloomFilterFile.delete();
+                file.delete();
+                new File(hintFile.getPath() + IN_PROGRESS_SUFFIX).renameTo(hintFile);
+                new File(bloomFilterFile.getPath() + IN_PROGRESS_SUFFIX).renameTo(bloomFilterFile);
+                outputFile.renameTo(file);
+            }
+        }
+        commitFile.delete();
+    }
+
+    private void throttle(int bytes) {
+        if (rateLimiter != null) {
+            rateLimiter.acquire(bytes);
+        }
+    }
+
+    private static final class OutputFile {
+
+        private final FileOutputStream fileOutputStream;
+        private final BufferedOutputStream outputStream;
+        private final List<CopiedRecord> copiedRecords;
+        private String fileName;
+        private long offset;
+
+        private OutputFile(String fileName) throws IOException {
+            this.fileName = fileName;
+            this.fileOutputStream = new FileOutputStream(fileName + IN_PROGRESS_SUFFIX);
+            this.outputStream = new BufferedOutputStream(fileOutputStream, 1 << 16);
+            this.copiedRecords = new ArrayList<>();
+        }
+
+        private void append(DataFileScanner scanner, byte[] key, ValueMetadata from) throws IOException {
+            int valuePosition = (int) (offset + scanner.valuePosition() - scanner.recordOffset());
+            // Only the live records of a batch are copied, so the output must not look like a torn batch
+            scanner.clearFlags(FLAGS_BATCH_MASK);
+            scanner.copyRecordTo(outputStream);
+            offset += scanner.recordLength();
+            copiedRecords.add(new CopiedRecord(key, from, valuePosition, scanner.recordLength()));
+        }
+
+        /**
+         * Moves the output file over to the name of a more recent input file it now holds records of
+         */
+        private void renameTo(String newFileName) throws IOException {
+            if (newFileName.equals(fileName)) {
+                return;
+            }
+            Files.move(new File(fileName + IN_PROGRESS_SUFFIX).toPath(),
+                    new File(newFileName + IN_PROGRESS_SUFFIX).toPath());
+            fileName = newFileName;
+        }
+
+        /**
+         * @return name the output file takes over once the merge is committed
+         */
+        private String close(List<Relocation> relocations, Map<String, BloomFilter<byte[]>> bloomFilters)
+                throws IOException {
+            try (fileOutputStream) {
+                outputStream.flush();
+                fileOutputStream.getFD().sync();
+            }
+            List<HintFile.Entry> hintEntries = new ArrayList<>(copiedRecords.size());
+            BloomFilter<byte[]> bloomFilter = BloomFilterFile.create(copiedRecords.size());
+            for (CopiedRecord copiedRecord : copiedRecords) {
+                bloomFilter.put(copiedRecord.key);
+                ValueMetadata from = copiedRecord.from;
+                hintEntries.add(new HintFile.Entry(copiedRecord.key, from.timestamp(), from.valueSize(),
+                        copiedRecord.valuePosition, from.codecId(), from.expiresAt(), from.tombstone()));
+                relocations.add(new Relocation(copiedRecord.key, from, new ValueMetadata(fileName,
+                        from.valueSize(), copiedRecord.valuePosition, from.timestamp(), from.codecId(),
+                        from.expiresAt(), from.tombstone()), copiedRecord.recordLength));
+            }
+            HintFile.write(new File(HintFile.hintFileFor(new File(fileName)).getPath() + IN_PROGRESS_SUFFIX), offset,
+                    hintEntries);
+            BloomFilterFile.write(new File(BloomFilterFile.bloomFilterFileFor(new File(fileName)).getPath()
+                    + IN_PROGRESS_SUFFIX), offset, bloomFilter);
+            bloomFilters.put(fileName, bloomFilter);
+            return fileName;
+        }
+    }
+
+    private record CopiedRecord(byte[] key, ValueMetadata from, int valuePosition, int recordLength) {
+    }
+}
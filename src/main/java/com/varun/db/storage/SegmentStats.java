@@ -0,0 +1,66 @@
+package com.varun.db.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live and dead byte accounting of a single data file. A record is live while the key directory points to it, and
+ * becomes dead once its key is overwritten or deleted.
+ * <p>
+ * Tombstones and expired records which compaction had to keep, because an older file might still hold a record of
+ * their key, are retained rather than dead. They are released once that older file has been compacted.
+ */
+public class SegmentStats {
+
+    private final AtomicLong totalBytes;
+    private final AtomicLong liveBytes;
+    private final AtomicLong retainedBytes;
+
+    public SegmentStats(long totalBytes, long liveBytes) {
+        this(totalBytes, liveBytes, 0);
+    }
+
+    public SegmentStats(long totalBytes, long liveBytes, long retainedBytes) {
+        this.totalBytes = new AtomicLong(totalBytes);
+        this.liveBytes = new AtomicLong(liveBytes);
+        this.retainedBytes = new AtomicLong(retainedBytes);
+    }
+
+    public void recordWritten(long bytes, boolean live) {
+        totalBytes.addAndGet(bytes);
+        if (live) {
+            liveBytes.addAndGet(bytes);
+        }
+    }
+
+    public void recordDead(long bytes) {
+        liveBytes.addAndGet(-bytes);
+    }
+
+    /**
+     * Turns retained bytes into dead ones, once the file whose records they hide is gone
+     */
+    public void recordReleased(long bytes) {
+        retainedBytes.addAndGet(-bytes);
+    }
+
+    public long totalBytes() {
+        return totalBytes.get();
+    }
+
+    public long liveBytes() {
+        return liveBytes.get();
+    }
+
+    public long retainedBytes() {
+        return retainedBytes.get();
+    }
+
+    public long deadBytes() {
+        return totalBytes() - liveBytes() - retainedBytes();
+    }
+
+    public double deadRatio() {
+        long total = totalBytes();
+        return total == 0 ? 0.0 : (double) deadBytes() / total;
+    }
+}
@@ -0,0 +1,285 @@
+package com.varun.db.storage;
+
+import com.google.common.collect.Iterators;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.varun.db.cache.CacheStats;
+import com.varun.db.exception.KeyNotFoundException;
+import com.varun.db.metrics.StoreStats;
+import com.varun.db.util.DbConfig;
+import com.varun.db.util.FileSystemUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static com.varun.db.util.FileRecordConfig.FILE_PREFIX;
+
+/**
+ * Spreads keys over independent {@link KeyValueStore} shards by a hash of the key. Every shard lives in its own
+ * sub-directory with its own active file, key directory, cache and compaction, so writes to different shards do not
+ * contend on a single write lock and file.
+ * <p>
+ * The shard count is recorded in the DB directory when it is first created, as changing it would send keys to a
+ * shard which does not hold them. Opening the directory with a different count fails.
+ * <p>
+ * Write batches are split by shard. Each shard applies its part atomically, but a crash can leave the parts of a
+ * batch spanning shards applied on some shards only. Scans merge the key ordered scans of every shard.
+ */
+public class ShardedKeyValueStore implements Store {
+
+    public static final String SHARD_COUNT_FILE = "shards";
+
+    private static final String SHARD_DIRECTORY_PREFIX = "shard_";
+    private static final HashFunction SHARD_HASH = Hashing.murmur3_32_fixed();
+    private static final Comparator<Map.Entry<byte[], byte[]>> KEY_ORDER =
+            Map.Entry.comparingByKey(Arrays::compareUnsigned);
+
+    private final List<KeyValueStore> shards;
+    private final ForkJoinPool compactionPool;
+
+    /**
+     * Opens every shard with the default settings, with the cache budget split evenly between them
+     */
+    public ShardedKeyValueStore(String dbDirectory, int shardCount) throws IOException {
+        this(DbConfig.builder().dbDirectory(dbDirectory).shardCount(shardCount).build());
+    }
+
+    /**
+     * Opens {@link DbConfig#shardCount()} shards in the DB directory of the config. Every shard gets the settings of the
+     * config, except for the cache budget which is split evenly between them.
+     */
+    public ShardedKeyValueStore(DbConfig config) throws IOException {
+        String dbDirectory = config.dbDirectory();
+        int shardCount = config.shardCount();
+        FileSystemUtil.createFileIfNotExists(dbDirectory, true);
+        checkShardCount(dbDirectory, shardCount);
+        this.shards = new ArrayList<>(shardCount);
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                shards.add(new KeyValueStore(config.toBuilder()
+                        .dbDirectory(new File(dbDirectory, SHARD_DIRECTORY_PREFIX + i).getPath())
+                        .cacheMaximumBytes(config.cacheMaximumBytes() / shardCount)
+                        .build()));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (KeyValueStore shard : shards) {
+                shard.close();
+            }
+            throw e;
+        }
+        this.compactionPool = new ForkJoinPool(Math.min(shardCount, config.shardCompactionParallelism()));
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public byte[] get(byte[] key) throws KeyNotFoundException, IOException {
+        return shardFor(key).get(key);
+    }
+
+    /**
+     * Keys are grouped by shard, so every shard serves its part with a single multi-get
+     */
+    @Override
+    public List<byte[]> multiGet(List<byte[]> keys) throws IOException {
+        Map<Integer, List<Integer>> indexesByShard = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            indexesByShard.computeIfAbsent(shardIndex(keys.get(i)), shard -> new ArrayList<>()).add(i);
+        }
+        byte[][] values = new byte[keys.size()][];
+        for (Map.Entry<Integer, List<Integer>> entry : indexesByShard.entrySet()) {
+            List<Integer> indexes = entry.getValue();
+            List<byte[]> shardValues = shards.get(entry.getKey())
+                    .multiGet(indexes.stream().map(keys::get).toList());
+            for (int i = 0; i < indexes.size(); i++) {
+                values[indexes.get(i)] = shardValues.get(i);
+            }
+        }
+        return Arrays.asList(values);
+    }
+
+    @Override
+    public void set(byte[] key, byte[] value, long ttlMillis) throws IOException {
+        shardFor(key).set(key, value, ttlMillis);
+    }
+
+    @Override
+    public void delete(byte[] key) throws KeyNotFoundException, IOException {
+        shardFor(key).delete(key);
+    }
+
+    /**
+     * Atomic within every shard only, see the class documentation
+     */
+    @Override
+    public void write(WriteBatch writeBatch) throws IOException {
+        Map<Integer, WriteBatch> batchesByShard = new HashMap<>();
+        for (WriteBatch.Operation operation : writeBatch.operations()) {
+            WriteBatch shardBatch = batchesByShard.computeIfAbsent(shardIndex(operation.key()),
+                    shard -> new WriteBatch());
+            if (operation.isDelete()) {
+                shardBatch.delete(operation.key());
+            } else {
+                shardBatch.put(operation.key(), operation.value());
+            }
+        }
+        for (Map.Entry<Integer, WriteBatch> entry : batchesByShard.entrySet()) {
+            shards.get(entry.getKey()).write(entry.getValue());
+        }
+    }
+
+    @Override
+    public Iterator<Map.Entry<byte[], byte[]>> scan(byte[] startKey, byte[] endKey, int limit) {
+        List<Iterator<Map.Entry<byte[], byte[]>>> shardEntries = new ArrayList<>(shards.size());
+        for (KeyValueStore shard : shards) {
+            shardEntries.add(shard.scan(startKey, endKey, limit));
+        }
+        return Iterators.limit(Iterators.mergeSorted(shardEntries, KEY_ORDER), limit);
+    }
+
+    @Override
+    public Iterator<Map.Entry<byte[], byte[]>> prefixScan(byte[] prefix, int limit) {
+        List<Iterator<Map.Entry<byte[], byte[]>>> shardEntries = new ArrayList<>(shards.size());
+        for (KeyValueStore shard : shards) {
+            shardEntries.add(shard.prefixScan(prefix, limit));
+        }
+        return Iterators.limit(Iterators.mergeSorted(shardEntries, KEY_ORDER), limit);
+    }
+
+    @Override
+    public int expireKeys() {
+        int expiredKeys = 0;
+        for (KeyValueStore shard : shards) {
+            expiredKeys += shard.expireKeys();
+        }
+        return expiredKeys;
+    }
+
+    /**
+     * Compacts the shards in parallel, every shard picks the files worth compacting on its own
+     */
+    @Override
+    public void performCompaction() throws IOException {
+        List<ForkJoinTask<Void>> tasks = new ArrayList<>(shards.size());
+        for (KeyValueStore shard : shards) {
+            tasks.add(compactionPool.submit(() -> {
+                shard.performCompaction();
+                return null;
+            }));
+        }
+        try {
+            for (ForkJoinTask<Void> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compacting the shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Failed to compact the shards", e.getCause());
+        }
+    }
+
+    @Override
+    public CacheStats getCacheStats() {
+        CacheStats cacheStats = shards.get(0).getCacheStats();
+        for (int i = 1; i < shards.size(); i++) {
+            cacheStats = cacheStats.merge(shards.get(i).getCacheStats());
+        }
+        return cacheStats;
+    }
+
+    /**
+     * File names include the shard directory, so the stats of all shards fit in a single map
+     */
+    @Override
+    public Map<String, SegmentStats> getSegmentStats() {
+        Map<String, SegmentStats> segmentStats = new HashMap<>();
+        for (KeyValueStore shard : shards) {
+            segmentStats.putAll(shard.getSegmentStats());
+        }
+        return Collections.unmodifiableMap(segmentStats);
+    }
+
+    /**
+     * Latency histograms of the shards are merged, so percentiles are over the operations of all shards
+     */
+    @Override
+    public StoreStats getStats() {
+        StoreStats stats = shards.get(0).getStats();
+        for (int i = 1; i < shards.size(); i++) {
+            stats = stats.merge(shards.get(i).getStats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactionPool.shutdown();
+        IOException failure = null;
+        for (KeyValueStore shard : shards) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                // Every shard gets the chance to flush its active file
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    KeyValueStore shard(int index) {
+        return shards.get(index);
+    }
+
+    int shardIndex(byte[] key) {
+        return Math.floorMod(SHARD_HASH.hashBytes(key).asInt(), shards.size());
+    }
+
+    private KeyValueStore shardFor(byte[] key) {
+        return shards.get(shardIndex(key));
+    }
+
+    private static void checkShardCount(String dbDirectory, int shardCount) throws IOException {
+        File shardCountFile = new File(dbDirectory, SHARD_COUNT_FILE);
+        if (shardCountFile.exists()) {
+            int existingShardCount = Integer.parseInt(
+                    Files.readString(shardCountFile.toPath(), StandardCharsets.UTF_8).trim());
+            if (existingShardCount != shardCount) {
+                throw new IllegalStateException(String.format("%s holds %d shards, not %d", dbDirectory,
+                        existingShardCount, shardCount));
+            }
+            return;
+        }
+        boolean holdsUnshardedStore = Arrays.stream(Objects.requireNonNull(new File(dbDirectory).listFiles()))
+                .anyMatch(file -> file.getName().startsWith(FILE_PREFIX));
+        if (holdsUnshardedStore) {
+            throw new IllegalStateException(String.format("%s holds a store which is not sharded", dbDirectory));
+        }
+        Files.writeString(shardCountFile.toPath(), Integer.toString(shardCount), StandardCharsets.UTF_8);
+    }
+}
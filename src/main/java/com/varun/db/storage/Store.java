@@ -0,0 +1,94 @@
+package com.varun.db.storage;
+
+import com.varun.db.cache.CacheStats;
+import com.varun.db.exception.KeyNotFoundException;
+import com.varun.db.metrics.StoreStats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Operations commands are run against, served either by a single {@link KeyValueStore} or by a
+ * {@link ShardedKeyValueStore} spreading keys over many of them. Implementations must be safe to be shared across
+ * threads.
+ */
+public interface Store extends Closeable {
+
+    default String get(String key) throws KeyNotFoundException, IOException {
+        return new String(get(key.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return a copy of the value which the caller is free to modify
+     */
+    byte[] get(byte[] key) throws KeyNotFoundException, IOException;
+
+    /**
+     * @return copies of the values in the order of the keys, null for keys which are not present
+     */
+    List<byte[]> multiGet(List<byte[]> keys) throws IOException;
+
+    default void set(String key, String value) throws IOException {
+        set(key.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    default void set(byte[] key, byte[] value) throws IOException {
+        set(key, value, 0L);
+    }
+
+    default void set(String key, String value, long ttlMillis) throws IOException {
+        set(key.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8), ttlMillis);
+    }
+
+    /**
+     * @param ttlMillis time after which the key is gone as if it was deleted, 0 for a key which never expires
+     */
+    void set(byte[] key, byte[] value, long ttlMillis) throws IOException;
+
+    default void delete(String key) throws KeyNotFoundException, IOException {
+        delete(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void delete(byte[] key) throws KeyNotFoundException, IOException;
+
+    void write(WriteBatch writeBatch) throws IOException;
+
+    /**
+     * Streams the entries with keys from {@code startKey} inclusive to {@code endKey} exclusive in unsigned byte
+     * order
+     *
+     * @param startKey first key of the range, null to start at the smallest key
+     * @param endKey   end of the range, null to scan up to the largest key
+     * @param limit    maximum number of entries returned
+     * @throws UnsupportedOperationException if the store was opened without the ordered index
+     */
+    Iterator<Map.Entry<byte[], byte[]>> scan(byte[] startKey, byte[] endKey, int limit);
+
+    /**
+     * Streams the entries whose keys start with {@code prefix}, see {@link #scan(byte[], byte[], int)}
+     */
+    Iterator<Map.Entry<byte[], byte[]>> prefixScan(byte[] prefix, int limit);
+
+    /**
+     * @return number of expired keys removed
+     */
+    int expireKeys();
+
+    void performCompaction() throws IOException;
+
+    CacheStats getCacheStats();
+
+    /**
+     * @return live and dead bytes of every data file keyed by file name
+     */
+    Map<String, SegmentStats> getSegmentStats();
+
+    /**
+     * @return gauges, counters and operation latencies of the store
+     */
+    StoreStats getStats();
+}
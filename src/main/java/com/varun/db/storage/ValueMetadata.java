@@ -0,0 +1,52 @@
+package com.varun.db.storage;
+
+import com.varun.db.compression.ValueCodecs;
+
+import static com.varun.db.util.FileRecordConfig.FLAGS_CODEC_MASK;
+import static com.varun.db.util.FileRecordConfig.FLAGS_TOMBSTONE;
+
+/**
+ * Location of a value on disk as kept in the key directory
+ *
+ * @param valueSize size of the value as stored, i.e. after compression
+ * @param codecId   ID of the codec the stored value is compressed with
+ * @param expiresAt epoch milliseconds after which the value is gone, 0 if it never expires
+ * @param tombstone whether the record marks the key as deleted. Tombstones only show up while data files are scanned,
+ *                  the key directory of a running store never holds them.
+ */
+public record ValueMetadata(String fileId, int valueSize, int valuePosition, long timestamp, byte codecId,
+                            long expiresAt, boolean tombstone) {
+
+    public ValueMetadata(String fileId, int valueSize, int valuePosition, long timestamp) {
+        this(fileId, valueSize, valuePosition, timestamp, ValueCodecs.NONE_ID);
+    }
+
+    public ValueMetadata(String fileId, int valueSize, int valuePosition, long timestamp, byte codecId) {
+        this(fileId, valueSize, valuePosition, timestamp, codecId, 0L);
+    }
+
+    public ValueMetadata(String fileId, int valueSize, int valuePosition, long timestamp, byte codecId,
+                         long expiresAt) {
+        this(fileId, valueSize, valuePosition, timestamp, codecId, expiresAt, false);
+    }
+
+    /**
+     * @param flags record flags holding the codec ID and the tombstone bit
+     */
+    public static ValueMetadata fromFlags(String fileId, int valueSize, int valuePosition, long timestamp, byte flags,
+                                          long expiresAt) {
+        return new ValueMetadata(fileId, valueSize, valuePosition, timestamp, (byte) (flags & FLAGS_CODEC_MASK),
+                expiresAt, (flags & FLAGS_TOMBSTONE) != 0);
+    }
+
+    /**
+     * @return the codec ID and the tombstone bit packed the way they are in the record flags
+     */
+    public byte flags() {
+        return (byte) (tombstone ? codecId | FLAGS_TOMBSTONE : codecId);
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return expiresAt != 0 && expiresAt <= nowMillis;
+    }
+}
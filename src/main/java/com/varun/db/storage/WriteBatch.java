@@ -0,0 +1,65 @@
+package com.varun.db.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Group of sets and deletes which {@link KeyValueStore#write(WriteBatch)} applies atomically. Operations on the same
+ * key are applied in the order they were added, so the last one wins.
+ * <pre>
+ * keyValueStore.write(new WriteBatch().put("a", "1").delete("b"));
+ * </pre>
+ * A batch is not safe to be modified from multiple threads.
+ */
+public class WriteBatch {
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    public WriteBatch put(String key, String value) {
+        return put(key.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The key and value are not copied, so they must not be modified until the batch is written
+     */
+    public WriteBatch put(byte[] key, byte[] value) {
+        operations.add(new Operation(key, value));
+        return this;
+    }
+
+    public WriteBatch delete(String key) {
+        return delete(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Unlike {@link KeyValueStore#delete(byte[])}, deleting a key which is not present is not an error
+     */
+    public WriteBatch delete(byte[] key) {
+        operations.add(new Operation(key, null));
+        return this;
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    List<Operation> operations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    /**
+     * @param value null for a delete
+     */
+    record Operation(byte[] key, byte[] value) {
+
+        boolean isDelete() {
+            return value == null;
+        }
+    }
+}
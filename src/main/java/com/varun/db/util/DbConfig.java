@@ -0,0 +1,563 @@
+package com.varun.db.util;
+
+import com.varun.db.compression.ValueCodec;
+import com.varun.db.compression.ValueCodecs;
+import com.varun.db.storage.CompactionPolicy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+import static com.varun.db.util.FileRecordConfig.*;
+
+/**
+ * Settings of the server and of the stores it opens. Every setting defaults to its {@link FileRecordConfig} constant,
+ * so only the ones which differ have to be given.
+ * <pre>
+ * DbConfig config = DbConfig.builder().dbDirectory("data").segmentSizeBytes(64L * 1024 * 1024).build();
+ * </pre>
+ * Settings can also be read from a properties file, see {@link #fromProperties(Properties)} for the keys.
+ */
+public class DbConfig {
+
+    private static final Set<String> PROPERTY_KEYS = Set.of("db.directory", "port", "shard.count",
+            "segment.size.bytes", "max.open.data.files", "fsync.mode", "fsync.interval.millis", "cache.maximum.bytes",
+            "cache.concurrency.level", "key.directory.concurrency.level", "ordered.index", "verify.checksums",
+            "value.codec.id", "compression.threshold.bytes", "compaction.min.dead.ratio", "compaction.max.garbage.bytes",
+            "compaction.window.start", "compaction.window.end", "compaction.max.bytes.per.second",
+            "compaction.interval.millis", "expiration.sweep.interval.millis", "recovery.parallelism",
+            "multi.get.parallelism", "shard.compaction.parallelism", "request.parallelism",
+            "pipeline.max.batch.size");
+
+    private final String dbDirectory;
+    private final int port;
+    private final int shardCount;
+    private final long segmentSizeBytes;
+    private final int maxOpenDataFiles;
+    private final FsyncMode fsyncMode;
+    private final long fsyncIntervalMillis;
+    private final long cacheMaximumBytes;
+    private final int cacheConcurrencyLevel;
+    private final int keyDirectoryConcurrencyLevel;
+    private final boolean orderedIndex;
+    private final boolean verifyChecksums;
+    private final ValueCodec valueCodec;
+    private final int compressionThresholdBytes;
+    private final CompactionPolicy compactionPolicy;
+    private final long compactionIntervalMillis;
+    private final long expirationSweepIntervalMillis;
+    private final int recoveryParallelism;
+    private final int multiGetParallelism;
+    private final int shardCompactionParallelism;
+    private final int requestParallelism;
+    private final int pipelineMaxBatchSize;
+
+    private DbConfig(Builder builder) {
+        this.dbDirectory = builder.dbDirectory;
+        this.port = builder.port;
+        this.shardCount = builder.shardCount;
+        this.segmentSizeBytes = builder.segmentSizeBytes;
+        this.maxOpenDataFiles = builder.maxOpenDataFiles;
+        this.fsyncMode = builder.fsyncMode;
+        this.fsyncIntervalMillis = builder.fsyncIntervalMillis;
+        this.cacheMaximumBytes = builder.cacheMaximumBytes;
+        this.cacheConcurrencyLevel = builder.cacheConcurrencyLevel;
+        this.keyDirectoryConcurrencyLevel = builder.keyDirectoryConcurrencyLevel;
+        this.orderedIndex = builder.orderedIndex;
+        this.verifyChecksums = builder.verifyChecksums;
+        this.valueCodec = builder.valueCodec;
+        this.compressionThresholdBytes = builder.compressionThresholdBytes;
+        this.compactionPolicy = builder.compactionPolicy;
+        this.compactionIntervalMillis = builder.compactionIntervalMillis;
+        this.expirationSweepIntervalMillis = builder.expirationSweepIntervalMillis;
+        this.recoveryParallelism = builder.recoveryParallelism;
+        this.multiGetParallelism = builder.multiGetParallelism;
+        this.shardCompactionParallelism = builder.shardCompactionParallelism;
+        this.requestParallelism = builder.requestParallelism;
+        this.pipelineMaxBatchSize = builder.pipelineMaxBatchSize;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return a builder starting from the settings of this config
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * Reads the settings from a properties file, see {@link #fromProperties(Properties)}
+     */
+    public static DbConfig load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return fromProperties(properties);
+    }
+
+    /**
+     * Builds a config from properties named after the settings, e.g. {@code segment.size.bytes=67108864} or
+     * {@code fsync.mode=always}. Compaction windows are given as {@code HH:mm}.
+     *
+     * @throws IllegalArgumentException for an unknown key or a value which cannot be parsed
+     */
+    public static DbConfig fromProperties(Properties properties) {
+        for (String key : properties.stringPropertyNames()) {
+            if (!PROPERTY_KEYS.contains(key)) {
+                throw new IllegalArgumentException(String.format("Unknown setting %s", key));
+            }
+        }
+        Builder builder = builder();
+        PropertyReader reader = new PropertyReader(properties);
+        builder.dbDirectory(properties.getProperty("db.directory", builder.dbDirectory));
+        builder.port(reader.getInt("port", builder.port));
+        builder.shardCount(reader.getInt("shard.count", builder.shardCount));
+        builder.segmentSizeBytes(reader.getLong("segment.size.bytes", builder.segmentSizeBytes));
+        builder.maxOpenDataFiles(reader.getInt("max.open.data.files", builder.maxOpenDataFiles));
+        builder.fsyncMode(reader.getFsyncMode("fsync.mode", builder.fsyncMode));
+        builder.fsyncIntervalMillis(reader.getLong("fsync.interval.millis", builder.fsyncIntervalMillis));
+        builder.cacheMaximumBytes(reader.getLong("cache.maximum.bytes", builder.cacheMaximumBytes));
+        builder.cacheConcurrencyLevel(reader.getInt("cache.concurrency.level", builder.cacheConcurrencyLevel));
+        builder.keyDirectoryConcurrencyLevel(reader.getInt("key.directory.concurrency.level",
+                builder.keyDirectoryConcurrencyLevel));
+        builder.orderedIndex(reader.getBoolean("ordered.index", builder.orderedIndex));
+        builder.verifyChecksums(reader.getBoolean("verify.checksums", builder.verifyChecksums));
+        builder.valueCodec(reader.getValueCodec("value.codec.id", builder.valueCodec));
+        builder.compressionThresholdBytes(reader.getInt("compression.threshold.bytes",
+                builder.compressionThresholdBytes));
+        CompactionPolicy compactionPolicy = builder.compactionPolicy;
+        builder.compactionPolicy(new CompactionPolicy(
+                reader.getDouble("compaction.min.dead.ratio", compactionPolicy.minDeadRatio()),
+                reader.getLong("compaction.max.garbage.bytes", compactionPolicy.maxGarbageBytes()),
+                reader.getLocalTime("compaction.window.start", compactionPolicy.windowStart()),
+                reader.getLocalTime("compaction.window.end", compactionPolicy.windowEnd()),
+                reader.getLong("compaction.max.bytes.per.second", compactionPolicy.maxBytesPerSecond())));
+        builder.compactionIntervalMillis(reader.getLong("compaction.interval.millis", builder.compactionIntervalMillis));
+        builder.expirationSweepIntervalMillis(reader.getLong("expiration.sweep.interval.millis",
+                builder.expirationSweepIntervalMillis));
+        builder.recoveryParallelism(reader.getInt("recovery.parallelism", builder.recoveryParallelism));
+        builder.multiGetParallelism(reader.getInt("multi.get.parallelism", builder.multiGetParallelism));
+        builder.shardCompactionParallelism(reader.getInt("shard.compaction.parallelism",
+                builder.shardCompactionParallelism));
+        builder.requestParallelism(reader.getInt("request.parallelism", builder.requestParallelism));
+        builder.pipelineMaxBatchSize(reader.getInt("pipeline.max.batch.size", builder.pipelineMaxBatchSize));
+        return builder.build();
+    }
+
+    public String dbDirectory() {
+        return dbDirectory;
+    }
+
+    /**
+     * Port the server listens on, 0 to pick a free one
+     */
+    public int port() {
+        return port;
+    }
+
+    /**
+     * Number of independent stores keys are spread over, 1 for a single store in the DB directory itself
+     */
+    public int shardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Size at which the active file is rolled over, and at which compaction starts a new output file
+     */
+    public long segmentSizeBytes() {
+        return segmentSizeBytes;
+    }
+
+    /**
+     * Most data files a store keeps open for reads, each shard has its own budget
+     */
+    public int maxOpenDataFiles() {
+        return maxOpenDataFiles;
+    }
+
+    public FsyncMode fsyncMode() {
+        return fsyncMode;
+    }
+
+    public long fsyncIntervalMillis() {
+        return fsyncIntervalMillis;
+    }
+
+    /**
+     * Heap budget of the value cache, split evenly between the shards
+     */
+    public long cacheMaximumBytes() {
+        return cacheMaximumBytes;
+    }
+
+    public int cacheConcurrencyLevel() {
+        return cacheConcurrencyLevel;
+    }
+
+    /**
+     * Number of independently locked shards of the key directory, a power of two
+     */
+    public int keyDirectoryConcurrencyLevel() {
+        return keyDirectoryConcurrencyLevel;
+    }
+
+    public boolean orderedIndex() {
+        return orderedIndex;
+    }
+
+    public boolean verifyChecksums() {
+        return verifyChecksums;
+    }
+
+    public ValueCodec valueCodec() {
+        return valueCodec;
+    }
+
+    public int compressionThresholdBytes() {
+        return compressionThresholdBytes;
+    }
+
+    public CompactionPolicy compactionPolicy() {
+        return compactionPolicy;
+    }
+
+    /**
+     * How often the server checks whether compaction is worth running
+     */
+    public long compactionIntervalMillis() {
+        return compactionIntervalMillis;
+    }
+
+    public long expirationSweepIntervalMillis() {
+        return expirationSweepIntervalMillis;
+    }
+
+    public int recoveryParallelism() {
+        return recoveryParallelism;
+    }
+
+    public int multiGetParallelism() {
+        return multiGetParallelism;
+    }
+
+    public int shardCompactionParallelism() {
+        return shardCompactionParallelism;
+    }
+
+    /**
+     * Number of server threads running read-only commands of pipelined requests
+     */
+    public int requestParallelism() {
+        return requestParallelism;
+    }
+
+    /**
+     * Most pipelined requests of a connection the server executes together and answers with a single flush
+     */
+    public int pipelineMaxBatchSize() {
+        return pipelineMaxBatchSize;
+    }
+
+    /**
+     * A builder is not safe to be modified from multiple threads
+     */
+    public static class Builder {
+
+        private String dbDirectory = DB_DIRECTORY;
+        private int port = DEFAULT_PORT;
+        private int shardCount = SHARD_COUNT;
+        private long segmentSizeBytes = FILE_MEMORY_THRESHOLD;
+        private int maxOpenDataFiles = MAX_OPEN_DATA_FILES;
+        private FsyncMode fsyncMode = FSYNC_MODE;
+        private long fsyncIntervalMillis = FSYNC_INTERVAL_MILLIS;
+        private long cacheMaximumBytes = CACHE_MAXIMUM_BYTES;
+        private int cacheConcurrencyLevel = CACHE_CONCURRENCY_LEVEL;
+        private int keyDirectoryConcurrencyLevel = KEY_DIRECTORY_CONCURRENCY_LEVEL;
+        private boolean orderedIndex = ORDERED_INDEX_ENABLED;
+        private boolean verifyChecksums = VERIFY_CHECKSUMS_ON_READ;
+        private ValueCodec valueCodec = defaultValueCodec();
+        private int compressionThresholdBytes = COMPRESSION_THRESHOLD_BYTES;
+        private CompactionPolicy compactionPolicy = new CompactionPolicy(COMPACTION_MIN_DEAD_RATIO,
+                COMPACTION_MAX_GARBAGE_BYTES, null, null, COMPACTION_MAX_BYTES_PER_SECOND);
+        private long compactionIntervalMillis = COMPACTION_INTERVAL_MILLIS;
+        private long expirationSweepIntervalMillis = EXPIRATION_SWEEP_INTERVAL_MILLIS;
+        private int recoveryParallelism = RECOVERY_PARALLELISM;
+        private int multiGetParallelism = MULTI_GET_PARALLELISM;
+        private int shardCompactionParallelism = SHARD_COMPACTION_PARALLELISM;
+        private int requestParallelism = REQUEST_PARALLELISM;
+        private int pipelineMaxBatchSize = PIPELINE_MAX_BATCH_SIZE;
+
+        private Builder() {
+        }
+
+        private Builder(DbConfig config) {
+            this.dbDirectory = config.dbDirectory;
+            this.port = config.port;
+            this.shardCount = config.shardCount;
+            this.segmentSizeBytes = config.segmentSizeBytes;
+            this.maxOpenDataFiles = config.maxOpenDataFiles;
+            this.fsyncMode = config.fsyncMode;
+            this.fsyncIntervalMillis = config.fsyncIntervalMillis;
+            this.cacheMaximumBytes = config.cacheMaximumBytes;
+            this.cacheConcurrencyLevel = config.cacheConcurrencyLevel;
+            this.keyDirectoryConcurrencyLevel = config.keyDirectoryConcurrencyLevel;
+            this.orderedIndex = config.orderedIndex;
+            this.verifyChecksums = config.verifyChecksums;
+            this.valueCodec = config.valueCodec;
+            this.compressionThresholdBytes = config.compressionThresholdBytes;
+            this.compactionPolicy = config.compactionPolicy;
+            this.compactionIntervalMillis = config.compactionIntervalMillis;
+            this.expirationSweepIntervalMillis = config.expirationSweepIntervalMillis;
+            this.recoveryParallelism = config.recoveryParallelism;
+            this.multiGetParallelism = config.multiGetParallelism;
+            this.shardCompactionParallelism = config.shardCompactionParallelism;
+            this.requestParallelism = config.requestParallelism;
+            this.pipelineMaxBatchSize = config.pipelineMaxBatchSize;
+        }
+
+        public Builder dbDirectory(String dbDirectory) {
+            this.dbDirectory = dbDirectory;
+            return this;
+        }
+
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder shardCount(int shardCount) {
+            this.shardCount = shardCount;
+            return this;
+        }
+
+        public Builder segmentSizeBytes(long segmentSizeBytes) {
+            this.segmentSizeBytes = segmentSizeBytes;
+            return this;
+        }
+
+        public Builder maxOpenDataFiles(int maxOpenDataFiles) {
+            this.maxOpenDataFiles = maxOpenDataFiles;
+            return this;
+        }
+
+        public Builder fsyncMode(FsyncMode fsyncMode) {
+            this.fsyncMode = fsyncMode;
+            return this;
+        }
+
+        public Builder fsyncIntervalMillis(long fsyncIntervalMillis) {
+            this.fsyncIntervalMillis = fsyncIntervalMillis;
+            return this;
+        }
+
+        public Builder cacheMaximumBytes(long cacheMaximumBytes) {
+            this.cacheMaximumBytes = cacheMaximumBytes;
+            return this;
+        }
+
+        public Builder cacheConcurrencyLevel(int cacheConcurrencyLevel) {
+            this.cacheConcurrencyLevel = cacheConcurrencyLevel;
+            return this;
+        }
+
+        public Builder keyDirectoryConcurrencyLevel(int keyDirectoryConcurrencyLevel) {
+            this.keyDirectoryConcurrencyLevel = keyDirectoryConcurrencyLevel;
+            return this;
+        }
+
+        public Builder orderedIndex(boolean orderedIndex) {
+            this.orderedIndex = orderedIndex;
+            return this;
+        }
+
+        public Builder verifyChecksums(boolean verifyChecksums) {
+            this.verifyChecksums = verifyChecksums;
+            return this;
+        }
+
+        /**
+         * The codec has to be registered with {@link ValueCodecs} so the values it wrote can be read back
+         */
+        public Builder valueCodec(ValueCodec valueCodec) {
+            this.valueCodec = valueCodec;
+            return this;
+        }
+
+        public Builder compressionThresholdBytes(int compressionThresholdBytes) {
+            this.compressionThresholdBytes = compressionThresholdBytes;
+            return this;
+        }
+
+        public Builder compactionPolicy(CompactionPolicy compactionPolicy) {
+            this.compactionPolicy = compactionPolicy;
+            return this;
+        }
+
+        public Builder compactionIntervalMillis(long compactionIntervalMillis) {
+            this.compactionIntervalMillis = compactionIntervalMillis;
+            return this;
+        }
+
+        public Builder expirationSweepIntervalMillis(long expirationSweepIntervalMillis) {
+            this.expirationSweepIntervalMillis = expirationSweepIntervalMillis;
+            return this;
+        }
+
+        public Builder recoveryParallelism(int recoveryParallelism) {
+            this.recoveryParallelism = recoveryParallelism;
+            return this;
+        }
+
+        public Builder multiGetParallelism(int multiGetParallelism) {
+            this.multiGetParallelism = multiGetParallelism;
+            return this;
+        }
+
+        public Builder shardCompactionParallelism(int shardCompactionParallelism) {
+            this.shardCompactionParallelism = shardCompactionParallelism;
+            return this;
+        }
+
+        public Builder requestParallelism(int requestParallelism) {
+            this.requestParallelism = requestParallelism;
+            return this;
+        }
+
+        public Builder pipelineMaxBatchSize(int pipelineMaxBatchSize) {
+            this.pipelineMaxBatchSize = pipelineMaxBatchSize;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if a setting is out of range
+         */
+        public DbConfig build() {
+            check(dbDirectory != null && !dbDirectory.isEmpty(), "DB directory must be given");
+            check(port >= 0 && port <= 65535, "Port must be between 0 and 65535");
+            check(shardCount > 0, "Shard count must be positive");
+            check(segmentSizeBytes > 0 && segmentSizeBytes <= MAX_SEGMENT_SIZE_BYTES,
+                    String.format("Segment size must be positive and at most %d bytes", MAX_SEGMENT_SIZE_BYTES));
+            check(maxOpenDataFiles > 0, "Maximum number of open data files must be positive");
+            check(fsyncMode != null, "Fsync mode must be given");
+            check(fsyncMode != FsyncMode.INTERVAL || fsyncIntervalMillis > 0,
+                    "Fsync interval must be positive with the INTERVAL fsync mode");
+            check(cacheMaximumBytes >= 0, "Cache budget must not be negative");
+            check(cacheConcurrencyLevel > 0, "Cache concurrency level must be positive");
+            check(keyDirectoryConcurrencyLevel > 0 && Integer.bitCount(keyDirectoryConcurrencyLevel) == 1,
+                    "Key directory concurrency level must be a positive power of two");
+            check(valueCodec != null, "Value codec must be given");
+            check(compressionThresholdBytes >= 0, "Compression threshold must not be negative");
+            check(compactionPolicy != null, "Compaction policy must be given");
+            check(compactionIntervalMillis > 0, "Compaction interval must be positive");
+            check(expirationSweepIntervalMillis >= 0, "Expiration sweep interval must not be negative");
+            check(recoveryParallelism > 0, "Recovery parallelism must be positive");
+            check(multiGetParallelism > 0, "Multi-get parallelism must be positive");
+            check(shardCompactionParallelism > 0, "Shard compaction parallelism must be positive");
+            check(requestParallelism > 0, "Request parallelism must be positive");
+            check(pipelineMaxBatchSize > 0, "Pipeline batch size must be positive");
+            return new DbConfig(this);
+        }
+
+        private static ValueCodec defaultValueCodec() {
+            try {
+                return ValueCodecs.forId(VALUE_CODEC_ID);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static void check(boolean condition, String message) {
+            if (!condition) {
+                throw new IllegalArgumentException(message);
+            }
+        }
+    }
+
+    private record PropertyReader(Properties properties) {
+
+        int getInt(String key, int defaultValue) {
+            String value = properties.getProperty(key);
+            try {
+                return value == null ? defaultValue : Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw invalid(key, value);
+            }
+        }
+
+        long getLong(String key, long defaultValue) {
+            String value = properties.getProperty(key);
+            try {
+                return value == null ? defaultValue : Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                throw invalid(key, value);
+            }
+        }
+
+        double getDouble(String key, double defaultValue) {
+            String value = properties.getProperty(key);
+            try {
+                return value == null ? defaultValue : Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                throw invalid(key, value);
+            }
+        }
+
+        boolean getBoolean(String key, boolean defaultValue) {
+            String value = properties.getProperty(key);
+            if (value == null) {
+                return defaultValue;
+            }
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "true" -> true;
+                case "false" -> false;
+                default -> throw invalid(key, value);
+            };
+        }
+
+        FsyncMode getFsyncMode(String key, FsyncMode defaultValue) {
+            String value = properties.getProperty(key);
+            try {
+                return value == null ? defaultValue : FsyncMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw invalid(key, value);
+            }
+        }
+
+        ValueCodec getValueCodec(String key, ValueCodec defaultValue) {
+            int id = getInt(key, defaultValue.id());
+            try {
+                if (id < 0 || id > ValueCodecs.MAX_ID) {
+                    throw new IOException(String.format("Codec ID must be between 0 and %d", ValueCodecs.MAX_ID));
+                }
+                return ValueCodecs.forId((byte) id);
+            } catch (IOException e) {
+                throw invalid(key, properties.getProperty(key));
+            }
+        }
+
+        LocalTime getLocalTime(String key, LocalTime defaultValue) {
+            String value = properties.getProperty(key);
+            try {
+                return value == null ? defaultValue : LocalTime.parse(value.trim());
+            } catch (DateTimeParseException e) {
+                throw invalid(key, value);
+            }
+        }
+
+        private static IllegalArgumentException invalid(String key, String value) {
+            return new IllegalArgumentException(String.format("Invalid value %s for setting %s", value, key));
+        }
+    }
+}
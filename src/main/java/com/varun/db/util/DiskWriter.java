@@ -1,59 +1,228 @@
 package com.varun.db.util;
 
-import com.google.common.primitives.Ints;
+import com.varun.db.metrics.LatencyHistogram;
 import com.varun.db.storage.FileRecord;
+import com.varun.db.storage.SegmentManager;
 
-import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-import static com.varun.db.util.FileRecordConfig.FILE_MEMORY_THRESHOLD;
-import static com.varun.db.util.FileRecordConfig.FILE_PREFIX;
+/**
+ * Appends records to the active file through a channel which stays open until the file is rolled over.
+ * <p>
+ * Every appended byte gets a position in a sequence spanning all files written by this writer. A write is durable
+ * once {@code durableSequence} has moved past the end of the record. With {@link FsyncMode#ALWAYS} writers wait in
+ * {@link #awaitDurable(long)} and the first one to get there fsyncs on behalf of everybody who wrote before it, so
+ * concurrent writers share a single fsync.
+ */
+public class DiskWriter implements Closeable {
 
-public class DiskWriter {
+    private static final int INITIAL_WRITE_BUFFER_BYTES = 4096;
 
-    private final String dbDirectory;
-    private File file;
+    private final SegmentManager segmentManager;
+    private final FsyncMode fsyncMode;
+    private final long segmentSizeBytes;
+    private final Object syncLock;
+    private final AtomicLong durableSequence;
+    private final ScheduledExecutorService syncExecutor;
+    private final LatencyHistogram fsyncLatency;
+    private volatile File file;
+    private FileChannel channel;
+    private ByteBuffer writeBuffer;
+    private long fileOffset;
+    private volatile long writtenSequence;
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
     public DiskWriter(String dbDirectory) throws IOException {
-        this.dbDirectory = dbDirectory;
-        createNewFile(dbDirectory);
-        this.file.createNewFile();
-    }
-
-    public static DiskWriterResponse persistToDiskForFile(FileRecord fileRecord, File file) throws IOException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        byte[] fileRecordBytes = fileRecord.toBytes();
-        outputStream.write(Ints.toByteArray(fileRecordBytes.length));
-        outputStream.write(fileRecordBytes);
-        int valuePosition = (int) (
-                file.length() +
-                        /* recordSizeAsInteger */ 4 +
-                        /* timestamp */ 8 +
-                        /* key size */ 4 +
-                        /* value size */ 4 +
-                        /* key */ fileRecord.key().getBytes().length
-        );
-        try (FileOutputStream fileOutputStream = new FileOutputStream(file, true)) {
-            fileOutputStream.write(outputStream.toByteArray());
-        }
-        return new DiskWriterResponse(file.getPath(), valuePosition);
+        this(DbConfig.builder().dbDirectory(dbDirectory).build());
     }
 
+    public DiskWriter(String dbDirectory, FsyncMode fsyncMode, long fsyncIntervalMillis) throws IOException {
+        this(DbConfig.builder().dbDirectory(dbDirectory).fsyncMode(fsyncMode).fsyncIntervalMillis(fsyncIntervalMillis)
+                .build());
+    }
+
+    public DiskWriter(DbConfig config) throws IOException {
+        this(config, new SegmentManager(config.dbDirectory()));
+    }
+
+    /**
+     * Writes to the DB directory of the config, rolling over to a new file from the segment manager once the active
+     * one reaches the segment size
+     */
+    public DiskWriter(DbConfig config, SegmentManager segmentManager) throws IOException {
+        this.segmentManager = segmentManager;
+        this.fsyncMode = config.fsyncMode();
+        this.segmentSizeBytes = config.segmentSizeBytes();
+        long fsyncIntervalMillis = config.fsyncIntervalMillis();
+        this.syncLock = new Object();
+        this.durableSequence = new AtomicLong();
+        this.fsyncLatency = new LatencyHistogram();
+        this.writeBuffer = ByteBuffer.allocateDirect(INITIAL_WRITE_BUFFER_BYTES);
+        openNewFile();
+        if (fsyncMode == FsyncMode.INTERVAL) {
+            this.syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "bit-db-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.syncExecutor.scheduleWithFixedDelay(this::syncInBackground, fsyncIntervalMillis, fsyncIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.syncExecutor = null;
+        }
+    }
+
+    /**
+     * Appends the record to the active file. The record is visible to readers once this method returns, callers
+     * that need it to be durable follow up with {@link #awaitDurable(long)}.
+     */
     public DiskWriterResponse persistToDiskForActiveFile(FileRecord fileRecord) throws IOException {
+        return persistToDiskForActiveFile(List.of(fileRecord)).get(0);
+    }
+
+    /**
+     * Appends the records to the active file with a single write, so they always end up next to each other in the
+     * same file
+     *
+     * @return a response per record in the same order, all sharing the commit sequence of the last record
+     */
+    public synchronized List<DiskWriterResponse> persistToDiskForActiveFile(List<FileRecord> fileRecords)
+            throws IOException {
         checkFileMemory();
-        return persistToDiskForFile(fileRecord, file);
+        // Records are encoded straight into a direct buffer which is reused across appends, so the channel does not
+        // have to copy them into a temporary direct buffer either
+        int batchLength = 0;
+        for (FileRecord fileRecord : fileRecords) {
+            batchLength += 4 + fileRecord.encodedLength();
+        }
+        ByteBuffer buffer = writeBufferFor(batchLength);
+        int[] valuePositions = new int[fileRecords.size()];
+        for (int i = 0; i < fileRecords.size(); i++) {
+            FileRecord fileRecord = fileRecords.get(i);
+            valuePositions[i] = (int) (fileOffset + buffer.position() + valuePositionInRecord(fileRecord));
+            buffer.putInt(fileRecord.encodedLength());
+            fileRecord.writeTo(buffer);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        fileOffset += buffer.limit();
+        writtenSequence += buffer.limit();
+        List<DiskWriterResponse> responses = new ArrayList<>(fileRecords.size());
+        for (int valuePosition : valuePositions) {
+            responses.add(new DiskWriterResponse(file.getPath(), valuePosition, writtenSequence));
+        }
+        return responses;
     }
 
-    private void checkFileMemory() {
-        if (file.length() >= FILE_MEMORY_THRESHOLD) {
-            createNewFile(dbDirectory);
+    /**
+     * Blocks until every byte up to {@code commitSequence} is on disk. This is a no-op unless the writer is running
+     * with {@link FsyncMode#ALWAYS}.
+     */
+    public void awaitDurable(long commitSequence) throws IOException {
+        if (fsyncMode != FsyncMode.ALWAYS) {
+            return;
         }
+        sync(commitSequence);
+    }
+
+    public String getActiveFilePath() {
+        return file.getPath();
+    }
+
+    /**
+     * @return bytes appended by this writer across all of its files
+     */
+    public long getBytesAppended() {
+        return writtenSequence;
+    }
+
+    /**
+     * @return latency of the fsyncs issued to make writes durable, fsyncs of files being rolled over are not included
+     */
+    public LatencyHistogram.Snapshot getFsyncLatency() {
+        return fsyncLatency.snapshot();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (syncExecutor != null) {
+            syncExecutor.shutdownNow();
+        }
+        if (channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    private void sync(long commitSequence) throws IOException {
+        synchronized (syncLock) {
+            if (durableSequence.get() >= commitSequence) {
+                // Someone else's fsync already covered this write
+                return;
+            }
+            FileChannel syncChannel;
+            long syncSequence;
+            synchronized (this) {
+                syncChannel = channel;
+                syncSequence = writtenSequence;
+            }
+            long start = System.nanoTime();
+            try {
+                syncChannel.force(false);
+                fsyncLatency.recordSince(start);
+            } catch (ClosedChannelException e) {
+                // The file was rolled over in between, rolling over fsyncs the file before closing it
+            }
+            durableSequence.accumulateAndGet(syncSequence, Math::max);
+        }
+    }
+
+    private void syncInBackground() {
+        try {
+            sync(writtenSequence);
+        } catch (IOException e) {
+            System.out.printf("Failed to fsync %s: %s\n", file.getPath(), e.getMessage());
+        }
+    }
+
+    private ByteBuffer writeBufferFor(int bytes) {
+        if (writeBuffer.capacity() < bytes) {
+            writeBuffer = ByteBuffer.allocateDirect(Math.max(bytes, writeBuffer.capacity() * 2));
+        }
+        writeBuffer.clear();
+        return writeBuffer;
+    }
+
+    private void checkFileMemory() throws IOException {
+        if (fileOffset >= segmentSizeBytes) {
+            channel.force(false);
+            channel.close();
+            durableSequence.accumulateAndGet(writtenSequence, Math::max);
+            openNewFile();
+        }
+    }
+
+    private void openNewFile() throws IOException {
+        this.file = segmentManager.newSegment();
+        FileOutputStream fileOutputStream = new FileOutputStream(file, true);
+        this.channel = fileOutputStream.getChannel();
+        this.fileOffset = channel.size();
     }
 
-    private void createNewFile(String dbDirectory) {
-        this.file = new File(dbDirectory + "/" + FILE_PREFIX + System.currentTimeMillis());
+    private static int valuePositionInRecord(FileRecord fileRecord) {
+        return /* recordSizeAsInteger */ 4 + FileRecord.valueOffset(fileRecord.flags(), fileRecord.keySize());
     }
 }
@@ -1,4 +1,10 @@
 package com.varun.db.util;
 
-public record DiskWriterResponse(String fileName, int valuePosition) {
+/**
+ * @param fileName       file the record was appended to
+ * @param valuePosition  offset of the value within the file
+ * @param commitSequence position of the end of the record in the stream of all bytes appended by a
+ *                       {@link DiskWriter}, to be passed to {@link DiskWriter#awaitDurable(long)}
+ */
+public record DiskWriterResponse(String fileName, int valuePosition, long commitSequence) {
 }
@@ -2,25 +2,173 @@ package com.varun.db.util;
 
 public class FileRecordConfig {
 
-    public static final int TIMESTAMP_OFFSET = 0;
+    public static final int CHECKSUM_OFFSET = 0;
+
+    public static final int CHECKSUM_LENGTH = 4;
+
+    public static final int VERSION_OFFSET = 4;
+
+    public static final int VERSION_LENGTH = 1;
+
+    public static final int FLAGS_OFFSET = 5;
+
+    public static final int FLAGS_LENGTH = 1;
+
+    public static final int TIMESTAMP_OFFSET = 6;
 
     public static final int TIMESTAMP_LENGTH = 8;
 
-    public static final int KEY_SIZE_OFFSET = 8;
+    public static final int KEY_SIZE_OFFSET = 14;
 
     public static final int KEY_SIZE_LENGTH = 4;
 
-    public static final int VALUE_SIZE_OFFSET = 12;
+    public static final int VALUE_SIZE_OFFSET = 18;
 
     public static final int VALUE_SIZE_LENGTH = 4;
 
-    public static final int KEY_OFFSET = 16;
+    public static final int KEY_OFFSET = 22;
+
+    public static final byte RECORD_FORMAT_VERSION = 1;
+
+    /**
+     * Bits of the record flags holding the ID of the codec the value is compressed with
+     */
+    public static final int FLAGS_CODEC_MASK = 0x07;
+
+    /**
+     * Set on every record written as part of a {@link com.varun.db.storage.WriteBatch}
+     */
+    public static final int FLAGS_BATCH = 0x08;
+
+    /**
+     * Set on the last record of a batch. Recovery only applies a batch once it has seen this record.
+     */
+    public static final int FLAGS_BATCH_END = 0x10;
+
+    public static final int FLAGS_BATCH_MASK = FLAGS_BATCH | FLAGS_BATCH_END;
+
+    /**
+     * Set on records which expire, the expiry time follows the key
+     */
+    public static final int FLAGS_EXPIRY = 0x20;
+
+    public static final int EXPIRY_LENGTH = 8;
+
+    /**
+     * Set on the record written when a key is deleted, which has an empty value
+     */
+    public static final int FLAGS_TOMBSTONE = 0x40;
 
     public static final String FILE_PREFIX = "file_";
 
     public static final String DB_DIRECTORY = "bit-db";
 
-    public static final long FILE_MEMORY_THRESHOLD = 8000L;
+    public static final int DEFAULT_PORT = 8000;
+
+    public static final long FILE_MEMORY_THRESHOLD = 64L * 1024 * 1024;
+
+    /**
+     * Largest segment size. Files are only rolled over once they reach the segment size, and compaction only starts a
+     * new output file between input files, so a file can grow to about twice the segment size plus a batch while its
+     * value positions still have to fit in an int.
+     */
+    public static final long MAX_SEGMENT_SIZE_BYTES = Integer.MAX_VALUE / 4;
+
+    /**
+     * Most data files a store keeps open for reads, the least recently read one is closed to open another
+     */
+    public static final int MAX_OPEN_DATA_FILES = 256;
+
+    public static final FsyncMode FSYNC_MODE = FsyncMode.OS;
+
+    public static final long FSYNC_INTERVAL_MILLIS = 1000L;
+
+    public static final boolean VERIFY_CHECKSUMS_ON_READ = false;
+
+    public static final byte VALUE_CODEC_ID = 0;
+
+    public static final int COMPRESSION_THRESHOLD_BYTES = 512;
+
+    public static final long CACHE_MAXIMUM_BYTES = 64L * 1024 * 1024;
+
+    public static final int CACHE_CONCURRENCY_LEVEL = 16;
+
+    public static final int KEY_DIRECTORY_CONCURRENCY_LEVEL = 16;
+
+    /**
+     * Whether keys are also kept sorted for range and prefix scans, which costs a second copy of every key on the heap
+     */
+    public static final boolean ORDERED_INDEX_ENABLED = true;
+
+    /**
+     * Number of values a scan fetches from disk at a time
+     */
+    public static final int SCAN_BATCH_SIZE = 256;
+
+    /**
+     * Maximum number of entries returned by a SCAN command which does not ask for a limit
+     */
+    public static final int SCAN_DEFAULT_LIMIT = 1000;
+
+    public static final double COMPACTION_MIN_DEAD_RATIO = 0.5;
+
+    public static final long COMPACTION_MAX_GARBAGE_BYTES = 256L * 1024 * 1024;
+
+    public static final long COMPACTION_MAX_BYTES_PER_SECOND = 0L;
+
+    /**
+     * How often the server checks whether compaction is worth running
+     */
+    public static final long COMPACTION_INTERVAL_MILLIS = 5000L;
+
+    /**
+     * How often expired keys are removed from the key directory, 0 to only remove them when they are read or compacted
+     */
+    public static final long EXPIRATION_SWEEP_INTERVAL_MILLIS = 1000L;
+
+    /**
+     * Maximum number of keys expired while holding the write lock, so a sweep does not stall writers for long
+     */
+    public static final int EXPIRATION_SWEEP_BATCH_SIZE = 1000;
+
+    public static final double BLOOM_FILTER_FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * Average record size the Bloom filter of the active file is sized for, so it expects the segment size divided by
+     * this many keys. Filling it with more keys only raises its false positive rate.
+     */
+    public static final int BLOOM_FILTER_AVERAGE_RECORD_BYTES = 32;
+
+    public static final int RECOVERY_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of independent stores the server spreads keys over, 1 for a single store in the DB directory itself
+     */
+    public static final int SHARD_COUNT = 1;
+
+    public static final int SHARD_COMPACTION_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Values of a multi-get which are at most this many bytes apart in a data file are fetched with a single read
+     */
+    public static final int MULTI_GET_MAX_GAP_BYTES = 512;
+
+    public static final int MULTI_GET_MAX_READ_BYTES = 1024 * 1024;
+
+    /**
+     * Number of data files a multi-get reads from in parallel, 1 to read them one after the other on the caller thread
+     */
+    public static final int MULTI_GET_PARALLELISM = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Number of threads running the read-only commands of pipelined requests, shared by all client connections
+     */
+    public static final int REQUEST_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Most requests of a connection which are executed together and answered with a single flush
+     */
+    public static final int PIPELINE_MAX_BATCH_SIZE = 128;
 
     private FileRecordConfig() {
     }
@@ -3,6 +3,9 @@ package com.varun.db.util;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 public class FileSystemUtil {
 
@@ -15,6 +18,20 @@ public class FileSystemUtil {
         return data;
     }
 
+    /**
+     * Forces the entries of a directory to disk, so files created or renamed in it survive a crash
+     */
+    public static void syncDirectory(String directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(directory), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened for syncing on every platform, e.g. on Windows
+            if (!System.getProperty("os.name").startsWith("Windows")) {
+                throw e;
+            }
+        }
+    }
+
     @SuppressWarnings("ResultOfMethodCallIgnored")
     public static void createFileIfNotExists(String fileName, boolean isDirectory) throws IOException {
         File file = new File(fileName);
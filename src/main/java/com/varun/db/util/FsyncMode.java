@@ -0,0 +1,19 @@
+package com.varun.db.util;
+
+/**
+ * Durability mode of the active file written by {@link DiskWriter}
+ */
+public enum FsyncMode {
+    /**
+     * Every write returns only once it is on disk. Concurrent writers share a single fsync (group commit).
+     */
+    ALWAYS,
+    /**
+     * The active file is fsynced in the background at a fixed interval
+     */
+    INTERVAL,
+    /**
+     * Flushing to disk is left to the operating system
+     */
+    OS
+}
@@ -0,0 +1,114 @@
+package com.varun.db.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+
+import static com.varun.db.util.FileRecordConfig.MAX_OPEN_DATA_FILES;
+
+/**
+ * Keeps a read-only {@link FileChannel} open per recently read data file so that a read is a single positional read
+ * instead of an open, seek, read and close. Positional reads do not touch the channel position, so a channel is
+ * shared by all reader threads without any locking.
+ * <p>
+ * At most {@code maxOpenFiles} channels are kept open, the least recently used one is closed when another file has
+ * to be opened. A read which loses its channel to eviction reopens the file and carries on.
+ * <p>
+ * Callers must make sure no read is in flight for a file when it is passed to {@link #close(String)}.
+ * <p>
+ * Interrupting a thread while it reads closes the channel for every thread sharing it. The closed channel is dropped
+ * from the pool and the other readers retry on a freshly opened one.
+ */
+public class SegmentReaderPool implements Closeable {
+
+    private final Cache<String, FileChannel> channels;
+
+    public SegmentReaderPool() {
+        this(MAX_OPEN_DATA_FILES);
+    }
+
+    public SegmentReaderPool(int maxOpenFiles) {
+        if (maxOpenFiles <= 0) {
+            throw new IllegalArgumentException("Maximum number of open files must be positive");
+        }
+        this.channels = CacheBuilder.newBuilder()
+                .maximumSize(maxOpenFiles)
+                .removalListener(SegmentReaderPool::closeChannel)
+                .build();
+    }
+
+    public byte[] read(String fileName, long filePointer, int bytes) throws IOException {
+        byte[] data = new byte[bytes];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        FileChannel channel = getChannel(fileName);
+        while (buffer.hasRemaining()) {
+            int read;
+            try {
+                read = channel.read(buffer, filePointer + buffer.position());
+            } catch (ClosedByInterruptException e) {
+                channels.asMap().remove(fileName, channel);
+                throw e;
+            } catch (ClosedChannelException e) {
+                // Evicted, or closed by the interrupt of another reader
+                channels.asMap().remove(fileName, channel);
+                channel = getChannel(fileName);
+                continue;
+            }
+            if (read < 0) {
+                throw new EOFException(String.format("Unexpected end of file %s at %d", fileName,
+                        filePointer + buffer.position()));
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Closes the channel for a file which is about to be deleted or replaced
+     */
+    public void close(String fileName) {
+        channels.invalidate(fileName);
+    }
+
+    @Override
+    public void close() {
+        channels.invalidateAll();
+    }
+
+    /**
+     * @return number of channels currently open
+     */
+    public long openFileCount() {
+        channels.cleanUp();
+        return channels.size();
+    }
+
+    private FileChannel getChannel(String fileName) throws IOException {
+        try {
+            return channels.get(fileName, () -> FileChannel.open(Path.of(fileName), StandardOpenOption.READ));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static void closeChannel(RemovalNotification<String, FileChannel> notification) {
+        try {
+            notification.getValue().close();
+        } catch (IOException e) {
+            System.out.printf("Failed to close %s: %s\n", notification.getKey(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.varun.db;
+
+import com.varun.db.command.CommandResponse;
+import com.varun.db.server.FrameCodec;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DbServerTest {
+
+    private static final String TEST_DIR = "test-dir";
+
+    private DbServer dbServer;
+
+    @Before
+    public void setUp() throws IOException {
+        dbServer = new DbServer(0, TEST_DIR);
+        dbServer.start();
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @After
+    public void tearDown() throws IOException {
+        dbServer.stop();
+        Arrays.stream(Objects.requireNonNull(new File(TEST_DIR).listFiles()))
+                .forEach(File::delete);
+        new File(TEST_DIR).delete();
+    }
+
+    @Test
+    public void dbServer_setGetAndDeleteOverSocket() throws IOException {
+        try (Socket socket = new Socket("localhost", dbServer.getPort());
+             DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+             DataOutputStream outputStream = new DataOutputStream(socket.getOutputStream())) {
+            assertEquals(CommandResponse.ok(), send(inputStream, outputStream, "SET A 1"));
+            assertEquals(CommandResponse.ok("1"), send(inputStream, outputStream, "GET A"));
+            assertEquals(CommandResponse.ok(), send(inputStream, outputStream, "DEL A"));
+            assertEquals(CommandResponse.notFound("Key A not found"), send(inputStream, outputStream, "GET A"));
+            assertEquals(CommandResponse.error("Operation not supported"),
+                    send(inputStream, outputStream, "UPDATE A"));
+        }
+    }
+
+    @Test
+    public void dbServer_answersPipelinedRequestsInOrder() throws IOException {
+        try (Socket socket = new Socket("localhost", dbServer.getPort());
+             DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+             DataOutputStream outputStream = new DataOutputStream(
+                     new BufferedOutputStream(socket.getOutputStream()))) {
+            // Every read has to see the write sent before it, even when it runs next to other reads
+            List<CommandResponse> expected = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                FrameCodec.writeRequest(outputStream, "SET A " + i);
+                expected.add(CommandResponse.ok());
+                FrameCodec.writeRequest(outputStream, "GET A");
+                expected.add(CommandResponse.ok(String.valueOf(i)));
+                FrameCodec.writeRequest(outputStream, "MGET A B");
+                expected.add(CommandResponse.ok("+" + i + "\n-"));
+            }
+            FrameCodec.writeRequest(outputStream, "UPDATE A");
+            expected.add(CommandResponse.error("Operation not supported"));
+            FrameCodec.writeRequest(outputStream, "GET B");
+            expected.add(CommandResponse.notFound("Key B not found"));
+            outputStream.flush();
+
+            for (CommandResponse response : expected) {
+                assertEquals(response, FrameCodec.readResponse(inputStream));
+            }
+        }
+    }
+
+    @Test
+    public void dbServer_reportsStats() throws IOException {
+        try (Socket socket = new Socket("localhost", dbServer.getPort());
+             DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+             DataOutputStream outputStream = new DataOutputStream(socket.getOutputStream())) {
+            send(inputStream, outputStream, "SET A 1");
+            send(inputStream, outputStream, "GET A");
+
+            String stats = send(inputStream, outputStream, "STATS").message();
+
+            assertTrue(stats.contains("key_count 1\n"));
+            assertTrue(stats.contains("set_count 1\n"));
+            assertTrue(stats.contains("get_count 1\n"));
+            assertTrue(stats.contains("get_p99_us "));
+        }
+    }
+
+    @Test
+    public void dbServer_servesConcurrentClients() throws InterruptedException {
+        int clients = 8;
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int client = 0; client < clients; client++) {
+            String key = "key" + client;
+            threads.add(new Thread(() -> {
+                try (Socket socket = new Socket("localhost", dbServer.getPort());
+                     DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+                     DataOutputStream outputStream = new DataOutputStream(socket.getOutputStream())) {
+                    for (int i = 0; i < 50; i++) {
+                        assertEquals(CommandResponse.ok(), send(inputStream, outputStream, "SET " + key + " " + i));
+                        assertEquals(CommandResponse.ok(String.valueOf(i)),
+                                send(inputStream, outputStream, "GET " + key));
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.toString(), failures.isEmpty());
+    }
+
+    private static CommandResponse send(DataInputStream inputStream, DataOutputStream outputStream, String command)
+            throws IOException {
+        FrameCodec.writeRequest(outputStream, command);
+        outputStream.flush();
+        return FrameCodec.readResponse(inputStream);
+    }
+}
@@ -0,0 +1,89 @@
+package com.varun.db.cache;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class SegmentedLruCacheTest {
+
+    @Test
+    public void getAndPut_recordsHitsAndMisses() {
+        SegmentedLruCache cache = new SegmentedLruCache(1024 * 1024, 4);
+
+        assertNull(cache.get(bytes("A")));
+        cache.put(bytes("A"), bytes("1"));
+        assertArrayEquals(bytes("1"), cache.get(bytes("A")));
+        assertArrayEquals(bytes("1"), cache.get(bytes("A")));
+
+        CacheStats stats = cache.stats();
+        assertEquals(2, stats.hitCount());
+        assertEquals(1, stats.missCount());
+        assertEquals(1, stats.entryCount());
+        assertEquals(SegmentedLruCache.weigh(bytes("A"), bytes("1")), stats.weightBytes());
+    }
+
+    @Test
+    public void put_evictsToStayWithinBudget() {
+        int entryWeight = SegmentedLruCache.weigh(bytes("key00"), bytes("value00"));
+        SegmentedLruCache cache = new SegmentedLruCache(10L * entryWeight, 1);
+
+        for (int i = 0; i < 20; i++) {
+            cache.put(bytes(String.format("key%02d", i)), bytes(String.format("value%02d", i)));
+        }
+
+        CacheStats stats = cache.stats();
+        assertEquals(10, stats.entryCount());
+        assertEquals(10, stats.evictionCount());
+        assertTrue(stats.weightBytes() <= 10L * entryWeight);
+        assertNull(cache.get(bytes("key00")));
+        assertArrayEquals(bytes("value19"), cache.get(bytes("key19")));
+    }
+
+    @Test
+    public void put_scanDoesNotEvictProtectedEntries() {
+        int entryWeight = SegmentedLruCache.weigh(bytes("hot0"), bytes("value"));
+        SegmentedLruCache cache = new SegmentedLruCache(10L * entryWeight, 1);
+        for (int i = 0; i < 5; i++) {
+            cache.put(bytes("hot" + i), bytes("value"));
+            // Second access promotes the entry to the protected segment
+            cache.get(bytes("hot" + i));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(bytes("cld" + i), bytes("value"));
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(bytes("value"), cache.get(bytes("hot" + i)));
+        }
+    }
+
+    @Test
+    public void invalidate_removesEntry() {
+        SegmentedLruCache cache = new SegmentedLruCache(1024 * 1024, 4);
+        cache.put(bytes("A"), bytes("1"));
+        cache.get(bytes("A"));
+
+        cache.invalidate(bytes("A"));
+
+        assertNull(cache.get(bytes("A")));
+        assertEquals(0, cache.stats().entryCount());
+        assertEquals(0, cache.stats().weightBytes());
+    }
+
+    @Test
+    public void put_skipsValuesLargerThanBudget() {
+        SegmentedLruCache cache = new SegmentedLruCache(64, 1);
+
+        cache.put(bytes("A"), bytes("1".repeat(100)));
+
+        assertNull(cache.get(bytes("A")));
+        assertEquals(0, cache.stats().entryCount());
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
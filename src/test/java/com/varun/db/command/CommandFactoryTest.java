@@ -1,8 +1,11 @@
 package com.varun.db.command;
 
 import com.varun.db.exception.InvalidCommandException;
+import com.varun.db.util.FileRecordConfig;
 import org.junit.Test;
 
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -30,6 +33,69 @@ public class CommandFactoryTest {
         assertEquals("2", setCommand.value());
     }
 
+    @Test
+    public void multiGetCommandParsed_success() throws InvalidCommandException {
+        String input = "MGET A  B ";
+        Command command = CommandFactory.parseCommand(input);
+        assertTrue(command instanceof MultiGetCommand);
+
+        MultiGetCommand multiGetCommand = (MultiGetCommand) command;
+        assertEquals(List.of("A", "B"), multiGetCommand.keys());
+    }
+
+    @Test
+    public void multiSetCommandParsed_success() throws InvalidCommandException {
+        String input = "  mset A 1   B  2 ";
+        Command command = CommandFactory.parseCommand(input);
+        assertTrue(command instanceof MultiSetCommand);
+
+        MultiSetCommand multiSetCommand = (MultiSetCommand) command;
+        assertEquals(List.of("A", "B"), multiSetCommand.keys());
+        assertEquals(List.of("1", "2"), multiSetCommand.values());
+    }
+
+    @Test
+    public void multiDelCommandParsed_success() throws InvalidCommandException {
+        String input = "MDEL A B   C ";
+        Command command = CommandFactory.parseCommand(input);
+        assertTrue(command instanceof MultiDeleteCommand);
+
+        MultiDeleteCommand multiDeleteCommand = (MultiDeleteCommand) command;
+        assertEquals(List.of("A", "B", "C"), multiDeleteCommand.keys());
+    }
+
+    @Test
+    public void scanCommandParsed_success() throws InvalidCommandException {
+        String input = "SCAN A C 5";
+        Command command = CommandFactory.parseCommand(input);
+        assertTrue(command instanceof ScanCommand);
+
+        assertEquals(new ScanCommand("A", "C", 5), command);
+    }
+
+    @Test
+    public void prefixScanCommandParsed_success() throws InvalidCommandException {
+        String input = "  scan user:123:*   ";
+        Command command = CommandFactory.parseCommand(input);
+        assertTrue(command instanceof PrefixScanCommand);
+
+        assertEquals(new PrefixScanCommand("user:123:", FileRecordConfig.SCAN_DEFAULT_LIMIT), command);
+    }
+
+    @Test
+    public void statsCommandParsed_success() throws InvalidCommandException {
+        assertEquals(new StatsCommand(), CommandFactory.parseCommand("  STATS  "));
+        assertEquals(new StatsCommand(), CommandFactory.parseCommand("info"));
+    }
+
+    @Test
+    public void setCommandWithExpiryParsed_success() throws InvalidCommandException {
+        String input = "SET A 2 ex 30";
+        Command command = CommandFactory.parseCommand(input);
+
+        assertEquals(new SetCommand("A", "2", 30), command);
+    }
+
     @Test
     public void delCommandParsed_success() throws InvalidCommandException {
         String input = "    DEL A     ";
@@ -37,9 +37,21 @@ public class CommandFactoryValidationTest {
                 {"    DEL    ", "Operands needs to be specified in the command"},
                 {"    SET A    ", "SET operation should contain value parameter"},
                 {"    SET A  2 5  ", "SET operation should not contain parameters in addition to key & value"},
+                {"    SET A 2 EX   ", "SET operation should contain the number of seconds after EX"},
+                {"    SET A 2 EX 10 20 ", "SET operation should contain the number of seconds after EX"},
+                {"    SET A 2 EX -1 ", "SET expiry should be a positive number of seconds"},
+                {"    SET A 2 EX soon ", "SET expiry should be a positive number of seconds"},
                 {"    GET A 4   ", "GET/DEL operation should not contain parameters in addition to key"},
                 {"    DEL A 6   ", "GET/DEL operation should not contain parameters in addition to key"},
+                {"    MSET    ", "Operands needs to be specified in the command"},
+                {"    MSET A 1 B   ", "MSET operation should contain a value for every key"},
+                {"    SCAN A    ", "SCAN operation should contain a prefix ending with * or a start and end key"},
+                {"    SCAN A* 5 6   ", "SCAN operation should contain a prefix ending with * or a start and end key"},
+                {"    SCAN A C x   ", "SCAN limit should be a positive number"},
+                {"    SCAN A* 0   ", "SCAN limit should be a positive number"},
+                {"    STATS A   ", "STATS/INFO operation should not contain any parameters"},
                 {"    UPDATE    ", "Operation not supported"},
+                {"    GETS A    ", "Operation not supported"},
         });
     }
 
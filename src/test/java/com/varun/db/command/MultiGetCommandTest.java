@@ -0,0 +1,38 @@
+package com.varun.db.command;
+
+import com.varun.db.storage.KeyValueStore;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.Assert.assertEquals;
+
+public class MultiGetCommandTest {
+
+    private static final String TEST_DIR = "test-dir";
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @After
+    public void tearDown() {
+        Arrays.stream(Objects.requireNonNull(new File(TEST_DIR).listFiles()))
+                .forEach(File::delete);
+        new File(TEST_DIR).delete();
+    }
+
+    @Test
+    public void execute_tellsMissingKeysFromEmptyValues() throws IOException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "");
+        keyValueStore.set("B", "1");
+
+        CommandResponse response = new MultiGetCommand(List.of("A", "C", "B")).execute(keyValueStore);
+
+        assertEquals(CommandResponse.ok("+\n-\n+1"), response);
+        keyValueStore.close();
+    }
+}
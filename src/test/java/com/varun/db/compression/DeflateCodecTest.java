@@ -0,0 +1,43 @@
+package com.varun.db.compression;
+
+import com.varun.db.exception.CorruptRecordException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+public class DeflateCodecTest {
+
+    private final DeflateCodec codec = new DeflateCodec(Deflater.BEST_SPEED);
+
+    @Test
+    public void compress_roundTripsRepetitiveValue() throws IOException {
+        byte[] value = "{\"name\":\"bit-db\",\"tags\":[\"kv\",\"bitcask\"]}".repeat(50).getBytes(StandardCharsets.UTF_8);
+
+        byte[] compressed = codec.compress(value);
+
+        assertTrue(compressed.length < value.length / 3);
+        assertArrayEquals(value, codec.decompress(compressed));
+    }
+
+    @Test
+    public void compress_roundTripsIncompressibleValue() throws IOException {
+        byte[] value = new byte[100_000];
+        new Random(42).nextBytes(value);
+
+        assertArrayEquals(value, codec.decompress(codec.compress(value)));
+        assertArrayEquals(new byte[0], codec.decompress(codec.compress(new byte[0])));
+    }
+
+    @Test(expected = CorruptRecordException.class)
+    public void decompress_rejectsTruncatedValue() throws IOException {
+        byte[] compressed = codec.compress("value".repeat(100).getBytes(StandardCharsets.UTF_8));
+
+        codec.decompress(Arrays.copyOf(compressed, compressed.length / 2));
+    }
+}
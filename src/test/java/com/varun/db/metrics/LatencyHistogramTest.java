@@ -0,0 +1,106 @@
+package com.varun.db.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void snapshot_reportsPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.count());
+        assertEquals(500_500, snapshot.meanNanos(), 0.001);
+        assertEquals(500_000, snapshot.percentileNanos(50), 500_000 / 16.0);
+        assertEquals(990_000, snapshot.percentileNanos(99), 990_000 / 16.0);
+        assertEquals(1_000_000, snapshot.percentileNanos(100));
+        assertEquals(1_000_000, snapshot.maxNanos());
+    }
+
+    @Test
+    public void snapshot_isExactForSmallValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(7);
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(3, snapshot.count());
+        assertEquals(0, snapshot.percentileNanos(1));
+        assertEquals(3, snapshot.percentileNanos(50));
+        assertEquals(7, snapshot.percentileNanos(99.9));
+    }
+
+    @Test
+    public void snapshot_clampsValuesOutOfRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1, snapshot.count());
+        assertEquals(snapshot.maxNanos(), snapshot.percentileNanos(50));
+        assertTrue(snapshot.maxNanos() > TimeUnit.MINUTES.toNanos(30));
+    }
+
+    @Test
+    public void emptySnapshot_reportsZero() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertEquals(0, snapshot.count());
+        assertEquals(0, snapshot.meanNanos(), 0);
+        assertEquals(0, snapshot.percentileNanos(99));
+    }
+
+    @Test
+    public void merge_addsUpBothHistograms() {
+        LatencyHistogram fast = new LatencyHistogram();
+        LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            fast.record(TimeUnit.MICROSECONDS.toNanos(10));
+        }
+        for (int i = 0; i < 10; i++) {
+            slow.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        LatencyHistogram.Snapshot merged = fast.snapshot().merge(slow.snapshot());
+
+        assertEquals(100, merged.count());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), merged.maxNanos());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(10), merged.percentileNanos(90), 10_000 / 16.0);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), merged.percentileNanos(91), 10_000_000 / 16.0);
+        assertEquals(LatencyHistogram.Snapshot.EMPTY.merge(merged).count(), merged.count());
+    }
+
+    @Test
+    public void record_isSafeFromManyThreads() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 1; i <= 10_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(40_000, snapshot.count());
+        assertEquals(4L * 10_000 * 10_001 / 2, snapshot.totalNanos());
+        assertEquals(10_000, snapshot.maxNanos());
+    }
+}
@@ -0,0 +1,60 @@
+package com.varun.db.storage;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CompactionPolicyTest {
+
+    private static final File FILE_0 = new File("file_0");
+    private static final File FILE_1 = new File("file_1");
+    private static final File FILE_2 = new File("file_2");
+
+    @Test
+    public void selectFilesToCompact_selectsFilesAboveDeadRatio() {
+        CompactionPolicy compactionPolicy = new CompactionPolicy(0.5, Long.MAX_VALUE, null, null, 0);
+        Map<String, SegmentStats> segmentStats = Map.of(
+                FILE_0.getPath(), new SegmentStats(100, 10),
+                FILE_1.getPath(), new SegmentStats(100, 90),
+                FILE_2.getPath(), new SegmentStats(100, 50));
+
+        List<File> selected = compactionPolicy.selectFilesToCompact(List.of(FILE_0, FILE_1, FILE_2), segmentStats);
+
+        assertEquals(List.of(FILE_0, FILE_2), selected);
+    }
+
+    @Test
+    public void selectFilesToCompact_selectsAllGarbageOnceThresholdIsReached() {
+        CompactionPolicy compactionPolicy = new CompactionPolicy(0.9, 30, null, null, 0);
+        Map<String, SegmentStats> segmentStats = Map.of(
+                FILE_0.getPath(), new SegmentStats(100, 80),
+                FILE_1.getPath(), new SegmentStats(100, 100),
+                FILE_2.getPath(), new SegmentStats(100, 85));
+
+        List<File> selected = compactionPolicy.selectFilesToCompact(List.of(FILE_0, FILE_1, FILE_2), segmentStats);
+
+        assertEquals(List.of(FILE_0, FILE_2), selected);
+    }
+
+    @Test
+    public void selectFilesToCompact_skipsFilesWithoutGarbage() {
+        CompactionPolicy compactionPolicy = new CompactionPolicy(0.0, 0, null, null, 0);
+        Map<String, SegmentStats> segmentStats = Map.of(FILE_0.getPath(), new SegmentStats(100, 100));
+
+        assertTrue(compactionPolicy.selectFilesToCompact(List.of(FILE_0, FILE_1), segmentStats).isEmpty());
+    }
+
+    @Test
+    public void isWithinWindow_handlesWindowSpanningMidnight() {
+        CompactionPolicy compactionPolicy = new CompactionPolicy(0.5, 0, LocalTime.of(22, 0), LocalTime.of(4, 0), 0);
+
+        assertTrue(compactionPolicy.isWithinWindow(LocalTime.of(23, 0)));
+        assertTrue(compactionPolicy.isWithinWindow(LocalTime.of(1, 0)));
+        assertFalse(compactionPolicy.isWithinWindow(LocalTime.of(12, 0)));
+    }
+}
@@ -2,12 +2,16 @@ package com.varun.db.storage;
 
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
+import com.varun.db.util.FileRecordConfig;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class FileRecordBuilderTest {
 
@@ -19,6 +23,9 @@ public class FileRecordBuilderTest {
         int valueSize = 1;
         String key = "A";
         String value = "B";
+        outputStream.write(Ints.toByteArray(/* checksum= */ 0));
+        outputStream.write(FileRecordConfig.RECORD_FORMAT_VERSION);
+        outputStream.write(/* flags= */ 0);
         outputStream.write(Longs.toByteArray(timestamp));
         outputStream.write(Ints.toByteArray(keySize));
         outputStream.write(Ints.toByteArray(valueSize));
@@ -30,16 +37,73 @@ public class FileRecordBuilderTest {
         assertEquals(timestamp, fileRecord.timestamp());
         assertEquals(keySize, fileRecord.keySize());
         assertEquals(valueSize, fileRecord.valueSize());
-        assertEquals(key, fileRecord.key());
-        assertEquals(value, fileRecord.value());
+        assertArrayEquals(key.getBytes(), fileRecord.key());
+        assertArrayEquals(value.getBytes(), fileRecord.value());
         /*
-         * +----------------------------------+---------+-------------------------------+
-         * | Timestamp(8 bytes) | Key Size(4 bytes) | Value Size(4 bytes) | Key | Value |
-         * +----------------------------------+---------+-------------------------------+
-         * |         0 - 7      |        8 - 11     |      12 - 15        |  16 |   17  |
-         * +----------------------------------+---------+------------------------+------+
+         * +-----------------+-----------------+---------------+--------------------+-------------------+---------------------+-----+-------+
+         * | CRC32C(4 bytes) | Version(1 byte) | Flags(1 byte) | Timestamp(8 bytes) | Key Size(4 bytes) | Value Size(4 bytes) | Key | Value |
+         * +-----------------+-----------------+---------------+--------------------+-------------------+---------------------+-----+-------+
+         * |      0 - 3      |        4        |       5       |       6 - 13       |      14 - 17      |       18 - 21       |  22 |   23  |
+         * +-----------------+-----------------+---------------+--------------------+-------------------+---------------------+-----+-------+
          * */
-//        assertEquals(17, fileRecord.getValuePosition());
+//        assertEquals(23, fileRecord.getValuePosition());
+    }
+
+    @Test
+    public void toBytes_roundTripsBinaryKeyValue() {
+        byte[] key = {0, -1, 10, 32};
+        byte[] value = {-128, 0, 127};
+        FileRecord fileRecord = new FileRecord(System.currentTimeMillis(), key, value);
+
+        FileRecord decoded = FileRecord.buildFileRecord(fileRecord.toBytes());
+
+        assertEquals(fileRecord.timestamp(), decoded.timestamp());
+        assertArrayEquals(key, decoded.key());
+        assertArrayEquals(value, decoded.value());
+    }
+
+    @Test
+    public void toBytes_roundTripsExpiry() {
+        long expiresAt = System.currentTimeMillis() + 1000;
+        FileRecord fileRecord = new FileRecord(System.currentTimeMillis(), (byte) 0, "A".getBytes(), "1".getBytes(),
+                expiresAt);
+
+        byte[] bytes = fileRecord.toBytes();
+        FileRecord decoded = FileRecord.buildFileRecord(bytes);
+
+        assertEquals(FileRecordConfig.KEY_OFFSET + 1 + FileRecordConfig.EXPIRY_LENGTH + 1, bytes.length);
+        assertTrue(FileRecord.isValid(bytes, bytes.length));
+        assertEquals(expiresAt, decoded.expiresAt());
+        assertArrayEquals("1".getBytes(), decoded.value());
+        assertEquals(0L, FileRecord.buildFileRecord(new FileRecord(0, "A".getBytes(), "1".getBytes()).toBytes())
+                .expiresAt());
+    }
+
+    @Test
+    public void isValid_detectsCorruption() {
+        byte[] bytes = new FileRecord(System.currentTimeMillis(), "key".getBytes(), "value".getBytes()).toBytes();
+        assertTrue(FileRecord.isValid(bytes, bytes.length));
+
+        bytes[bytes.length - 1] ^= 1;
+
+        assertFalse(FileRecord.isValid(bytes, bytes.length));
+        assertFalse(FileRecord.isValid(bytes, bytes.length - 1));
+    }
+
+    @Test
+    public void hasOtherFormat_onlyForIntactRecordsOfAnotherVersion() {
+        byte[] bytes = new FileRecord(System.currentTimeMillis(), "key".getBytes(), "value".getBytes()).toBytes();
+        assertFalse(FileRecord.hasOtherFormat(bytes, bytes.length));
+
+        bytes[FileRecordConfig.VERSION_OFFSET] = FileRecordConfig.RECORD_FORMAT_VERSION + 1;
+        assertFalse(FileRecord.hasOtherFormat(bytes, bytes.length));
+        System.arraycopy(Ints.toByteArray(FileRecord.checksum(bytes, bytes.length)), 0, bytes,
+                FileRecordConfig.CHECKSUM_OFFSET, FileRecordConfig.CHECKSUM_LENGTH);
+        assertTrue(FileRecord.hasOtherFormat(bytes, bytes.length));
+
+        byte[] zeros = new byte[bytes.length];
+        assertFalse(FileRecord.hasOtherFormat(zeros, zeros.length));
+        assertFalse(FileRecord.hasOtherFormat(zeros, 0));
     }
 
     @Test
@@ -50,6 +114,9 @@ public class FileRecordBuilderTest {
         int valueSize = 4;
         String key = "ABC";
         String value = "PQRS";
+        outputStream.write(Ints.toByteArray(/* checksum= */ 0));
+        outputStream.write(FileRecordConfig.RECORD_FORMAT_VERSION);
+        outputStream.write(/* flags= */ 0);
         outputStream.write(Longs.toByteArray(timestamp));
         outputStream.write(Ints.toByteArray(keySize));
         outputStream.write(Ints.toByteArray(valueSize));
@@ -61,15 +128,15 @@ public class FileRecordBuilderTest {
         assertEquals(timestamp, fileRecord.timestamp());
         assertEquals(keySize, fileRecord.keySize());
         assertEquals(valueSize, fileRecord.valueSize());
-        assertEquals(key, fileRecord.key());
-        assertEquals(value, fileRecord.value());
+        assertArrayEquals(key.getBytes(), fileRecord.key());
+        assertArrayEquals(value.getBytes(), fileRecord.value());
         /*
-         * +----------------------------------+---------+-----------------------------------------+
-         * | Timestamp(8 bytes) | Key Size(4 bytes) | Value Size(4 bytes) |     Key  |     Value  |
-         * +----------------------------------+---------+-----------------------------------------+
-         * |         0 - 7      |        8 - 11     |      12 - 15        |  16 - 18 |   19 - 22  |
-         * +----------------------------------+---------+------------------------+----------------+
+         * +-----------------+-----------------+---------------+--------------------+-------------------+---------------------+---------+---------+
+         * | CRC32C(4 bytes) | Version(1 byte) | Flags(1 byte) | Timestamp(8 bytes) | Key Size(4 bytes) | Value Size(4 bytes) |   Key   |  Value  |
+         * +-----------------+-----------------+---------------+--------------------+-------------------+---------------------+---------+---------+
+         * |      0 - 3      |        4        |       5       |       6 - 13       |      14 - 17      |       18 - 21       | 22 - 24 | 25 - 28 |
+         * +-----------------+-----------------+---------------+--------------------+-------------------+---------------------+---------+---------+
          * */
-//        assertEquals(19, fileRecord.getValuePosition());
+//        assertEquals(25, fileRecord.getValuePosition());
     }
 }
\ No newline at end of file
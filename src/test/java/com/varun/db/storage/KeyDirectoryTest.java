@@ -0,0 +1,111 @@
+package com.varun.db.storage;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class KeyDirectoryTest {
+
+    @Test
+    public void putAndGet_success() {
+        KeyDirectory keyDirectory = new KeyDirectory(4);
+        ValueMetadata valueMetadata = new ValueMetadata("file_1", 3, 20, 1L);
+
+        assertNull(keyDirectory.put("A", valueMetadata));
+
+        assertEquals(valueMetadata, keyDirectory.get("A"));
+        assertTrue(keyDirectory.containsKey("A".getBytes(StandardCharsets.UTF_8)));
+        assertNull(keyDirectory.get("B"));
+        assertEquals(1, keyDirectory.size());
+    }
+
+    @Test
+    public void put_overwriteReturnsPreviousValue() {
+        KeyDirectory keyDirectory = new KeyDirectory(4);
+        ValueMetadata first = new ValueMetadata("file_1", 3, 20, 1L);
+        ValueMetadata second = new ValueMetadata("file_2", 5, 40, 2L);
+        keyDirectory.put("A", first);
+
+        assertEquals(first, keyDirectory.put("A", second));
+        assertEquals(second, keyDirectory.get("A"));
+        assertNull(keyDirectory.putIfAbsent(bytes("B"), first));
+        assertEquals(first, keyDirectory.putIfAbsent(bytes("B"), second));
+        assertEquals(2, keyDirectory.size());
+    }
+
+    @Test
+    public void replace_onlyWhenCurrentValueMatches() {
+        KeyDirectory keyDirectory = new KeyDirectory(4);
+        ValueMetadata first = new ValueMetadata("file_1", 3, 20, 1L);
+        ValueMetadata second = new ValueMetadata("file_2", 3, 20, 1L);
+        keyDirectory.put("A", first);
+
+        assertFalse(keyDirectory.replace(bytes("A"), second, first));
+        assertTrue(keyDirectory.replace(bytes("A"), first, second));
+        assertEquals(second, keyDirectory.get("A"));
+        assertFalse(keyDirectory.replace(bytes("B"), first, second));
+        assertNull(keyDirectory.get("B"));
+    }
+
+    @Test
+    public void operations_matchHashMapUnderRandomWorkload() {
+        KeyDirectory keyDirectory = new KeyDirectory(2);
+        Map<String, ValueMetadata> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            String key = "key-" + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), keyDirectory.remove(key.getBytes(StandardCharsets.UTF_8)));
+            } else {
+                ValueMetadata valueMetadata = new ValueMetadata("file_" + random.nextInt(10), random.nextInt(100),
+                        random.nextInt(8000), i);
+                assertEquals(expected.put(key, valueMetadata), keyDirectory.put(key, valueMetadata));
+            }
+        }
+
+        assertEquals(expected.size(), keyDirectory.size());
+        Map<String, ValueMetadata> actual = new HashMap<>();
+        keyDirectory.forEach((key, valueMetadata) -> actual.put(new String(key, StandardCharsets.UTF_8), valueMetadata));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void get_supportsMultiByteKeys() {
+        KeyDirectory keyDirectory = new KeyDirectory(1);
+        ValueMetadata valueMetadata = new ValueMetadata("file_1", 3, 20, 1L);
+        keyDirectory.put("ключ", valueMetadata);
+
+        assertEquals(valueMetadata, keyDirectory.get("ключ"));
+        keyDirectory.forEach((key, metadata) -> assertEquals("ключ", new String(key, StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void put_spreadsKeysOfShardsLargerThan65536Slots() {
+        KeyDirectory keyDirectory = new KeyDirectory(2);
+        int keyCount = 2 * 150_000;
+        for (int i = 0; i < keyCount; i++) {
+            keyDirectory.put("key-" + i, new ValueMetadata("file_1", 1, i, i));
+        }
+
+        assertEquals(keyCount, keyDirectory.size());
+        for (int i = 0; i < keyCount; i++) {
+            assertEquals(i, keyDirectory.get("key-" + i).valuePosition());
+        }
+        // Home slots crowded into one part of the shard would leave entries thousands of slots away from them
+        assertTrue(keyDirectory.longestProbeDistance() < 1_000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsConcurrencyLevelWhichIsNotPowerOfTwo() {
+        new KeyDirectory(3);
+    }
+
+    private static byte[] bytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+}
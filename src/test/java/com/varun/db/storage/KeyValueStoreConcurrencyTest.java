@@ -0,0 +1,123 @@
+package com.varun.db.storage;
+
+import com.varun.db.exception.KeyNotFoundException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KeyValueStoreConcurrencyTest {
+
+    private static final String TEST_DIR = "test-dir";
+    private static final int KEYS_PER_WRITER = 50;
+    private static final int VERSIONS_PER_KEY = 20;
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @After
+    public void tearDown() {
+        Arrays.stream(Objects.requireNonNull(new File(TEST_DIR).listFiles()))
+                .forEach(File::delete);
+        new File(TEST_DIR).delete();
+    }
+
+    @Test
+    public void keyValueStore_concurrentReadWriteAndCompactionSuccess() throws Exception {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        int writers = 4;
+        int readers = 4;
+        for (int writer = 0; writer < writers; writer++) {
+            for (int i = 0; i < KEYS_PER_WRITER; i++) {
+                keyValueStore.set(key(writer, i), "0");
+            }
+        }
+
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writersDone = new AtomicBoolean(false);
+        List<Thread> threads = new ArrayList<>();
+        CountDownLatch writersLatch = new CountDownLatch(writers);
+        // Every key is owned by exactly one writer which writes increasing versions
+        for (int writer = 0; writer < writers; writer++) {
+            int writerId = writer;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int version = 1; version <= VERSIONS_PER_KEY; version++) {
+                        for (int i = 0; i < KEYS_PER_WRITER; i++) {
+                            keyValueStore.set(key(writerId, i), String.valueOf(version));
+                        }
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                } finally {
+                    writersLatch.countDown();
+                }
+            }));
+        }
+        // Readers must never observe a version going backwards for a key
+        for (int reader = 0; reader < readers; reader++) {
+            threads.add(new Thread(() -> {
+                int[][] lastSeen = new int[writers][KEYS_PER_WRITER];
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (!writersDone.get()) {
+                        int writerId = random.nextInt(writers);
+                        int i = random.nextInt(KEYS_PER_WRITER);
+                        int version = Integer.parseInt(keyValueStore.get(key(writerId, i)));
+                        assertTrue(version >= lastSeen[writerId][i]);
+                        lastSeen[writerId][i] = version;
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            try {
+                while (!writersDone.get()) {
+                    keyValueStore.performCompaction();
+                }
+            } catch (Throwable t) {
+                failures.add(t);
+            }
+        }));
+
+        threads.forEach(Thread::start);
+        writersLatch.await();
+        writersDone.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertAllKeysAtVersion(keyValueStore, writers, VERSIONS_PER_KEY);
+        keyValueStore.performCompaction();
+        assertAllKeysAtVersion(keyValueStore, writers, VERSIONS_PER_KEY);
+        // Rebuild from disk should observe exactly the same state
+        assertAllKeysAtVersion(new KeyValueStore(TEST_DIR), writers, VERSIONS_PER_KEY);
+    }
+
+    private static void assertAllKeysAtVersion(KeyValueStore keyValueStore, int writers, int version)
+            throws IOException, KeyNotFoundException {
+        for (int writer = 0; writer < writers; writer++) {
+            for (int i = 0; i < KEYS_PER_WRITER; i++) {
+                assertEquals(String.valueOf(version), keyValueStore.get(key(writer, i)));
+            }
+        }
+    }
+
+    private static String key(int writer, int i) {
+        return "w" + writer + "k" + i;
+    }
+}
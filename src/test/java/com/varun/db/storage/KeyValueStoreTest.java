@@ -1,18 +1,42 @@
 package com.varun.db.storage;
 
+import com.google.common.hash.BloomFilter;
+import com.varun.db.cache.SegmentedLruCache;
+import com.varun.db.compression.ValueCodecs;
+import com.varun.db.exception.CorruptRecordException;
 import com.varun.db.exception.KeyNotFoundException;
+import com.varun.db.exception.UnsupportedFormatException;
+import com.varun.db.metrics.StoreStats;
+import com.varun.db.util.DbConfig;
+import com.varun.db.util.FileRecordConfig;
+import com.varun.db.util.FsyncMode;
 import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 public class KeyValueStoreTest {
     private static final String TEST_DIR = "test-dir";
@@ -86,8 +110,7 @@ public class KeyValueStoreTest {
         // As the key-value store is instantiated twice, 2 DB files should have been created. This is because a file is
         // considered immutable once the DB connection is closed and a new file is created when the connection is
         // re-established
-        int numberOfFiles = Objects.requireNonNull(new File(TEST_DIR).listFiles()).length;
-        assertEquals(2, numberOfFiles);
+        assertEquals(2, numberOfDataFiles());
     }
 
     @Test
@@ -105,12 +128,774 @@ public class KeyValueStoreTest {
 
         keyValueStore.performCompaction();
 
-        assertEquals(2, Objects.requireNonNull(new File(TEST_DIR).listFiles()).length);
+        assertEquals(2, numberOfDataFiles());
 
         String retrievedValue = keyValueStore.get("A");
         assertEquals("3", retrievedValue);
     }
 
+    @Test
+    public void keyValueStore_rebuildFromHintFileSuccess() throws IOException, KeyNotFoundException, InterruptedException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "1");
+        keyValueStore.set("B", "1");
+        sleep();
+        keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "2");
+        sleep();
+        keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.performCompaction();
+
+        File[] hintFiles = new File(TEST_DIR).listFiles((dir, name) -> name.endsWith(HintFile.HINT_SUFFIX));
+        assertEquals(1, Objects.requireNonNull(hintFiles).length);
+
+        // Rebuild picks up the keys of the compacted file from its hint file
+        keyValueStore = new KeyValueStore(TEST_DIR);
+        assertEquals("2", keyValueStore.get("A"));
+        assertEquals("1", keyValueStore.get("B"));
+    }
+
+    @Test
+    public void keyValueStore_rebuildIgnoresStaleHintFile() throws IOException, KeyNotFoundException, InterruptedException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "1");
+        keyValueStore.set("B", "1");
+        sleep();
+        keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "2");
+        sleep();
+        keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.performCompaction();
+
+        File hintFile = Objects.requireNonNull(
+                new File(TEST_DIR).listFiles((dir, name) -> name.endsWith(HintFile.HINT_SUFFIX)))[0];
+        HintFile.write(hintFile, 0L, List.of(new HintFile.Entry("A".getBytes(), 0L, 1, 0, (byte) 0, 0L, false)));
+
+        keyValueStore = new KeyValueStore(TEST_DIR);
+        assertEquals("2", keyValueStore.get("A"));
+    }
+
+    @Test
+    public void keyValueStore_rebuildIgnoresCorruptHintFile() throws IOException, KeyNotFoundException, InterruptedException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "1");
+        keyValueStore.set("B", "1");
+        sleep();
+        keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "2");
+        sleep();
+        keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.performCompaction();
+
+        File hintFile = Objects.requireNonNull(
+                new File(TEST_DIR).listFiles((dir, name) -> name.endsWith(HintFile.HINT_SUFFIX)))[0];
+        byte[] hint = Files.readAllBytes(hintFile.toPath());
+        // Entry count, key size of the first entry and a byte of its timestamp
+        for (int offset : new int[]{8, 20, 12}) {
+            byte[] corruptHint = hint.clone();
+            corruptHint[offset] ^= (byte) 0x80;
+            Files.write(hintFile.toPath(), corruptHint);
+
+            keyValueStore = new KeyValueStore(TEST_DIR);
+            assertEquals("2", keyValueStore.get("A"));
+            assertEquals("1", keyValueStore.get("B"));
+        }
+    }
+
+    @Test
+    public void keyValueStore_binaryKeysAndValuesSurviveRebuild() throws IOException, KeyNotFoundException {
+        byte[] key = {0, -1, 32, 10};
+        byte[] value = {-128, 0, 127, -2, 1};
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set(key, value);
+        assertArrayEquals(value, keyValueStore.get(key));
+
+        KeyValueStore rebuiltKeyValueStore = new KeyValueStore(TEST_DIR);
+
+        assertArrayEquals(value, rebuiltKeyValueStore.get(key));
+        rebuiltKeyValueStore.delete(key);
+        assertThrows(KeyNotFoundException.class, () -> rebuiltKeyValueStore.get(key));
+    }
+
+    @Test
+    public void keyValueStore_rebuildTruncatesTornWrite() throws IOException, KeyNotFoundException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "1");
+        keyValueStore.set("B", "2");
+        keyValueStore.close();
+        File dataFile = dataFiles()[0];
+        long intactLength = dataFile.length();
+        // A record whose size prefix promises more bytes than made it to disk, followed by a half written record
+        try (FileOutputStream outputStream = new FileOutputStream(dataFile, true)) {
+            byte[] record = new FileRecord(System.currentTimeMillis(), "C".getBytes(), "3".getBytes()).toBytes();
+            outputStream.write(ByteBuffer.allocate(4).putInt(record.length).array());
+            outputStream.write(record, 0, record.length / 2);
+        }
+
+        keyValueStore = new KeyValueStore(TEST_DIR);
+
+        assertEquals(intactLength, dataFile.length());
+        assertEquals("1", keyValueStore.get("A"));
+        assertEquals("2", keyValueStore.get("B"));
+        thrown.expect(KeyNotFoundException.class);
+        keyValueStore.get("C");
+    }
+
+    @Test
+    public void keyValueStore_rebuildTruncatesZeroFilledActiveFile() throws IOException, KeyNotFoundException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "1");
+        keyValueStore.close();
+        List<File> sealedFiles = Arrays.asList(dataFiles());
+        keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.close();
+        File activeFile = Arrays.stream(dataFiles()).filter(file -> !sealedFiles.contains(file)).findFirst()
+                .orElseThrow();
+        // A crash can leave zeros behind in place of the first record, which is not a record of another version
+        Files.write(activeFile.toPath(), new byte[64]);
+
+        keyValueStore = new KeyValueStore(TEST_DIR);
+
+        assertEquals(0, activeFile.length());
+        assertEquals("1", keyValueStore.get("A"));
+    }
+
+    @Test
+    public void keyValueStore_refusesDataFilesOfOldFormat() throws IOException {
+        // Records written before checksums and versions were added: size, timestamp, key size, value size, key, value
+        File dataFile = new File(TEST_DIR, FileRecordConfig.FILE_PREFIX + "1700000000000");
+        new File(TEST_DIR).mkdir();
+        try (FileOutputStream outputStream = new FileOutputStream(dataFile)) {
+            for (String key : List.of("A", "B")) {
+                outputStream.write(ByteBuffer.allocate(22).putInt(18).putLong(1700000000000L).putInt(1).putInt(1)
+                        .put(key.getBytes()).put((byte) '1').array());
+            }
+        }
+
+        UnsupportedFormatException e = assertThrows(UnsupportedFormatException.class,
+                () -> new KeyValueStore(TEST_DIR));
+
+        assertTrue(e.getMessage().contains(dataFile.getPath()));
+        // The file is left as it is, rather than cut off like a torn write
+        assertEquals(44, dataFile.length());
+    }
+
+    @Test
+    public void keyValueStore_verifiedReadDetectsCorruptValue() throws IOException, KeyNotFoundException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "value");
+        keyValueStore.close();
+        File dataFile = dataFiles()[0];
+        keyValueStore = new KeyValueStore(TEST_DIR, FsyncMode.OS, 0, new SegmentedLruCache(1024, 1),
+                new CompactionPolicy(0.5, Long.MAX_VALUE, null, null, 0), true, ValueCodecs.NONE, 0);
+        // Flip a bit of the value once the store has loaded the key directory
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(dataFile, "rw")) {
+            randomAccessFile.seek(dataFile.length() - 1);
+            int lastByte = randomAccessFile.read();
+            randomAccessFile.seek(dataFile.length() - 1);
+            randomAccessFile.write(lastByte ^ 1);
+        }
+
+        thrown.expect(CorruptRecordException.class);
+        keyValueStore.get("A");
+    }
+
+    @Test
+    public void keyValueStore_compressesLargeValues() throws IOException, KeyNotFoundException {
+        String largeValue = "{\"id\":1,\"payload\":\"abcdef\"}".repeat(100);
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR, FsyncMode.OS, 0, new SegmentedLruCache(0, 1),
+                new CompactionPolicy(0.0, 0, null, null, 0), false, ValueCodecs.DEFLATE, 64);
+        keyValueStore.set("small", "1");
+        for (int i = 0; i < 10; i++) {
+            keyValueStore.set("large", largeValue + i);
+        }
+
+        assertEquals("1", keyValueStore.get("small"));
+        assertEquals(largeValue + 9, keyValueStore.get("large"));
+        long storedBytes = keyValueStore.getSegmentStats().values().stream().mapToLong(SegmentStats::totalBytes).sum();
+        assertTrue(storedBytes < 10L * largeValue.length() / 3);
+
+        keyValueStore.close();
+        // Recovery and compaction keep track of the codec of every value
+        keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.performCompaction();
+        assertEquals(largeValue + 9, keyValueStore.get("large"));
+        keyValueStore = new KeyValueStore(TEST_DIR);
+        assertEquals(largeValue + 9, keyValueStore.get("large"));
+        assertEquals("1", keyValueStore.get("small"));
+    }
+
+    @Test
+    public void keyValueStore_writeBatchSuccess() throws IOException, KeyNotFoundException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "1");
+
+        keyValueStore.write(new WriteBatch().put("B", "2").put("C", "3").delete("A").put("B", "4").delete("D"));
+
+        assertEquals("4", keyValueStore.get("B"));
+        assertEquals("3", keyValueStore.get("C"));
+        assertThrows(KeyNotFoundException.class, () -> keyValueStore.get("A"));
+        KeyValueStore rebuiltKeyValueStore = new KeyValueStore(TEST_DIR);
+        assertEquals("4", rebuiltKeyValueStore.get("B"));
+        assertEquals("3", rebuiltKeyValueStore.get("C"));
+    }
+
+    @Test
+    public void keyValueStore_rebuildDropsUnfinishedBatch() throws IOException, KeyNotFoundException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.write(new WriteBatch().put("A", "1").put("B", "2"));
+        keyValueStore.close();
+        File dataFile = dataFiles()[0];
+        long intactLength = dataFile.length();
+        // Intact records of a batch whose last record never made it to disk
+        try (FileOutputStream outputStream = new FileOutputStream(dataFile, true)) {
+            for (String key : List.of("A", "C")) {
+                byte[] record = new FileRecord(System.currentTimeMillis(), (byte) FileRecordConfig.FLAGS_BATCH,
+                        key.getBytes(), "3".getBytes()).toBytes();
+                outputStream.write(ByteBuffer.allocate(4).putInt(record.length).array());
+                outputStream.write(record);
+            }
+        }
+
+        keyValueStore = new KeyValueStore(TEST_DIR);
+
+        assertEquals(intactLength, dataFile.length());
+        assertEquals("1", keyValueStore.get("A"));
+        assertEquals("2", keyValueStore.get("B"));
+        thrown.expect(KeyNotFoundException.class);
+        keyValueStore.get("C");
+    }
+
+    @Test
+    public void keyValueStore_multiGetSuccess() throws IOException, KeyNotFoundException {
+        // Values span several files and checksums are verified, so reads are coalesced around whole records
+        DbConfig config = DbConfig.builder().dbDirectory(TEST_DIR).segmentSizeBytes(8000).verifyChecksums(true)
+                .valueCodec(ValueCodecs.NONE).build();
+        KeyValueStore keyValueStore = new KeyValueStore(config, new SegmentedLruCache(0, 1));
+        String padding = "x".repeat(1000);
+        for (int i = 0; i < 30; i++) {
+            keyValueStore.set("key" + i, i + padding);
+        }
+        keyValueStore.set("key3", "3");
+        keyValueStore.delete("key4");
+
+        List<byte[]> values = keyValueStore.multiGet(List.of("key29".getBytes(), "missing".getBytes(),
+                "key0".getBytes(), "key3".getBytes(), "key4".getBytes(), "key1".getBytes(), "key0".getBytes()));
+
+        assertTrue(numberOfDataFiles() > 1);
+        assertEquals(7, values.size());
+        assertArrayEquals(("29" + padding).getBytes(), values.get(0));
+        assertNull(values.get(1));
+        assertArrayEquals(("0" + padding).getBytes(), values.get(2));
+        assertArrayEquals("3".getBytes(), values.get(3));
+        assertNull(values.get(4));
+        assertArrayEquals(("1" + padding).getBytes(), values.get(5));
+        assertArrayEquals(("0" + padding).getBytes(), values.get(6));
+    }
+
+    @Test
+    public void keyValueStore_scanSuccess() throws IOException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        // More keys than a scan fetches at a time
+        for (int i = 0; i < 600; i++) {
+            keyValueStore.set(String.format("user:%03d", i), "v" + i);
+        }
+        keyValueStore.set("account:1", "a");
+        keyValueStore.set("user:100", "overwritten");
+        keyValueStore.write(new WriteBatch().delete("user:101").delete("user:599"));
+
+        assertEquals(List.of("user:099", "user:100", "user:102"),
+                keys(keyValueStore.scan("user:099".getBytes(), "user:103".getBytes(), 10)));
+        assertEquals(598, keys(keyValueStore.prefixScan("user:".getBytes(), Integer.MAX_VALUE)).size());
+        assertEquals(List.of("account:1", "user:000"), keys(keyValueStore.scan(null, null, 2)));
+        assertEquals(List.of(), keys(keyValueStore.scan("user:200".getBytes(), "user:100".getBytes(), 10)));
+        Map.Entry<byte[], byte[]> entry = keyValueStore.prefixScan("user:100".getBytes(), 10).next();
+        assertArrayEquals("overwritten".getBytes(), entry.getValue());
+
+        KeyValueStore rebuiltKeyValueStore = new KeyValueStore(TEST_DIR);
+        assertEquals(List.of("user:597", "user:598"), keys(rebuiltKeyValueStore.scan("user:597".getBytes(), null, 10)));
+    }
+
+    @Test
+    public void keyValueStore_scanWithoutOrderedIndex() throws IOException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR, FsyncMode.OS, 0, new SegmentedLruCache(0, 1),
+                new CompactionPolicy(0.5, Long.MAX_VALUE, null, null, 0), false, ValueCodecs.NONE, 512, false);
+
+        assertThrows(UnsupportedOperationException.class, () -> keyValueStore.prefixScan("A".getBytes(), 10));
+    }
+
+    @Test
+    public void keyValueStore_expiredKeysAreNotFound() throws IOException, KeyNotFoundException, InterruptedException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "1", 50);
+        keyValueStore.set("B", "2", 60_000);
+        keyValueStore.set("C", "3");
+        keyValueStore.set("D", "4", 50);
+        assertEquals("1", keyValueStore.get("A"));
+
+        sleep();
+
+        assertThrows(KeyNotFoundException.class, () -> keyValueStore.get("A"));
+        assertThrows(KeyNotFoundException.class, () -> keyValueStore.delete("A"));
+        assertNull(keyValueStore.multiGet(List.of("A".getBytes())).get(0));
+        // A was removed when it was read, only D is left for the sweep
+        assertEquals(1, keyValueStore.expireKeys());
+        assertEquals(List.of("B", "C"), keys(keyValueStore.scan(null, null, 10)));
+        assertEquals(0, keyValueStore.expireKeys());
+        assertEquals("2", keyValueStore.get("B"));
+        keyValueStore.set("A", "4");
+        assertEquals("4", keyValueStore.get("A"));
+    }
+
+    @Test
+    public void keyValueStore_readsRemoveExpiredKeysWithoutSweep()
+            throws IOException, KeyNotFoundException, InterruptedException {
+        DbConfig config = DbConfig.builder().dbDirectory(TEST_DIR).expirationSweepIntervalMillis(0).build();
+        KeyValueStore keyValueStore = new KeyValueStore(config);
+        keyValueStore.set("A", "1", 50);
+        keyValueStore.set("B", "2", 50);
+        keyValueStore.set("C", "3");
+
+        sleep();
+        assertThrows(KeyNotFoundException.class, () -> keyValueStore.get("A"));
+        assertNull(keyValueStore.multiGet(List.of("B".getBytes())).get(0));
+
+        StoreStats stats = keyValueStore.getStats();
+        assertEquals(1, stats.keyCount());
+        assertEquals(2, stats.expiredKeyCount());
+        assertEquals(List.of("C"), keys(keyValueStore.prefixScan(new byte[0], 10)));
+    }
+
+    @Test
+    public void keyValueStore_largeTtlDoesNotOverflow() throws IOException, KeyNotFoundException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        // What SET A 1 EX 9223372036854775807 turns into
+        keyValueStore.set("A", "1", TimeUnit.SECONDS.toMillis(Long.MAX_VALUE));
+        keyValueStore.set("B", "2", Long.MAX_VALUE - 1);
+
+        assertEquals(0, keyValueStore.expireKeys());
+        assertEquals("1", keyValueStore.get("A"));
+        assertEquals("2", keyValueStore.get("B"));
+        keyValueStore.close();
+        assertEquals("1", new KeyValueStore(TEST_DIR).get("A"));
+    }
+
+    @Test
+    public void keyValueStore_rebuildHidesOlderValuesOfExpiredKeys()
+            throws IOException, KeyNotFoundException, InterruptedException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "1");
+        keyValueStore.set("A", "2", 50);
+        keyValueStore.set("B", "3", 60_000);
+        keyValueStore.close();
+        sleep();
+
+        KeyValueStore rebuiltKeyValueStore = new KeyValueStore(TEST_DIR);
+
+        thrown.expect(KeyNotFoundException.class);
+        assertEquals("3", rebuiltKeyValueStore.get("B"));
+        rebuiltKeyValueStore.get("A");
+    }
+
+    @Test
+    public void keyValueStore_compactionDropsExpiredRecords()
+            throws IOException, KeyNotFoundException, InterruptedException {
+        CompactionPolicy compactionPolicy = new CompactionPolicy(0.0, 0, null, null, 0);
+        KeyValueStore keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("A", "1");
+        sleep();
+        keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("A", "2", 50);
+        sleep();
+        keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("B", "3");
+        sleep();
+        keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+
+        keyValueStore.performCompaction();
+        // The expired record of A is only garbage once the file holding the older record is compacted
+        keyValueStore.performCompaction();
+
+        // Both records of A are gone along with the files holding nothing else
+        assertEquals(2, numberOfDataFiles());
+        KeyValueStore rebuiltKeyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        assertEquals("3", rebuiltKeyValueStore.get("B"));
+        thrown.expect(KeyNotFoundException.class);
+        rebuiltKeyValueStore.get("A");
+    }
+
+    @Test
+    public void keyValueStore_compactionKeepsExpiredRecordsHidingOlderFiles()
+            throws IOException, KeyNotFoundException, InterruptedException {
+        // Only files which are mostly garbage are compacted, which leaves out the least recent file
+        CompactionPolicy compactionPolicy = new CompactionPolicy(0.9, Long.MAX_VALUE, null, null, 0);
+        KeyValueStore keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("A", "1");
+        keyValueStore.set("C", "live");
+        sleep();
+        keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("A", "2", 50);
+        sleep();
+        keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("B", "3");
+
+        keyValueStore.performCompaction();
+
+        KeyValueStore rebuiltKeyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        assertEquals("live", rebuiltKeyValueStore.get("C"));
+        thrown.expect(KeyNotFoundException.class);
+        rebuiltKeyValueStore.get("A");
+    }
+
+    @Test
+    public void keyValueStore_compactionDropsExpiredRecordsAbsentFromOlderFiles()
+            throws IOException, KeyNotFoundException, InterruptedException {
+        CompactionPolicy compactionPolicy = new CompactionPolicy(0.9, Long.MAX_VALUE, null, null, 0);
+        KeyValueStore keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("C", "live");
+        sleep();
+        keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("A", "2", 50);
+        sleep();
+        keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("B", "3");
+
+        keyValueStore.performCompaction();
+
+        // The filter of the least recent file rules out A, so the file holding only its expired record is gone
+        assertEquals(2, numberOfDataFiles());
+        KeyValueStore rebuiltKeyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        assertEquals("live", rebuiltKeyValueStore.get("C"));
+        thrown.expect(KeyNotFoundException.class);
+        rebuiltKeyValueStore.get("A");
+    }
+
+    @Test
+    public void keyValueStore_deletedKeysStayDeletedAfterRebuild() throws IOException, KeyNotFoundException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "1");
+        keyValueStore.set("B", "tombstone");
+        keyValueStore.delete("A");
+        keyValueStore.write(new WriteBatch().put("C", "3").delete("B").put("B", "4").delete("C"));
+
+        KeyValueStore rebuiltKeyValueStore = new KeyValueStore(TEST_DIR);
+
+        assertEquals("4", rebuiltKeyValueStore.get("B"));
+        assertThrows(KeyNotFoundException.class, () -> rebuiltKeyValueStore.get("C"));
+        thrown.expect(KeyNotFoundException.class);
+        rebuiltKeyValueStore.get("A");
+    }
+
+    @Test
+    public void keyValueStore_compactionKeepsTombstonesHidingOlderFiles()
+            throws IOException, KeyNotFoundException, InterruptedException {
+        // The least recent file is left out of the compaction as half of it is live
+        CompactionPolicy compactionPolicy = new CompactionPolicy(0.9, Long.MAX_VALUE, null, null, 0);
+        KeyValueStore keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("A", "1");
+        keyValueStore.set("C", "live");
+        sleep();
+        keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.delete("A");
+        sleep();
+        keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("B", "3");
+
+        keyValueStore.performCompaction();
+
+        assertEquals(3, numberOfDataFiles());
+        KeyValueStore rebuiltKeyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        assertEquals("live", rebuiltKeyValueStore.get("C"));
+        thrown.expect(KeyNotFoundException.class);
+        rebuiltKeyValueStore.get("A");
+    }
+
+    @Test
+    public void keyValueStore_compactionDoesNotRewriteKeptTombstones()
+            throws IOException, KeyNotFoundException, InterruptedException {
+        CompactionPolicy compactionPolicy = new CompactionPolicy(0.9, Long.MAX_VALUE, null, null, 0);
+        KeyValueStore keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("A", "1");
+        keyValueStore.set("C", "live");
+        sleep();
+        keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.delete("A");
+        sleep();
+        keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("B", "3");
+
+        keyValueStore.performCompaction();
+        keyValueStore.performCompaction();
+
+        // The tombstone of A hides the value in the least recent file, so its file has nothing to reclaim, not even
+        // right after the store is opened
+        assertEquals(0, keyValueStore.getStats().latencies().get(StoreStats.COMPACTION).count());
+    }
+
+    @Test
+    public void keyValueStore_compactionDropsKeptTombstonesOnceOlderFileIsCompacted()
+            throws IOException, KeyNotFoundException, InterruptedException {
+        CompactionPolicy compactionPolicy = new CompactionPolicy(0.5, Long.MAX_VALUE, null, null, 0);
+        KeyValueStore keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("A", "1");
+        keyValueStore.set("C", "live");
+        sleep();
+        keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.delete("A");
+        sleep();
+        keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("B", "3");
+        keyValueStore.performCompaction();
+        // The tombstone of A hides the value in the least recent file, which is not dead enough to be compacted
+        assertEquals(3, numberOfDataFiles());
+
+        keyValueStore.set("C", "overwritten");
+        keyValueStore.performCompaction();
+        keyValueStore.performCompaction();
+
+        // Once the value of A is compacted away, nothing needs the tombstone anymore
+        assertEquals(1, numberOfDataFiles());
+        KeyValueStore rebuiltKeyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        assertEquals("overwritten", rebuiltKeyValueStore.get("C"));
+        thrown.expect(KeyNotFoundException.class);
+        rebuiltKeyValueStore.get("A");
+    }
+
+    @Test
+    public void keyValueStore_compactionDropsTombstonesAbsentFromOlderFiles()
+            throws IOException, KeyNotFoundException, InterruptedException {
+        CompactionPolicy compactionPolicy = new CompactionPolicy(0.9, Long.MAX_VALUE, null, null, 0);
+        KeyValueStore keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("C", "live");
+        sleep();
+        keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("A", "1");
+        keyValueStore.delete("A");
+        sleep();
+        keyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        keyValueStore.set("B", "3");
+
+        keyValueStore.performCompaction();
+
+        // Neither the value of A nor its tombstone is needed anymore, so nothing is left of the file holding them
+        assertEquals(2, numberOfDataFiles());
+        KeyValueStore rebuiltKeyValueStore = storeWithCompactionPolicy(compactionPolicy);
+        assertEquals("live", rebuiltKeyValueStore.get("C"));
+        thrown.expect(KeyNotFoundException.class);
+        rebuiltKeyValueStore.get("A");
+    }
+
+    @Test
+    public void keyValueStore_compactionKeepsTombstonesOlderThanFilesLeftOut() throws IOException, KeyNotFoundException {
+        // Every file holds two records, and only the second and fourth file are dead enough to be compacted
+        DbConfig config = DbConfig.builder().dbDirectory(TEST_DIR).segmentSizeBytes(50)
+                .compactionPolicy(new CompactionPolicy(0.9, Long.MAX_VALUE, null, null, 0))
+                .expirationSweepIntervalMillis(0).build();
+        KeyValueStore keyValueStore = new KeyValueStore(config);
+        keyValueStore.set("K", "o");
+        keyValueStore.set("X", "1");
+        keyValueStore.delete("K");
+        keyValueStore.set("Y", "1");
+        keyValueStore.set("K", "n");
+        keyValueStore.set("Z", "1");
+        keyValueStore.set("W", "1");
+        keyValueStore.delete("W");
+        keyValueStore.set("Y", "2");
+
+        keyValueStore.performCompaction();
+        keyValueStore.close();
+
+        // The tombstone of K must not end up more recent than the file holding its later value
+        keyValueStore = new KeyValueStore(config);
+        assertEquals("n", keyValueStore.get("K"));
+        assertEquals("2", keyValueStore.get("Y"));
+    }
+
+    @Test
+    public void keyValueStore_readsMoreDataFilesThanItKeepsOpen() throws IOException, KeyNotFoundException {
+        DbConfig config = DbConfig.builder().dbDirectory(TEST_DIR).segmentSizeBytes(100).maxOpenDataFiles(4)
+                .expirationSweepIntervalMillis(0).build();
+        KeyValueStore keyValueStore = new KeyValueStore(config);
+        for (int i = 0; i < 50; i++) {
+            keyValueStore.set("key" + i, "value" + i);
+        }
+        assertTrue(numberOfDataFiles() > 4);
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertEquals("value" + i, keyValueStore.get("key" + i));
+            }
+        }
+        keyValueStore.close();
+    }
+
+    @Test
+    public void keyValueStore_persistsBloomFilterOfSealedFiles() throws IOException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "1");
+        keyValueStore.close();
+        File dataFile = dataFiles()[0];
+
+        Optional<BloomFilter<byte[]>> bloomFilter = BloomFilterFile.read(BloomFilterFile.bloomFilterFileFor(dataFile),
+                dataFile.length());
+
+        assertTrue(bloomFilter.isPresent());
+        assertTrue(bloomFilter.get().mightContain("A".getBytes(StandardCharsets.UTF_8)));
+        // A filter written for a different version of the data file is not used
+        assertTrue(BloomFilterFile.read(BloomFilterFile.bloomFilterFileFor(dataFile), dataFile.length() + 1)
+                .isEmpty());
+    }
+
+    @Test
+    public void keyValueStore_sizesBloomFilterOfSealedFilesForTheirKeys() throws IOException {
+        DbConfig config = DbConfig.builder().dbDirectory(TEST_DIR).segmentSizeBytes(64 * 1024)
+                .expirationSweepIntervalMillis(0).build();
+        KeyValueStore keyValueStore = new KeyValueStore(config);
+        // Far fewer keys per file than the filter of the active file is sized for
+        for (int i = 0; i < 200; i++) {
+            keyValueStore.set("key" + i, "x".repeat(1000));
+        }
+        keyValueStore.close();
+        File fullSizeFilterFile = new File(TEST_DIR, "full-size");
+        BloomFilterFile.write(fullSizeFilterFile, 0,
+                BloomFilterFile.create(64 * 1024 / FileRecordConfig.BLOOM_FILTER_AVERAGE_RECORD_BYTES));
+
+        assertTrue(numberOfDataFiles() > 1);
+        List<BloomFilter<byte[]>> bloomFilters = new ArrayList<>();
+        for (File dataFile : dataFiles()) {
+            File bloomFilterFile = BloomFilterFile.bloomFilterFileFor(dataFile);
+            assertTrue(bloomFilterFile.length() * 4 < fullSizeFilterFile.length());
+            bloomFilters.add(BloomFilterFile.read(bloomFilterFile, dataFile.length()).orElseThrow());
+        }
+        for (int i = 0; i < 200; i++) {
+            byte[] key = ("key" + i).getBytes(StandardCharsets.UTF_8);
+            assertTrue(bloomFilters.stream().anyMatch(bloomFilter -> bloomFilter.mightContain(key)));
+        }
+    }
+
+    @Test
+    public void keyValueStore_statsCountOperations() throws IOException, KeyNotFoundException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "1");
+        keyValueStore.set("B", "2");
+        keyValueStore.get("A");
+        keyValueStore.get("A");
+        keyValueStore.delete("B");
+        keyValueStore.write(new WriteBatch().put("C", "3").put("D", "4"));
+        keyValueStore.multiGet(List.of("A".getBytes(StandardCharsets.UTF_8), "C".getBytes(StandardCharsets.UTF_8)));
+
+        StoreStats stats = keyValueStore.getStats();
+
+        assertEquals(3, stats.keyCount());
+        assertEquals(1, stats.segmentCount());
+        assertEquals(new File(keyValueStore.getSegmentStats().keySet().iterator().next()).length(),
+                stats.bytesAppended());
+        assertEquals(stats.bytesAppended(), stats.totalBytes());
+        assertTrue(stats.liveBytes() < stats.totalBytes());
+        assertEquals(2, stats.latencies().get(StoreStats.SET).count());
+        assertEquals(2, stats.latencies().get(StoreStats.GET).count());
+        assertEquals(1, stats.latencies().get(StoreStats.DELETE).count());
+        assertEquals(1, stats.latencies().get(StoreStats.WRITE_BATCH).count());
+        assertEquals(1, stats.latencies().get(StoreStats.MULTI_GET).count());
+        assertEquals(0, stats.latencies().get(StoreStats.COMPACTION).count());
+        assertTrue(stats.latencies().get(StoreStats.GET).maxNanos() > 0);
+    }
+
+    @Test
+    public void keyValueStore_statsCountReclaimedBytes() throws IOException, InterruptedException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "1");
+        sleep();
+        keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "2");
+        sleep();
+        keyValueStore = new KeyValueStore(TEST_DIR);
+        long bytesBefore = keyValueStore.getStats().totalBytes();
+
+        keyValueStore.performCompaction();
+
+        StoreStats stats = keyValueStore.getStats();
+        assertEquals(1, stats.latencies().get(StoreStats.COMPACTION).count());
+        assertTrue(stats.reclaimedBytes() > 0);
+        assertEquals(bytesBefore - stats.reclaimedBytes(), stats.totalBytes());
+    }
+
+    @Test
+    public void keyValueStore_honoursConfiguredSegmentSize() throws IOException, KeyNotFoundException {
+        DbConfig config = DbConfig.builder().dbDirectory(TEST_DIR).segmentSizeBytes(1024 * 1024)
+                .expirationSweepIntervalMillis(0).build();
+        KeyValueStore keyValueStore = new KeyValueStore(config);
+        for (int i = 0; i < 1000; i++) {
+            keyValueStore.set("key" + i, "x".repeat(100));
+        }
+
+        // The default segment size would have rolled over a dozen times
+        assertEquals(1, numberOfDataFiles());
+        keyValueStore.close();
+
+        keyValueStore = new KeyValueStore(config);
+        assertEquals("x".repeat(100), keyValueStore.get("key999"));
+    }
+
+    @Test
+    public void keyValueStore_reopenDoesNotPileUpEmptyFiles() throws IOException, KeyNotFoundException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "1");
+        keyValueStore.close();
+        for (int i = 0; i < 3; i++) {
+            new KeyValueStore(TEST_DIR).close();
+        }
+
+        // The file holding A and the active file of the last open
+        assertEquals(2, numberOfDataFiles());
+        assertEquals("1", new KeyValueStore(TEST_DIR).get("A"));
+    }
+
+    @Test
+    public void keyValueStore_rebuildKeepsMostRecentValueAcrossFiles() throws IOException, KeyNotFoundException {
+        DbConfig config = DbConfig.builder().dbDirectory(TEST_DIR).segmentSizeBytes(8000).build();
+        KeyValueStore keyValueStore = new KeyValueStore(config);
+        // Values are large enough for the writes to roll over into many files
+        String padding = "x".repeat(500);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 10; i++) {
+                keyValueStore.set("key" + i, round + padding);
+            }
+        }
+        keyValueStore.delete("key0");
+
+        keyValueStore = new KeyValueStore(config);
+        for (int i = 1; i < 10; i++) {
+            assertEquals(9 + padding, keyValueStore.get("key" + i));
+        }
+        assertTrue(numberOfDataFiles() > 5);
+        thrown.expect(KeyNotFoundException.class);
+        keyValueStore.get("key0");
+    }
+
+    private static KeyValueStore storeWithCompactionPolicy(CompactionPolicy compactionPolicy) throws IOException {
+        return new KeyValueStore(TEST_DIR, FsyncMode.OS, 0, new SegmentedLruCache(0, 1), compactionPolicy, false,
+                ValueCodecs.NONE, 512);
+    }
+
+    private static List<String> keys(Iterator<Map.Entry<byte[], byte[]>> entries) {
+        List<String> keys = new ArrayList<>();
+        entries.forEachRemaining(entry -> keys.add(new String(entry.getKey())));
+        return keys;
+    }
+
+    private static int numberOfDataFiles() {
+        return dataFiles().length;
+    }
+
+    /**
+     * Data files without the manifest and the hint and Bloom filter files next to them
+     */
+    private static File[] dataFiles() {
+        return Objects.requireNonNull(new File(TEST_DIR).listFiles(
+                (dir, name) -> name.startsWith(FileRecordConfig.FILE_PREFIX) && !name.contains(".")));
+    }
+
     private void sleep() throws InterruptedException {
         Thread.sleep(100L);
     }
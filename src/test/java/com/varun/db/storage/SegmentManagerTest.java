@@ -0,0 +1,113 @@
+package com.varun.db.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.Assert.*;
+
+public class SegmentManagerTest {
+
+    private static final String TEST_DIR = "test-dir";
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @Before
+    public void setUp() {
+        new File(TEST_DIR).mkdir();
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @After
+    public void tearDown() {
+        Arrays.stream(Objects.requireNonNull(new File(TEST_DIR).listFiles()))
+                .forEach(File::delete);
+        new File(TEST_DIR).delete();
+    }
+
+    @Test
+    public void newSegment_handsOutIncreasingIds() throws IOException {
+        SegmentManager segmentManager = new SegmentManager(TEST_DIR);
+
+        File first = create(segmentManager.newSegment());
+        File second = create(segmentManager.newSegment());
+
+        assertEquals(new File(TEST_DIR, "file_1"), first);
+        assertEquals(new File(TEST_DIR, "file_2"), second);
+        assertEquals(List.of(first, second), segmentManager.segments());
+        assertEquals(List.of(second, first), segmentManager.segmentsNewestFirst());
+        assertEquals(0, segmentManager.stats(second.getPath()).totalBytes());
+    }
+
+    @Test
+    public void reopen_readsManifest() throws IOException {
+        SegmentManager segmentManager = new SegmentManager(TEST_DIR);
+        File first = create(segmentManager.newSegment());
+        File second = create(segmentManager.newSegment());
+        // Handed out but never created before a crash
+        segmentManager.newSegment();
+
+        SegmentManager reopened = new SegmentManager(TEST_DIR);
+
+        assertEquals(List.of(first, second), reopened.segments());
+        // The ID of the missing file is not handed out again
+        assertEquals(new File(TEST_DIR, "file_4"), reopened.newSegment());
+    }
+
+    @Test
+    public void reopen_deletesEmptyFiles() throws IOException {
+        SegmentManager segmentManager = new SegmentManager(TEST_DIR);
+        File written = create(segmentManager.newSegment());
+        File empty = segmentManager.newSegment();
+        assertTrue(empty.createNewFile());
+        create(BloomFilterFile.bloomFilterFileFor(empty));
+
+        SegmentManager reopened = new SegmentManager(TEST_DIR);
+
+        assertEquals(List.of(written), reopened.segments());
+        assertFalse(empty.exists());
+        assertFalse(BloomFilterFile.bloomFilterFileFor(empty).exists());
+    }
+
+    @Test
+    public void open_listsDirectoryWithoutManifest() throws IOException {
+        File older = create(new File(TEST_DIR, "file_1700000000000"));
+        File newer = create(new File(TEST_DIR, "file_1700000000001"));
+        create(new File(TEST_DIR, "file_1700000000001.hint"));
+
+        SegmentManager segmentManager = new SegmentManager(TEST_DIR);
+
+        assertEquals(List.of(older, newer), segmentManager.segments());
+        assertEquals(new File(TEST_DIR, "file_1700000000002"), segmentManager.newSegment());
+        assertTrue(new File(TEST_DIR, SegmentManager.MANIFEST_FILE).exists());
+    }
+
+    @Test
+    public void replace_dropsCompactedFilesNotTakenOver() throws IOException {
+        SegmentManager segmentManager = new SegmentManager(TEST_DIR);
+        File first = create(segmentManager.newSegment());
+        File second = create(segmentManager.newSegment());
+        File active = create(segmentManager.newSegment());
+
+        // The compaction output takes over the name of the first file
+        segmentManager.replace(List.of(first, second), Map.of(first.getPath(), new SegmentStats(10, 0)));
+
+        assertEquals(List.of(first, active), segmentManager.segments());
+        assertEquals(10, segmentManager.stats(first.getPath()).totalBytes());
+        assertNull(segmentManager.stats(second.getPath()));
+        assertEquals(List.of(first, active), new SegmentManager(TEST_DIR).segments());
+    }
+
+    private static File create(File file) throws IOException {
+        assertTrue(file.createNewFile());
+        Files.writeString(file.toPath(), "record");
+        return file;
+    }
+}
@@ -0,0 +1,153 @@
+package com.varun.db.storage;
+
+import com.varun.db.util.DiskWriter;
+import com.varun.db.util.DiskWriterResponse;
+import com.varun.db.util.FileRecordConfig;
+import com.varun.db.util.FsyncMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.Assert.*;
+
+public class SegmentMergerTest {
+
+    private static final String TEST_DIR = "test-dir";
+
+    private final Map<String, ValueMetadata> keyToValueMetadata = new HashMap<>();
+    private final List<File> inputFiles = new ArrayList<>();
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @Before
+    public void setUp() throws IOException {
+        new File(TEST_DIR).mkdir();
+        // 3 input files where every key is overwritten by the next file and key2 is only written once
+        for (int version = 0; version < 3; version++) {
+            try (DiskWriter diskWriter = new DiskWriter(TEST_DIR, FsyncMode.OS, 0)) {
+                inputFiles.add(new File(diskWriter.getActiveFilePath()));
+                for (int i = 0; i < 3; i++) {
+                    if (i == 2 && version > 0) {
+                        continue;
+                    }
+                    write(diskWriter, "key" + i, version + "x".repeat(99));
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @After
+    public void tearDown() {
+        Arrays.stream(Objects.requireNonNull(new File(TEST_DIR).listFiles()))
+                .forEach(File::delete);
+        new File(TEST_DIR).delete();
+    }
+
+    @Test
+    public void merge_copiesLiveRecordsIntoBoundedFiles() throws IOException {
+        // Every output file is full after a single record, so a new one is started at the next input file holding
+        // live records
+        SegmentMerger segmentMerger = new SegmentMerger(inputFiles, 100, this::isLive, null);
+
+        SegmentMerger.MergeResult mergeResult = segmentMerger.merge();
+        segmentMerger.commit(TEST_DIR, mergeResult);
+
+        assertEquals(List.of(inputFiles.get(0).getPath(), inputFiles.get(2).getPath()), mergeResult.outputFileNames());
+        assertEquals(3, mergeResult.relocations().size());
+        assertEquals(List.of(inputFiles.get(0).getName(), inputFiles.get(2).getName()), dataFileNames());
+        for (SegmentMerger.Relocation relocation : mergeResult.relocations()) {
+            assertTrue(keyToValueMetadata.replace(new String(relocation.key(), StandardCharsets.UTF_8),
+                    relocation.from(), relocation.to()));
+        }
+        assertEquals(keyToValueMetadata, scan(inputFiles.get(0), inputFiles.get(2)));
+        assertTrue(HintFile.hintFileFor(inputFiles.get(0)).exists());
+        assertTrue(HintFile.hintFileFor(inputFiles.get(2)).exists());
+        assertFalse(new File(TEST_DIR, SegmentMerger.COMPACTION_COMMIT_FILE).exists());
+    }
+
+    @Test
+    public void merge_movesRecordsOnlyToMoreRecentFiles() throws IOException {
+        SegmentMerger segmentMerger = new SegmentMerger(inputFiles, 1000, this::isLive, null);
+
+        SegmentMerger.MergeResult mergeResult = segmentMerger.merge();
+
+        // key2 lives in the least recent file but shares the output with more recent records
+        assertEquals(List.of(inputFiles.get(2).getPath()), mergeResult.outputFileNames());
+    }
+
+    @Test
+    public void recover_discardsUncommittedMerge() throws IOException {
+        Map<String, ValueMetadata> expected = scan(inputFiles.toArray(File[]::new));
+        SegmentMerger segmentMerger = new SegmentMerger(inputFiles, 100, this::isLive, null);
+        segmentMerger.merge();
+
+        SegmentMerger.recover(TEST_DIR);
+
+        assertEquals(inputFiles.stream().map(File::getName).toList(), dataFileNames());
+        assertEquals(3, Objects.requireNonNull(new File(TEST_DIR).listFiles(
+                (dir, name) -> !name.equals(SegmentManager.MANIFEST_FILE))).length);
+        assertEquals(expected, scan(inputFiles.toArray(File[]::new)));
+    }
+
+    @Test
+    public void recover_completesCommittedMerge() throws IOException {
+        SegmentMerger segmentMerger = new SegmentMerger(inputFiles, 100, this::isLive, null);
+        SegmentMerger.MergeResult mergeResult = segmentMerger.merge();
+        segmentMerger.writeCommitFile(TEST_DIR, mergeResult);
+
+        SegmentMerger.recover(TEST_DIR);
+        // Applying the same merge again must be a no-op
+        segmentMerger.writeCommitFile(TEST_DIR, mergeResult);
+        SegmentMerger.recover(TEST_DIR);
+
+        assertEquals(List.of(inputFiles.get(0).getName(), inputFiles.get(2).getName()), dataFileNames());
+        Map<String, ValueMetadata> merged = scan(inputFiles.get(0), inputFiles.get(2));
+        assertEquals(3, merged.size());
+        for (SegmentMerger.Relocation relocation : mergeResult.relocations()) {
+            assertEquals(relocation.to(), merged.get(new String(relocation.key(), StandardCharsets.UTF_8)));
+        }
+    }
+
+    private boolean isLive(byte[] key, ValueMetadata valueMetadata) {
+        return valueMetadata.equals(keyToValueMetadata.get(new String(key, StandardCharsets.UTF_8)));
+    }
+
+    private void write(DiskWriter diskWriter, String key, String value) throws IOException {
+        FileRecord fileRecord = new FileRecord(System.currentTimeMillis(), key.getBytes(StandardCharsets.UTF_8),
+                value.getBytes(StandardCharsets.UTF_8));
+        DiskWriterResponse response = diskWriter.persistToDiskForActiveFile(fileRecord);
+        keyToValueMetadata.put(key, new ValueMetadata(response.fileName(), fileRecord.valueSize(),
+                response.valuePosition(), fileRecord.timestamp()));
+    }
+
+    private static Map<String, ValueMetadata> scan(File... files) throws IOException {
+        Map<String, ValueMetadata> scanned = new HashMap<>();
+        for (File file : files) {
+            try (DataFileScanner scanner = new DataFileScanner(file)) {
+                while (scanner.next()) {
+                    scanned.put(scanner.key(), new ValueMetadata(file.getPath(), scanner.valueSize(),
+                            scanner.valuePosition(), scanner.timestamp()));
+                }
+            }
+        }
+        return scanned;
+    }
+
+    private static List<String> dataFileNames() {
+        return Arrays.stream(Objects.requireNonNull(new File(TEST_DIR).listFiles(
+                        (dir, name) -> name.startsWith(FileRecordConfig.FILE_PREFIX) && !name.contains("."))))
+                .map(File::getName)
+                .sorted()
+                .toList();
+    }
+}
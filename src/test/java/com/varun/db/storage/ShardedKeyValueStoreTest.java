@@ -0,0 +1,161 @@
+package com.varun.db.storage;
+
+import com.varun.db.exception.KeyNotFoundException;
+import com.varun.db.metrics.StoreStats;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+public class ShardedKeyValueStoreTest {
+    private static final String TEST_DIR = "test-dir";
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @After
+    public void tearDown() {
+        delete(new File(TEST_DIR));
+    }
+
+    @Test
+    public void shardedKeyValueStore_spreadsKeysOverShards() throws IOException, KeyNotFoundException {
+        ShardedKeyValueStore keyValueStore = new ShardedKeyValueStore(TEST_DIR, 4);
+        Set<Integer> usedShards = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            keyValueStore.set("key" + i, "value" + i);
+            usedShards.add(keyValueStore.shardIndex(("key" + i).getBytes()));
+        }
+        keyValueStore.delete("key0");
+        keyValueStore.performCompaction();
+
+        assertEquals(4, usedShards.size());
+        assertEquals("value42", keyValueStore.get("key42"));
+        assertEquals("value42", keyValueStore.shard(keyValueStore.shardIndex("key42".getBytes())).get("key42"));
+        thrown.expect(KeyNotFoundException.class);
+        keyValueStore.get("key0");
+    }
+
+    @Test
+    public void shardedKeyValueStore_multiGetAndWriteBatchSpanShards() throws IOException, KeyNotFoundException {
+        ShardedKeyValueStore keyValueStore = new ShardedKeyValueStore(TEST_DIR, 4);
+        keyValueStore.set("A", "old");
+        WriteBatch writeBatch = new WriteBatch().delete("A");
+        for (int i = 0; i < 20; i++) {
+            writeBatch.put("key" + i, "value" + i);
+        }
+        keyValueStore.write(writeBatch);
+
+        List<byte[]> values = keyValueStore.multiGet(List.of("key7".getBytes(), "A".getBytes(), "key3".getBytes(),
+                "key19".getBytes()));
+
+        assertArrayEquals("value7".getBytes(), values.get(0));
+        assertNull(values.get(1));
+        assertArrayEquals("value3".getBytes(), values.get(2));
+        assertArrayEquals("value19".getBytes(), values.get(3));
+    }
+
+    @Test
+    public void shardedKeyValueStore_scanMergesShardsInKeyOrder() throws IOException {
+        ShardedKeyValueStore keyValueStore = new ShardedKeyValueStore(TEST_DIR, 3);
+        for (int i = 0; i < 50; i++) {
+            keyValueStore.set(String.format("user:%02d", i), "v" + i);
+        }
+        keyValueStore.set("account:1", "a");
+
+        assertEquals(List.of("user:10", "user:11", "user:12"),
+                keys(keyValueStore.scan("user:10".getBytes(), null, 3)));
+        assertEquals(List.of("account:1", "user:00"), keys(keyValueStore.scan(null, null, 2)));
+        assertEquals(50, keys(keyValueStore.prefixScan("user:".getBytes(), Integer.MAX_VALUE)).size());
+    }
+
+    @Test
+    public void shardedKeyValueStore_statsAddUpShards() throws IOException, KeyNotFoundException {
+        ShardedKeyValueStore keyValueStore = new ShardedKeyValueStore(TEST_DIR, 4);
+        for (int i = 0; i < 20; i++) {
+            keyValueStore.set("key" + i, "value" + i);
+        }
+        keyValueStore.get("key3");
+
+        StoreStats stats = keyValueStore.getStats();
+
+        assertEquals(20, stats.keyCount());
+        assertEquals(4, stats.segmentCount());
+        assertEquals(20, stats.latencies().get(StoreStats.SET).count());
+        assertEquals(1, stats.latencies().get(StoreStats.GET).count());
+        long bytesAppended = 0;
+        for (int i = 0; i < 4; i++) {
+            bytesAppended += keyValueStore.shard(i).getStats().bytesAppended();
+        }
+        assertEquals(bytesAppended, stats.bytesAppended());
+    }
+
+    @Test
+    public void shardedKeyValueStore_rebuildWithSameShardCount() throws IOException, KeyNotFoundException {
+        ShardedKeyValueStore keyValueStore = new ShardedKeyValueStore(TEST_DIR, 4);
+        for (int i = 0; i < 20; i++) {
+            keyValueStore.set("key" + i, "value" + i);
+        }
+        keyValueStore.close();
+
+        ShardedKeyValueStore rebuiltKeyValueStore = new ShardedKeyValueStore(TEST_DIR, 4);
+        for (int i = 0; i < 20; i++) {
+            assertEquals("value" + i, rebuiltKeyValueStore.get("key" + i));
+        }
+        rebuiltKeyValueStore.close();
+
+        // Keys would be looked up in shards which do not hold them
+        assertThrows(IllegalStateException.class, () -> new ShardedKeyValueStore(TEST_DIR, 2));
+    }
+
+    @Test
+    public void shardedKeyValueStore_refusesUnshardedStore() throws IOException {
+        KeyValueStore keyValueStore = new KeyValueStore(TEST_DIR);
+        keyValueStore.set("A", "1");
+        keyValueStore.close();
+
+        thrown.expect(IllegalStateException.class);
+        new ShardedKeyValueStore(TEST_DIR, 2);
+    }
+
+    @Test
+    public void keyValueStore_refusesShardedStore() throws IOException {
+        ShardedKeyValueStore keyValueStore = new ShardedKeyValueStore(TEST_DIR, 2);
+        keyValueStore.set("A", "1");
+        keyValueStore.close();
+
+        thrown.expect(IllegalStateException.class);
+        new KeyValueStore(TEST_DIR);
+    }
+
+    private static List<String> keys(Iterator<Map.Entry<byte[], byte[]>> entries) {
+        List<String> keys = new ArrayList<>();
+        entries.forEachRemaining(entry -> keys.add(new String(entry.getKey())));
+        return keys;
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private static void delete(File file) {
+        if (file.isDirectory()) {
+            for (File child : Objects.requireNonNull(file.listFiles())) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,128 @@
+package com.varun.db.util;
+
+import com.varun.db.compression.ValueCodecs;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalTime;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class DbConfigTest {
+
+    private static final String TEST_FILE = "test-db.properties";
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @After
+    public void tearDown() {
+        new File(TEST_FILE).delete();
+    }
+
+    @Test
+    public void builder_defaultsToFileRecordConfig() {
+        DbConfig config = DbConfig.builder().build();
+
+        assertEquals(FileRecordConfig.DB_DIRECTORY, config.dbDirectory());
+        assertEquals(FileRecordConfig.DEFAULT_PORT, config.port());
+        assertEquals(FileRecordConfig.FILE_MEMORY_THRESHOLD, config.segmentSizeBytes());
+        assertEquals(FileRecordConfig.FSYNC_MODE, config.fsyncMode());
+        assertEquals(FileRecordConfig.CACHE_MAXIMUM_BYTES, config.cacheMaximumBytes());
+        assertEquals(FileRecordConfig.COMPACTION_MIN_DEAD_RATIO, config.compactionPolicy().minDeadRatio(), 0);
+        assertEquals(FileRecordConfig.COMPACTION_INTERVAL_MILLIS, config.compactionIntervalMillis());
+        assertSame(ValueCodecs.NONE, config.valueCodec());
+    }
+
+    @Test
+    public void toBuilder_keepsOtherSettings() {
+        DbConfig config = DbConfig.builder().segmentSizeBytes(1024).fsyncMode(FsyncMode.ALWAYS).build();
+
+        DbConfig copy = config.toBuilder().dbDirectory("other").build();
+
+        assertEquals("other", copy.dbDirectory());
+        assertEquals(1024, copy.segmentSizeBytes());
+        assertEquals(FsyncMode.ALWAYS, copy.fsyncMode());
+    }
+
+    @Test
+    public void load_readsPropertiesFile() throws IOException {
+        Files.writeString(new File(TEST_FILE).toPath(), String.join("\n",
+                "# Larger segments and group commit",
+                "db.directory=data",
+                "port=9000",
+                "segment.size.bytes=67108864",
+                "max.open.data.files=64",
+                "fsync.mode=always",
+                "cache.maximum.bytes=1048576",
+                "value.codec.id=1",
+                "compaction.min.dead.ratio=0.3",
+                "compaction.window.start=01:00",
+                "compaction.window.end=05:30",
+                "compaction.interval.millis=60000",
+                "multi.get.parallelism=2",
+                "pipeline.max.batch.size=16"), StandardCharsets.UTF_8);
+
+        DbConfig config = DbConfig.load(new File(TEST_FILE).toPath());
+
+        assertEquals("data", config.dbDirectory());
+        assertEquals(9000, config.port());
+        assertEquals(64L * 1024 * 1024, config.segmentSizeBytes());
+        assertEquals(64, config.maxOpenDataFiles());
+        assertEquals(FsyncMode.ALWAYS, config.fsyncMode());
+        assertEquals(1024 * 1024, config.cacheMaximumBytes());
+        assertSame(ValueCodecs.DEFLATE, config.valueCodec());
+        assertEquals(0.3, config.compactionPolicy().minDeadRatio(), 0);
+        assertEquals(LocalTime.of(1, 0), config.compactionPolicy().windowStart());
+        assertEquals(LocalTime.of(5, 30), config.compactionPolicy().windowEnd());
+        assertEquals(FileRecordConfig.COMPACTION_MAX_GARBAGE_BYTES, config.compactionPolicy().maxGarbageBytes());
+        assertEquals(60_000, config.compactionIntervalMillis());
+        assertEquals(2, config.multiGetParallelism());
+        assertEquals(FileRecordConfig.RECOVERY_PARALLELISM, config.recoveryParallelism());
+        assertEquals(16, config.pipelineMaxBatchSize());
+    }
+
+    @Test
+    public void fromProperties_rejectsUnknownSetting() {
+        Properties properties = new Properties();
+        properties.setProperty("segment.size", "1024");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> DbConfig.fromProperties(properties));
+        assertEquals("Unknown setting segment.size", e.getMessage());
+    }
+
+    @Test
+    public void fromProperties_rejectsInvalidValue() {
+        Properties properties = new Properties();
+        properties.setProperty("fsync.mode", "sometimes");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> DbConfig.fromProperties(properties));
+        assertEquals("Invalid value sometimes for setting fsync.mode", e.getMessage());
+    }
+
+    @Test
+    public void build_rejectsOutOfRangeSettings() {
+        assertThrows(IllegalArgumentException.class, () -> DbConfig.builder().segmentSizeBytes(0).build());
+        // Files grow to about twice the segment size, and value positions within them are ints
+        assertThrows(IllegalArgumentException.class,
+                () -> DbConfig.builder().segmentSizeBytes(Integer.MAX_VALUE).build());
+        assertThrows(IllegalArgumentException.class, () -> DbConfig.builder().shardCount(0).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> DbConfig.builder().fsyncMode(FsyncMode.INTERVAL).fsyncIntervalMillis(0).build());
+        assertThrows(IllegalArgumentException.class, () -> DbConfig.builder().port(70000).build());
+    }
+
+    @Test
+    public void build_rejectsKeyDirectoryConcurrencyLevelWhichIsNotAPowerOfTwo() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> DbConfig.builder().keyDirectoryConcurrencyLevel(3).build());
+
+        assertEquals("Key directory concurrency level must be a positive power of two", e.getMessage());
+        assertEquals(4, DbConfig.builder().keyDirectoryConcurrencyLevel(4).build().keyDirectoryConcurrencyLevel());
+    }
+}
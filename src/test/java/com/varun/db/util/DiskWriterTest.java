@@ -0,0 +1,161 @@
+package com.varun.db.util;
+
+import com.varun.db.storage.FileRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.*;
+
+public class DiskWriterTest {
+
+    private static final String TEST_DIR = "test-dir";
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @Before
+    public void setUp() {
+        new File(TEST_DIR).mkdir();
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @After
+    public void tearDown() {
+        Arrays.stream(Objects.requireNonNull(new File(TEST_DIR).listFiles()))
+                .forEach(File::delete);
+        new File(TEST_DIR).delete();
+    }
+
+    @Test
+    public void persistToDiskForActiveFile_tracksValuePosition() throws IOException {
+        try (DiskWriter diskWriter = new DiskWriter(TEST_DIR, FsyncMode.OS, 0)) {
+            DiskWriterResponse first = diskWriter.persistToDiskForActiveFile(buildFileRecord("A", "1"));
+            DiskWriterResponse second = diskWriter.persistToDiskForActiveFile(buildFileRecord("BC", "234"));
+
+            assertEquals(first.fileName(), second.fileName());
+            // | Size(4) | CRC(4) | Version(1) | Flags(1) | Timestamp(8) | Key Size(4) | Value Size(4) | Key |
+            assertEquals(27, first.valuePosition());
+            assertEquals(28 + 28, second.valuePosition());
+            assertEquals(28 + 31, second.commitSequence());
+            assertEquals("1", readValue(first, 1));
+            assertEquals("234", readValue(second, 3));
+        }
+    }
+
+    @Test
+    public void persistToDiskForActiveFile_appendsBatchWithSingleWrite() throws IOException {
+        try (DiskWriter diskWriter = new DiskWriter(TEST_DIR, FsyncMode.OS, 0)) {
+            diskWriter.persistToDiskForActiveFile(buildFileRecord("A", "1"));
+            List<DiskWriterResponse> responses = diskWriter.persistToDiskForActiveFile(
+                    List.of(buildFileRecord("BC", "234"), buildFileRecord("D", "5")));
+
+            assertEquals(2, responses.size());
+            assertEquals(28 + 28, responses.get(0).valuePosition());
+            assertEquals(28 + 31 + 27, responses.get(1).valuePosition());
+            assertEquals(28 + 31 + 28, responses.get(0).commitSequence());
+            assertEquals(responses.get(0).commitSequence(), responses.get(1).commitSequence());
+            assertEquals("234", readValue(responses.get(0), 3));
+            assertEquals("5", readValue(responses.get(1), 1));
+        }
+    }
+
+    @Test
+    public void persistToDiskForActiveFile_rollsOverFullFile() throws IOException {
+        DbConfig config = DbConfig.builder().dbDirectory(TEST_DIR).segmentSizeBytes(8000).build();
+        try (DiskWriter diskWriter = new DiskWriter(config)) {
+            String firstFileName = diskWriter.getActiveFilePath();
+            String value = "x".repeat(1000);
+            List<DiskWriterResponse> responses = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                responses.add(diskWriter.persistToDiskForActiveFile(buildFileRecord("key" + i, value)));
+            }
+
+            assertNotEquals(firstFileName, diskWriter.getActiveFilePath());
+            for (DiskWriterResponse response : responses) {
+                assertEquals(value, readValue(response, value.length()));
+            }
+        }
+    }
+
+    @Test
+    public void persistToDiskForActiveFile_rollsOverAtConfiguredSegmentSize() throws IOException {
+        DbConfig config = DbConfig.builder().dbDirectory(TEST_DIR).segmentSizeBytes(64 * 1024).build();
+        try (DiskWriter diskWriter = new DiskWriter(config)) {
+            String firstFileName = diskWriter.getActiveFilePath();
+            String value = "x".repeat(1000);
+            for (int i = 0; i < 60; i++) {
+                diskWriter.persistToDiskForActiveFile(buildFileRecord("key" + i, value));
+            }
+            assertEquals(firstFileName, diskWriter.getActiveFilePath());
+
+            for (int i = 60; i < 70; i++) {
+                diskWriter.persistToDiskForActiveFile(buildFileRecord("key" + i, value));
+            }
+            assertNotEquals(firstFileName, diskWriter.getActiveFilePath());
+        }
+    }
+
+    @Test
+    public void awaitDurable_concurrentWritersWithFsyncAlways() throws Exception {
+        try (DiskWriter diskWriter = new DiskWriter(TEST_DIR, FsyncMode.ALWAYS, 0)) {
+            Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+            Queue<DiskWriterResponse> responses = new ConcurrentLinkedQueue<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int threadId = t;
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 50; i++) {
+                            DiskWriterResponse response = diskWriter.persistToDiskForActiveFile(
+                                    buildFileRecord("t" + threadId + "k" + i, String.valueOf(i)));
+                            diskWriter.awaitDurable(response.commitSequence());
+                            responses.add(response);
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertTrue(failures.toString(), failures.isEmpty());
+            assertEquals(200, responses.size());
+            for (DiskWriterResponse response : responses) {
+                assertNotNull(readValue(response, 1));
+            }
+        }
+    }
+
+    @Test
+    public void persistToDiskForActiveFile_fsyncInterval() throws IOException, InterruptedException {
+        try (DiskWriter diskWriter = new DiskWriter(TEST_DIR, FsyncMode.INTERVAL, 10)) {
+            DiskWriterResponse response = diskWriter.persistToDiskForActiveFile(buildFileRecord("A", "1"));
+            diskWriter.awaitDurable(response.commitSequence());
+            Thread.sleep(50L);
+
+            assertEquals("1", readValue(response, 1));
+        }
+    }
+
+    private static String readValue(DiskWriterResponse response, int valueSize) throws IOException {
+        return new String(FileSystemUtil.readNBytesFromFilePointer(response.fileName(), response.valuePosition(),
+                valueSize), StandardCharsets.UTF_8);
+    }
+
+    private static FileRecord buildFileRecord(String key, String value) {
+        return new FileRecord(System.currentTimeMillis(), key.getBytes(StandardCharsets.UTF_8),
+                value.getBytes(StandardCharsets.UTF_8));
+    }
+}
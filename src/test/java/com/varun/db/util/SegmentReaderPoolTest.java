@@ -0,0 +1,170 @@
+package com.varun.db.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentReaderPoolTest {
+
+    private static final String TEST_DIR = "test-dir";
+
+    private SegmentReaderPool segmentReaderPool;
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @Before
+    public void setUp() {
+        new File(TEST_DIR).mkdir();
+        segmentReaderPool = new SegmentReaderPool();
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @After
+    public void tearDown() throws IOException {
+        segmentReaderPool.close();
+        Arrays.stream(Objects.requireNonNull(new File(TEST_DIR).listFiles()))
+                .forEach(File::delete);
+        new File(TEST_DIR).delete();
+    }
+
+    @Test
+    public void read_success() throws IOException {
+        String fileName = writeFile("Hello World");
+
+        assertEquals("World", new String(segmentReaderPool.read(fileName, 6, 5), StandardCharsets.UTF_8));
+        assertEquals("Hello", new String(segmentReaderPool.read(fileName, 0, 5), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void read_seesDataAppendedAfterOpen() throws IOException {
+        String fileName = writeFile("Hello");
+        assertEquals("Hello", new String(segmentReaderPool.read(fileName, 0, 5), StandardCharsets.UTF_8));
+
+        try (PrintWriter printWriter = new PrintWriter(new FileWriter(fileName, true))) {
+            printWriter.print(" World");
+        }
+
+        assertEquals("World", new String(segmentReaderPool.read(fileName, 6, 5), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void read_reopensFileAfterClose() throws IOException {
+        String fileName = writeFile("Hello");
+        segmentReaderPool.read(fileName, 0, 5);
+
+        segmentReaderPool.close(fileName);
+        assertTrue(new File(fileName).delete());
+        writeFile(fileName, "World");
+
+        assertEquals("World", new String(segmentReaderPool.read(fileName, 0, 5), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void read_reopensChannelClosedByInterrupt() throws IOException, InterruptedException {
+        String fileName = writeFile("Hello");
+        segmentReaderPool.read(fileName, 0, 5);
+        List<Throwable> failures = new ArrayList<>();
+        Thread reader = new Thread(() -> {
+            Thread.currentThread().interrupt();
+            try {
+                segmentReaderPool.read(fileName, 0, 5);
+            } catch (IOException e) {
+                failures.add(e);
+            }
+        });
+
+        reader.start();
+        reader.join();
+
+        // The interrupted reader closed the shared channel, later reads must not trip over it
+        assertTrue(failures.get(0) instanceof ClosedByInterruptException);
+        assertEquals("Hello", new String(segmentReaderPool.read(fileName, 0, 5), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void read_keepsAtMostMaximumNumberOfFilesOpen() throws IOException {
+        SegmentReaderPool boundedPool = new SegmentReaderPool(2);
+        try {
+            List<String> fileNames = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                fileNames.add(writeFile("File " + i));
+            }
+
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < fileNames.size(); i++) {
+                    assertEquals("File " + i, new String(boundedPool.read(fileNames.get(i), 0, 6),
+                            StandardCharsets.UTF_8));
+                    assertTrue(boundedPool.openFileCount() <= 2);
+                }
+            }
+        } finally {
+            boundedPool.close();
+        }
+    }
+
+    @Test
+    public void read_survivesEvictionOfChannelsInUse() throws InterruptedException {
+        SegmentReaderPool boundedPool = new SegmentReaderPool(1);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> readers = new ArrayList<>();
+        try {
+            for (int i = 0; i < 4; i++) {
+                String content = "Reader " + i;
+                String fileName = writeFile(content);
+                readers.add(new Thread(() -> {
+                    try {
+                        for (int read = 0; read < 2_000; read++) {
+                            assertEquals(content, new String(boundedPool.read(fileName, 0, content.length()),
+                                    StandardCharsets.UTF_8));
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }));
+            }
+            readers.forEach(Thread::start);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        } catch (IOException e) {
+            failures.add(e);
+        } finally {
+            boundedPool.close();
+        }
+
+        assertTrue(failures.toString(), failures.isEmpty());
+    }
+
+    @Test(expected = EOFException.class)
+    public void read_failsPastEndOfFile() throws IOException {
+        String fileName = writeFile("Hello");
+
+        segmentReaderPool.read(fileName, 3, 5);
+    }
+
+    private static String writeFile(String content) throws IOException {
+        return writeFile(TEST_DIR + "/" + System.nanoTime(), content);
+    }
+
+    private static String writeFile(String fileName, String content) throws IOException {
+        try (PrintWriter printWriter = new PrintWriter(new FileWriter(fileName, true))) {
+            printWriter.print(content);
+        }
+        return fileName;
+    }
+}